@@ -0,0 +1,77 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.db.ConnectionPool;
+import com.teamtreehouse.courses.db.SchemaMigrator;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.sql2o.Sql2o;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+* A fresh in memory database behind the same ConnectionPool the Api uses, filled with generated courses and reviews.
+*
+* The data comes from a Random with a fixed seed so every run (and every release) benchmarks exactly the same rows.
+* */
+class BenchmarkDatabase implements AutoCloseable {
+    private static final long SEED = 42;
+
+    private final ConnectionPool pool;
+    private final Sql2o sql2o;
+    private final Random random = new Random(SEED);
+
+    BenchmarkDatabase(String name) throws Exception {
+        this(name, 64);
+    }
+
+    /*
+    * statementCacheSize 0 turns the statement cache of the pool off, the Api keeps 64 statements per connection
+    * */
+    BenchmarkDatabase(String name, int statementCacheSize) throws Exception {
+        /*
+        * the pool keeps the database alive until we close it, no DB_CLOSE_DELAY needed
+        * */
+        pool = new ConnectionPool("jdbc:h2:mem:" + name, "", "", 2, 4, 5000, 60000, statementCacheSize);
+        sql2o = new Sql2o(pool);
+        new SchemaMigrator(sql2o).migrate();
+    }
+
+    Sql2o getSql2o() {
+        return sql2o;
+    }
+
+    List<Course> addCourses(int count) throws Exception {
+        List<Course> courses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++){
+            courses.add(newCourse(i));
+        }
+        new Sql2oCourseDao(sql2o).addAll(courses);
+        return courses;
+    }
+
+    void addReviews(List<Course> courses, int perCourse) throws Exception {
+        ReviewDao reviewDao = new Sql2oReviewDao(sql2o);
+        for (Course course : courses){
+            List<Review> reviews = new ArrayList<>(perCourse);
+            for (int i = 0; i < perCourse; i++){
+                reviews.add(newReview(course.getId()));
+            }
+            reviewDao.addAll(reviews);
+        }
+    }
+
+    Course newCourse(int number) {
+        return new Course("Course number " + number, "http://teamtreehouse.com/library/course-" + number);
+    }
+
+    Review newReview(int courseId) {
+        return new Review(courseId, 1 + random.nextInt(5), "Review comment " + random.nextInt(100000));
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
@@ -0,0 +1,84 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.model.Course;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Sql2oCourseDao against an in memory H2 database holding `courses` courses.
+*
+* add inserts into the same table for the whole trial, so with many iterations the table grows by the rows it added
+* (small next to the 10000 courses case, noticeable next to the 100 one).
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CourseDaoBenchmark {
+
+    @Param({"100", "10000"})
+    private int courses;
+
+    private BenchmarkDatabase database;
+    private Sql2oCourseDao courseDao;
+    private int[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase("course-benchmark");
+        courseDao = new Sql2oCourseDao(database.getSql2o());
+        List<Course> added = database.addCourses(courses);
+        ids = new int[added.size()];
+        for (int i = 0; i < ids.length; i++){
+            ids[i] = added.get(i).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    /*
+    * walks through the ids in order rather than at random, the same lookups in every run
+    * */
+    @Benchmark
+    public Course findById() {
+        next = (next + 1) % ids.length;
+        return courseDao.findById(ids[next]);
+    }
+
+    @Benchmark
+    public List<Course> findAll() {
+        return courseDao.findAll();
+    }
+
+    @Benchmark
+    public List<Course> findAllFirstPage() {
+        return courseDao.findAll(0, 50);
+    }
+
+    @Benchmark
+    public Course add() throws Exception {
+        Course course = database.newCourse(next++);
+        courseDao.add(course);
+        return course;
+    }
+}
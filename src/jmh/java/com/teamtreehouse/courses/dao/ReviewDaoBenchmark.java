@@ -0,0 +1,87 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Sql2oReviewDao against 10 courses with `reviewsPerCourse` reviews each. add also updates the course_stats row of
+* the course in the same transaction, so it measures both.
+*
+* `statementCacheSize` 0 prepares every statement anew like the pool did before it had a statement cache, 64 is what
+* the Api uses by default.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReviewDaoBenchmark {
+    private static final int COURSES = 10;
+
+    @Param({"10", "1000"})
+    private int reviewsPerCourse;
+
+    @Param({"0", "64"})
+    private int statementCacheSize;
+
+    private BenchmarkDatabase database;
+    private Sql2oReviewDao reviewDao;
+    private int[] courseIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase("review-benchmark", statementCacheSize);
+        reviewDao = new Sql2oReviewDao(database.getSql2o());
+        List<Course> courses = database.addCourses(COURSES);
+        database.addReviews(courses, reviewsPerCourse);
+        courseIds = new int[courses.size()];
+        for (int i = 0; i < courseIds.length; i++){
+            courseIds[i] = courses.get(i).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    private int nextCourseId() {
+        next = (next + 1) % courseIds.length;
+        return courseIds[next];
+    }
+
+    @Benchmark
+    public List<Review> findByCourseId() {
+        return reviewDao.findByCourseId(nextCourseId());
+    }
+
+    @Benchmark
+    public List<Review> findByCourseIdFirstPage() {
+        return reviewDao.findByCourseId(nextCourseId(), 0, 50);
+    }
+
+    @Benchmark
+    public Review add() throws Exception {
+        Review review = database.newReview(nextCourseId());
+        reviewDao.add(review);
+        return review;
+    }
+}
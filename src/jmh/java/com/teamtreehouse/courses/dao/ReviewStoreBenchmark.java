@@ -0,0 +1,113 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+* The two places reviews can live side by side: `sql` is Sql2oReviewDao (which also updates course_stats) and `log`
+* is MappedLogReviewDao in a temporary directory, without syncWrites. Both start with 10 courses of
+* REVIEWS_PER_COURSE reviews each.
+*
+* addAll is the ingest path, one batch of BATCH_SIZE reviews at a time, findByCourseId the per course read. The
+* stores keep what addAll wrote for the whole trial, so the courses slowly get more reviews in both.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReviewStoreBenchmark {
+    private static final int COURSES = 10;
+    private static final int REVIEWS_PER_COURSE = 1000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"sql", "log"})
+    private String store;
+
+    private BenchmarkDatabase database;
+    private Path logDirectory;
+    private ReviewDao reviewDao;
+    private int[] courseIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase("review-store-benchmark");
+        Sql2oCourseDao courseDao = new Sql2oCourseDao(database.getSql2o());
+        List<Course> courses = database.addCourses(COURSES);
+        if ("log".equals(store)){
+            logDirectory = Files.createTempDirectory("review-log-benchmark");
+            reviewDao = new MappedLogReviewDao(courseDao, logDirectory, 64 << 20, false);
+        } else {
+            reviewDao = new Sql2oReviewDao(database.getSql2o());
+        }
+        courseIds = new int[courses.size()];
+        for (int i = 0; i < courseIds.length; i++){
+            courseIds[i] = courses.get(i).getId();
+            List<Review> reviews = new ArrayList<>(REVIEWS_PER_COURSE);
+            for (int j = 0; j < REVIEWS_PER_COURSE; j++){
+                reviews.add(database.newReview(courseIds[i]));
+            }
+            reviewDao.addAll(reviews);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (reviewDao instanceof MappedLogReviewDao){
+            ((MappedLogReviewDao) reviewDao).close();
+            try (Stream<Path> files = Files.walk(logDirectory)){
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        database.close();
+    }
+
+    private int nextCourseId() {
+        next = (next + 1) % courseIds.length;
+        return courseIds[next];
+    }
+
+    @Benchmark
+    public List<Review> addAll() throws Exception {
+        int courseId = nextCourseId();
+        List<Review> reviews = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++){
+            reviews.add(database.newReview(courseId));
+        }
+        reviewDao.addAll(reviews);
+        return reviews;
+    }
+
+    @Benchmark
+    public List<Review> findByCourseId() {
+        return reviewDao.findByCourseId(nextCourseId());
+    }
+
+    @Benchmark
+    public List<Review> findByCourseIdFirstPage() {
+        return reviewDao.findByCourseId(nextCourseId(), 0, 50);
+    }
+}
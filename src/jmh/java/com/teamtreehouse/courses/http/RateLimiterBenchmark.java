@@ -0,0 +1,51 @@
+package com.teamtreehouse.courses.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+* The cost of one rate limiting decision over 10000 clients and over a single client. Run it with -t 4 (or more, one
+* per core) to see the threads contend: on a single client they all compare-and-set the same bucket, the worst case.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+    private static final int CLIENTS = 10000;
+
+    private RateLimiter limiter;
+    private String[] clients;
+
+    @Setup
+    public void setUp() {
+        limiter = new RateLimiter(1000000, 1000, 1000000, 1000, "X-Api-Key", 10000);
+        clients = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++){
+            clients[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+    }
+
+    @Benchmark
+    public long manyClients() {
+        return limiter.tryAcquire(clients[ThreadLocalRandom.current().nextInt(CLIENTS)], true);
+    }
+
+    @Benchmark
+    public long oneClient() {
+        return limiter.tryAcquire(clients[0], true);
+    }
+}
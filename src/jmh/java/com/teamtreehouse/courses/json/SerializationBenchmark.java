@@ -0,0 +1,80 @@
+package com.teamtreehouse.courses.json;
+
+import com.google.gson.Gson;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Rendering course and review lists the way the list endpoints do (GsonFactory + JsonTransformer) next to the
+* reflective new Gson() the Api used before, run with -prof gc to see the allocation per list as well.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private List<Course> courses;
+    private List<Review> reviews;
+    private Gson reflective;
+    private JsonTransformer transformer;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        courses = new ArrayList<>(size);
+        reviews = new ArrayList<>(size);
+        for (int i = 0; i < size; i++){
+            Course course = new Course("Course number " + i, "http://teamtreehouse.com/library/course-" + i);
+            course.setId(i + 1);
+            courses.add(course);
+            Review review = new Review(1 + random.nextInt(100), 1 + random.nextInt(5),
+                    "Review comment " + random.nextInt(100000));
+            review.setId(i + 1);
+            reviews.add(review);
+        }
+        reflective = new Gson();
+        transformer = new JsonTransformer(GsonFactory.create());
+    }
+
+    @Benchmark
+    public String coursesReflective() {
+        return reflective.toJson(courses);
+    }
+
+    @Benchmark
+    public String coursesAdapters() throws Exception {
+        return transformer.render(courses);
+    }
+
+    @Benchmark
+    public String reviewsReflective() {
+        return reflective.toJson(reviews);
+    }
+
+    @Benchmark
+    public String reviewsAdapters() throws Exception {
+        return transformer.render(reviews);
+    }
+}
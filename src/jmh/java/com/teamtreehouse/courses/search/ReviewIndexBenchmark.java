@@ -0,0 +1,96 @@
+package com.teamtreehouse.courses.search;
+
+import com.teamtreehouse.courses.model.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Searches in an index of `reviews` generated comments of 5 to 20 words each. The words are "w<n>" with n drawn from a
+* skewed distribution over 20000 words, like real text a few words are in a lot of comments and most are rare: w1 is
+* in about a third of the comments, w100 in 1 of 200 and w5000 in 1 of 10000.
+*
+* The index needs about 1GB of heap for the 1000000 reviews (-jvmArgs -Xmx2g).
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ReviewIndexBenchmark {
+    private static final long SEED = 42;
+    private static final int WORDS = 20000;
+    private static final int COURSES = 1000;
+
+    @Param({"100000", "1000000"})
+    private int reviews;
+
+    private ReviewIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        index = new ReviewIndex();
+        List<Review> batch = new ArrayList<>(1000);
+        for (int id = 1; id <= reviews; id++){
+            StringBuilder comment = new StringBuilder();
+            int length = 5 + random.nextInt(16);
+            for (int i = 0; i < length; i++){
+                /*
+                * e to the power of a uniform number is about Zipf distributed: word n comes up about 1 / n as often
+                * as word 1
+                * */
+                int word = (int) Math.exp(random.nextDouble() * Math.log(WORDS));
+                comment.append('w').append(word).append(' ');
+            }
+            Review review = new Review(1 + random.nextInt(COURSES), 1 + random.nextInt(5), comment.toString());
+            review.setId(id);
+            batch.add(review);
+            if (batch.size() == 1000){
+                index.addAll(batch);
+                batch.clear();
+            }
+        }
+        index.addAll(batch);
+    }
+
+    @Benchmark
+    public List<SearchHit> rareWord() {
+        return index.search("w5000", 0, 20);
+    }
+
+    @Benchmark
+    public List<SearchHit> commonWord() {
+        return index.search("w100", 0, 20);
+    }
+
+    @Benchmark
+    public List<SearchHit> twoWords() {
+        return index.search("w100 w5000", 0, 20);
+    }
+
+    @Benchmark
+    public List<SearchHit> veryCommonWord() {
+        return index.search("w1", 0, 20);
+    }
+
+    @Benchmark
+    public List<SearchHit> veryCommonWordInOneCourse() {
+        return index.search("w1", 7, 20);
+    }
+}
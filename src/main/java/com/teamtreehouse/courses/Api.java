@@ -1,18 +1,78 @@
 package com.teamtreehouse.courses;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.teamtreehouse.courses.dao.CachingCourseDao;
+import com.teamtreehouse.courses.dao.ComputedCourseStatsDao;
 import com.teamtreehouse.courses.dao.CourseDao;
+import com.teamtreehouse.courses.dao.CourseStatsDao;
+import com.teamtreehouse.courses.dao.DataVersions;
+import com.teamtreehouse.courses.dao.InMemoryCourseDao;
+import com.teamtreehouse.courses.dao.InMemoryReviewDao;
+import com.teamtreehouse.courses.dao.InMemorySnapshot;
+import com.teamtreehouse.courses.dao.IndexedReviewDao;
+import com.teamtreehouse.courses.dao.MappedLogReviewDao;
+import com.teamtreehouse.courses.dao.RankedReviewDao;
 import com.teamtreehouse.courses.dao.ReviewDao;
 import com.teamtreehouse.courses.dao.Sql2oCourseDao;
+import com.teamtreehouse.courses.dao.Sql2oCourseStatsDao;
 import com.teamtreehouse.courses.dao.Sql2oReviewDao;
+import com.teamtreehouse.courses.dao.TimedCourseDao;
+import com.teamtreehouse.courses.dao.TimedReviewDao;
+import com.teamtreehouse.courses.dao.VersionedCourseDao;
+import com.teamtreehouse.courses.dao.VersionedReviewDao;
+import com.teamtreehouse.courses.db.ConnectionPool;
+import com.teamtreehouse.courses.db.ReadRoutingDataSource;
+import com.teamtreehouse.courses.db.SchemaMigrator;
 import com.teamtreehouse.courses.exc.ApiError;
+import com.teamtreehouse.courses.exc.CourseNotFoundException;
 import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.http.AdmissionControl;
+import com.teamtreehouse.courses.http.Compression;
+import com.teamtreehouse.courses.http.ConditionalGet;
+import com.teamtreehouse.courses.http.RateLimiter;
+import com.teamtreehouse.courses.http.ReadYourWrites;
+import com.teamtreehouse.courses.ingest.NdjsonImporter;
+import com.teamtreehouse.courses.ingest.ReviewSubmission;
+import com.teamtreehouse.courses.ingest.ReviewWriteQueue;
+import com.teamtreehouse.courses.json.GsonFactory;
+import com.teamtreehouse.courses.json.JsonTransformer;
+import com.teamtreehouse.courses.metrics.Metrics;
 import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.CourseStats;
 import com.teamtreehouse.courses.model.Review;
+import com.teamtreehouse.courses.ranking.CourseLeaderboard;
+import com.teamtreehouse.courses.search.ReviewIndex;
 import org.sql2o.Sql2o;
+import spark.Request;
+import spark.Response;
+import spark.Spark;
 
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 import static spark.Spark.*;
 
@@ -20,6 +80,12 @@ import static spark.Spark.*;
  * After adding the Gradle Spark dependency we go here to build our API to let other outside apps to reach us
  * */
 public class Api {
+    private static ConnectionPool pool;
+    private static ConnectionPool readPool;
+    private static ReviewWriteQueue reviewQueue;
+    private static InMemorySnapshot snapshot;
+    private static MappedLogReviewDao reviewLog;
+
     public static void main(String[] args) {
         String datasource = "jdbc:h2:~/reviews.db";
         /*
@@ -41,28 +107,202 @@ public class Api {
             datasource = args[1];
         }
 
+        /*
+        * The threads of the embedded Jetty that serve the requests, -Dcourses.threads.max (200), .min (8) and
+        * .idleTimeoutMillis (60000). Spark has to know them before the first route is mapped.
+        * */
+        threadPool(Integer.getInteger("courses.threads.max", 200),
+                Integer.getInteger("courses.threads.min", 8),
+                Integer.getInteger("courses.threads.idleTimeoutMillis", 60000));
+
         /*
         * create new sql2o object and instatiate as new dao object
         *
         * here we will use H2 database jdbc into a file in the home directory named reviews.db
         *
-        * Then we will run the script in the db/init.sql
+        * Then we will bring the schema up to date with the SchemaMigrator (the numbered scripts in db/)
+        *
+        * The Sql2o object no longer gets the bare JDBC url. Instead we put a ConnectionPool in front of the database
+        * so the DAOs reuse already opened connections rather than paying for a brand new one on every request.
+        *
+        * The pool can be tuned per deployment with system properties (java -Dcourses.pool.max=20 ...):
+        * courses.pool.min, courses.pool.max, courses.pool.acquireTimeoutMillis, courses.pool.idleTimeoutMillis,
+        * courses.pool.statementCacheSize (prepared statements kept per connection, 0 turns the cache off)
+        * */
+        pool = openPool(datasource);
+        Sql2o sql2o = new Sql2o(pool);
+
+        /*
+        * -Dcourses.db.readUrl=<jdbc url> of a read replica (or any read only copy of the database) sends the finds of
+        * the Sql2o daos there while their adds keep going to the datasource above. The replica gets a pool of its own
+        * with the same settings and the reads get it through a ReadRoutingDataSource. A client that wrote reads from
+        * the primary for -Dcourses.db.readYourWritesMillis (1000) afterwards, see ReadYourWrites (0 turns that off).
+        * The GETs that read from the replica get no ETag (see notModified() below).
         * */
-        Sql2o sql2o = new Sql2o(String.format("%s;INIT=RUNSCRIPT from 'classpath:db/init.sql'", datasource),
-                "", "");
+        String readDatasource = System.getProperty("courses.db.readUrl");
+        if (readDatasource != null){
+            readPool = openPool(readDatasource);
+        }
+        ReadRoutingDataSource readRouting = readPool != null ? new ReadRoutingDataSource(pool, readPool) : null;
+        Sql2o readSql2o = readRouting != null ? new Sql2o(readRouting) : sql2o;
+
+        /*
+        * The schema used to be created by INIT=RUNSCRIPT in the connection string which made H2 run the script on
+        * every connection open. Now the migrator applies each numbered script once at startup and records it in the
+        * schema_history table, so the connections handed out by the pool carry no init overhead at all.
+        * */
+        try {
+            new SchemaMigrator(sql2o).migrate();
+        } catch (DaoException ex){
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
 
         /*
-        * remember if the database already exist we have the IF EXIST clause in our init.sql thus it will not
+        * remember if the database already exist the V1 script has the IF NOT EXISTS clause thus it will not
         * overwrite our existing table.
         *
         * Now we going to initialization of our dao using the CourseDao interface and Sql2oCourseDao as implementation
+        *
+        * Both daos are wrapped to time every call into our Metrics (GET /metrics), which also time every route
+        * registered below with metrics.timed()
         * */
-        CourseDao courseDao = new Sql2oCourseDao(sql2o);
+        Metrics metrics = new Metrics();
+
+        /*
+        * -Dcourses.backend=memory keeps the courses and reviews in memory only (InMemoryCourseDao and friends) instead
+        * of H2, for the read heavy nodes. Give it -Dcourses.memory.snapshotFile=<path> to keep the data over restarts:
+        * it is restored from there on startup and written back every -Dcourses.memory.snapshotSeconds (60) and on stop.
+        * */
+        CourseDao baseCourseDao;
+        ReviewDao baseReviewDao;
+        CourseStatsDao backendStatsDao;
+        if ("memory".equals(System.getProperty("courses.backend", "sql"))){
+            InMemoryCourseDao memoryCourses = new InMemoryCourseDao();
+            InMemoryReviewDao memoryReviews = new InMemoryReviewDao(memoryCourses);
+            String snapshotFile = System.getProperty("courses.memory.snapshotFile");
+            if (snapshotFile != null){
+                snapshot = new InMemorySnapshot(memoryCourses, memoryReviews, Paths.get(snapshotFile));
+                try {
+                    snapshot.restore();
+                } catch (IOException ex){
+                    throw new IllegalStateException("Could not restore the snapshot " + snapshotFile, ex);
+                }
+                snapshot.start(Long.getLong("courses.memory.snapshotSeconds", 60L), TimeUnit.SECONDS);
+            }
+            baseCourseDao = memoryCourses;
+            baseReviewDao = memoryReviews;
+            backendStatsDao = new ComputedCourseStatsDao(memoryReviews);
+        } else {
+            baseCourseDao = new Sql2oCourseDao(sql2o, readSql2o);
+            baseReviewDao = new Sql2oReviewDao(sql2o, readSql2o);
+            /*
+            * and the dao of the rating aggregates that the review dao keeps up to date
+            * */
+            backendStatsDao = new Sql2oCourseStatsDao(sql2o, readSql2o);
+        }
+
+        /*
+        * -Dcourses.reviews.store=log keeps the reviews (whatever the backend of the courses) in the append only,
+        * memory mapped MappedLogReviewDao in -Dcourses.reviews.logDir (reviews-log), in segments of
+        * -Dcourses.reviews.segmentBytes (64MB). -Dcourses.reviews.syncWrites=true forces every write to disk.
+        * */
+        if ("log".equals(System.getProperty("courses.reviews.store"))){
+            try {
+                reviewLog = new MappedLogReviewDao(baseCourseDao,
+                        Paths.get(System.getProperty("courses.reviews.logDir", "reviews-log")),
+                        Integer.getInteger("courses.reviews.segmentBytes", 64 << 20),
+                        Boolean.getBoolean("courses.reviews.syncWrites"));
+            } catch (IOException ex){
+                throw new IllegalStateException("Could not open the review log", ex);
+            }
+            baseReviewDao = reviewLog;
+        }
+        /*
+        * the log keeps no aggregates, so its stats are computed from the reviews of the course when asked for
+        * */
+        CourseStatsDao statsDao = reviewLog != null ? new ComputedCourseStatsDao(reviewLog) : backendStatsDao;
+        CourseDao timedCourseDao = new TimedCourseDao(baseCourseDao, metrics);
+
+        /*
+        * Courses are read much more than they are written so a deployment can turn on the read-through course cache
+        * with -Dcourses.cache.size=<max number of courses>. When it is 0 (the default) there is no cache at all.
+        * */
+        int courseCacheSize = Integer.getInteger("courses.cache.size", 0);
+        CachingCourseDao courseCache = courseCacheSize > 0 ?
+                new CachingCourseDao(timedCourseDao, courseCacheSize) : null;
+
+        /*
+        * Every course and review added through these daos bumps a version counter, the GET routes below turn those
+        * versions into ETags (see notModified() below)
+        *
+        * The versions count what was committed on the primary. A read from a read replica may not have it yet, so only
+        * the requests whose reads go to the primary (all of them without a replica, the pinned clients with one) take
+        * part in the conditional GET: an unpinned client would otherwise keep the old rows of the replica under the
+        * new ETag and get 304 for them until the next write. The reads from the replica go without ETag.
+        * */
+        DataVersions versions = new DataVersions();
+        ConditionalGet conditionalGet = new ConditionalGet();
+        BooleanSupplier readsCommitted = readRouting != null ? readRouting::readsFromPrimary : () -> true;
+        CourseDao courseDao = new VersionedCourseDao(courseCache != null ? courseCache : timedCourseDao, versions);
 
         /*
         * We also need to initialize ReviewDao similar to CourseDao initialization
         * */
-        ReviewDao reviewDao = new Sql2oReviewDao(sql2o);
+        ReviewDao timedReviewDao = new TimedReviewDao(baseReviewDao, metrics);
+
+        /*
+        * The full text search over the review comments (GET /reviews/search) uses an in memory ReviewIndex. We build it
+        * from all the reviews here and from then on IndexedReviewDao adds every new review to it.
+        * -Dcourses.search.enabled=false turns it off, then there is no index to build nor to keep in memory.
+        *
+        * The course leaderboard (GET /courses/top) is ranked from all the reviews here too and RankedReviewDao moves
+        * the course of every new review up or down. It only keeps two numbers per course.
+        *
+        * Both read the reviews from the primary even when there is a read replica: after this they only ever learn of
+        * the new reviews, so whatever the replica did not have yet would be missing from them for good.
+        * */
+        ReviewIndex searchIndex = Boolean.parseBoolean(System.getProperty("courses.search.enabled", "true")) ?
+                new ReviewIndex() : null;
+        CourseLeaderboard leaderboard = new CourseLeaderboard();
+        Runnable rebuild = () -> {
+            if (searchIndex != null){
+                searchIndex.rebuild(timedReviewDao);
+            }
+            leaderboard.rebuild(timedReviewDao);
+        };
+        if (readRouting != null){
+            readRouting.onPrimary(rebuild);
+        } else {
+            rebuild.run();
+        }
+        if (searchIndex != null){
+            metrics.gauge("courses_search_documents", "Reviews in the search index.", searchIndex::getDocuments);
+            metrics.gauge("courses_search_words", "Distinct words in the search index.", searchIndex::getWords);
+            metrics.gauge("courses_search_posting_bytes", "Size of the compressed postings of the search index.",
+                    searchIndex::getPostingBytes);
+        }
+        metrics.gauge("courses_leaderboard_courses", "Courses on the leaderboard.", leaderboard::getCourses);
+        ReviewDao rankedReviewDao = new RankedReviewDao(timedReviewDao, leaderboard);
+        ReviewDao reviewDao = new VersionedReviewDao(searchIndex != null ?
+                new IndexedReviewDao(rankedReviewDao, searchIndex) : rankedReviewDao, versions);
+
+        /*
+        * With -Dcourses.reviews.async=true a new review is not committed by the request that posts it: the request
+        * only checks it and puts it on the ReviewWriteQueue, which commits the queued reviews in groups with
+        * reviewDao.addAll. -Dcourses.reviews.queueCapacity (10000) bounds the queue and -Dcourses.reviews.maxBatch
+        * (500) the reviews per commit.
+        * */
+        if (Boolean.getBoolean("courses.reviews.async")){
+            ReviewWriteQueue queue = new ReviewWriteQueue(reviewDao,
+                    Integer.getInteger("courses.reviews.queueCapacity", 10000),
+                    Integer.getInteger("courses.reviews.maxBatch", 500),
+                    metrics);
+            reviewQueue = queue;
+            /*
+            * the reviews in the queue were already accepted (202), when the JVM goes down we still commit them
+            * */
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> closeQuietly(queue)));
+        }
 
         /*
         * Now we need to allow the users of our API to create a new course
@@ -92,8 +332,73 @@ public class Api {
         *
         * NOTE: gson does not use the getters and setters in the POJO style Course class to fetch data, Instead it uses
         * its' own private fields to do that. Check the Learn More section on Endpoints session documentation.
+        *
+        * That reflection costs CPU and garbage on every object we send, thus our Gson comes from the GsonFactory with
+        * hand written TypeAdapters for Course, Review and ApiError. The routes render their results with a
+        * JsonTransformer which also writes list responses without looking up the adapter for every element.
+        * */
+        Gson gson = GsonFactory.create();
+        JsonTransformer json = new JsonTransformer(gson);
+
+        /*
+        * The GET routes send their JSON gzip or deflate compressed to the clients that accept it. Bodies smaller than
+        * -Dcourses.compression.minSize bytes (1024 by default) are sent as they are, -Dcourses.compression.level sets
+        * the level from 1 (fast) to 9 (small) and -Dcourses.compression.enabled=false turns it off.
+        * */
+        Compression compression = new Compression(
+                Boolean.parseBoolean(System.getProperty("courses.compression.enabled", "true")),
+                Integer.getInteger("courses.compression.minSize", 1024),
+                Integer.getInteger("courses.compression.level", 6));
+
+        /*
+        * Admission control in front of every route but the admin ones: -Dcourses.admission.maxConcurrent (64)
+        * requests run at once, -Dcourses.admission.maxQueued (64) more wait up to .queueTimeoutMillis (500) for a
+        * turn and the rest get a 503 with Retry-After (.retryAfterSeconds, 1) right away. See AdmissionControl.
+        * */
+        AdmissionControl admission = new AdmissionControl(
+                Integer.getInteger("courses.admission.maxConcurrent", 64),
+                Integer.getInteger("courses.admission.maxQueued", 64),
+                Long.getLong("courses.admission.queueTimeoutMillis", 500L),
+                Integer.getInteger("courses.admission.retryAfterSeconds", 1));
+        metrics.gauge("courses_admission_running", "Requests running now.", admission::getRunning);
+        metrics.gauge("courses_admission_queued", "Requests waiting for their turn.", admission::getQueued);
+        metrics.counter("courses_admission_admitted_total", "Requests let through.", admission::getAdmitted);
+        metrics.counter("courses_admission_rejected_total", "Requests turned away with 503.",
+                admission::getRejected);
+
+        /*
+        * Rate limits per client (its X-Api-Key header or else its IP address) so a single client can not starve the
+        * others, one for the reads and one for the writes: -Dcourses.rateLimit.readsPerSecond and .readBurst,
+        * .writesPerSecond and .writeBurst. A client over its limit gets a 429. Both rates are 0 (no limit) by default.
         * */
-        Gson gson = new Gson();
+        double readsPerSecond = Double.parseDouble(System.getProperty("courses.rateLimit.readsPerSecond", "0"));
+        double writesPerSecond = Double.parseDouble(System.getProperty("courses.rateLimit.writesPerSecond", "0"));
+        if (readsPerSecond > 0 || writesPerSecond > 0){
+            RateLimiter rateLimiter = new RateLimiter(
+                    readsPerSecond, Integer.getInteger("courses.rateLimit.readBurst", 100),
+                    writesPerSecond, Integer.getInteger("courses.rateLimit.writeBurst", 20),
+                    System.getProperty("courses.rateLimit.keyHeader", "X-Api-Key"),
+                    Long.getLong("courses.rateLimit.sweepIntervalMillis", 10000L));
+            metrics.counter("courses_rate_limit_allowed_total", "Requests within their client's limit.",
+                    rateLimiter::getAllowed);
+            metrics.counter("courses_rate_limit_limited_total", "Requests turned away with 429.",
+                    rateLimiter::getLimited);
+            metrics.gauge("courses_rate_limit_clients", "Clients with a bucket.", rateLimiter::getClients);
+            before(rateLimiter.filter());
+        }
+
+        if (readRouting != null){
+            ReadYourWrites readYourWrites = new ReadYourWrites(readRouting,
+                    Long.getLong("courses.db.readYourWritesMillis", 1000L),
+                    System.getProperty("courses.rateLimit.keyHeader", "X-Api-Key"));
+            metrics.counter("courses_db_primary_reads_total", "Reads that went to the primary database.",
+                    readRouting::getPrimaryReads);
+            metrics.counter("courses_db_replica_reads_total", "Reads that went to the read replica.",
+                    readRouting::getReplicaReads);
+            metrics.gauge("courses_db_pinned_clients", "Clients reading from the primary after a write.",
+                    readYourWrites::getPinnedClients);
+            before(readYourWrites.filter());
+        }
 
         /*
         * Next we will put the newly added course to the DAO to be inputted to the database
@@ -106,13 +411,13 @@ public class Api {
         * an object and return a String.
         * */
 
-        post("/courses", "application/json", (req, res)->{
+        post("/courses", "application/json", metrics.timed("POST", "/courses", admission.admit((req, res)->{
             Course course = gson.fromJson(req.body(), Course.class);
             courseDao.add(course); // use DAO to add the new course to database
             res.status(201); // status: created success
             // res.type("application/json");-> no need for this anymore the after method below already takes care of it
             return course;
-        }, gson::toJson);
+        })), json);
 
         /*
         * Next we want to write the get portion of the course. Which here we will use the GET request to the same URI
@@ -124,7 +429,63 @@ public class Api {
         * */
 
         get("/courses", "application/json",
-                (req, res) -> courseDao.findAll(), gson::toJson);
+                metrics.timed("GET", "/courses", admission.admit(compression.json((req, res) -> {
+            notModified(req, res, conditionalGet, readsCommitted, versions.etag("courses", versions.courses()));
+            /*
+            * ?ids=1,2,3 gets just those courses with one findByIds instead of one GET /courses/:id per course. They
+            * come back in the order of the ids, the ids without a course are listed as missing.
+            * */
+            if (req.queryParams("ids") != null){
+                List<Integer> ids = queryIds(req, "ids");
+                Map<Integer, Course> found = courseDao.findByIds(ids);
+                List<Course> courses = new ArrayList<>(found.size());
+                List<Integer> missing = new ArrayList<>();
+                for (Integer id : ids){
+                    Course course = found.get(id);
+                    if (course != null){
+                        courses.add(course);
+                    } else {
+                        missing.add(id);
+                    }
+                }
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("courses", courses);
+                result.put("missing", missing);
+                return result;
+            }
+            /*
+            * when the client asks for a page (?after=<id>&limit=<n>) we only load that page, see page() below
+            * */
+            if (isPaged(req)){
+                int limit = pageLimit(req);
+                return page(res, courseDao.findAll(queryInt(req, "after", 0), limit + 1), limit, Course::getId);
+            }
+            return courseDao.findAll();
+        }, json))));
+
+        /*
+        * The best rated (?by=avgRating, the default) or most reviewed (?by=reviewCount) courses, ?limit= (10) of them
+        * and only those with at least ?minReviews= (1) reviews. See CourseLeaderboard for how ties are ordered.
+        *
+        * NOTE: this has to come before /courses/:id or Spark would take "top" for an id.
+        * */
+        get("/courses/top", "application/json",
+                metrics.timed("GET", "/courses/top", admission.admit(compression.json((req, res) -> {
+            String by = req.queryParams("by");
+            CourseLeaderboard.Order order;
+            if (by == null || by.equals("avgRating")){
+                order = CourseLeaderboard.Order.AVERAGE_RATING;
+            } else if (by.equals("reviewCount")){
+                order = CourseLeaderboard.Order.REVIEW_COUNT;
+            } else {
+                throw new ApiError(400, "by must be avgRating or reviewCount");
+            }
+            int limit = queryInt(req, "limit", 10);
+            if (limit < 1){
+                throw new ApiError(400, "limit must be at least 1");
+            }
+            return leaderboard.top(order, Math.min(limit, MAX_PAGE_LIMIT), queryInt(req, "minReviews", 1));
+        }, json))));
 
         /*
         * We also need to be able to find a course by its id
@@ -135,7 +496,8 @@ public class Api {
         *
         * */
 
-        get("/courses/:id", "application/json", (req, res) ->{
+        get("/courses/:id", "application/json",
+                metrics.timed("GET", "/courses/:id", admission.admit(compression.json((req, res) ->{
             int id = Integer.parseInt(req.params("id"));
             Course course = courseDao.findById(id);
             /*
@@ -145,24 +507,18 @@ public class Api {
                 throw new ApiError(404, "Could Not find Course with id: " + id);
             }
             return course;
-        }, gson::toJson);
+        }, json))));
 
         /*
          * Next we will start to build HTTP method to handle addition of a new review to a particular available course
          * */
-        post("/courses/:courseId/reviews", "application/json", (req, res) -> {
+        post("/courses/:courseId/reviews", "application/json",
+                metrics.timed("POST", "/courses/:courseId/reviews", admission.admit((req, res) -> {
             /*
             * First we need to determine the courseId of the request by fetching the :courseId in the request
             * */
             int courseId = Integer.parseInt(req.params("courseId"));
 
-            /*
-             * If the course does not (by looking at courseId we need to throw exceptions ApiError 404 and exit!
-             * */
-            if (courseDao.findById(courseId) == null){
-                throw new ApiError(404, "Could not find Course with id: " + courseId);
-            }
-
             /*
             * Next we create a new review using data from the JSON but remember the courseId data is comes from the
             * request param above. Thus we need to ensure it Set using setCourseId()
@@ -170,12 +526,45 @@ public class Api {
             Review review = gson.fromJson(req.body(), Review.class);
             review.setCourseId(courseId); // <- this sets the course Id for the review before added to database!
 
+            /*
+            * A rating outside of 1 to 5 is a 400 in both modes. The database would store it, and the course_stats
+            * histogram has no place for it while the sum, min and max would count it.
+            * */
+            String invalid = invalidReason(review);
+            if (invalid != null){
+                throw new ApiError(400, invalid);
+            }
+
+            /*
+            * In the async mode we answer 202 Accepted with the submission (and where to look it up) as soon as the
+            * review is queued. The queue commits it later thus we check what the database would check right here: that
+            * the course exists. A full queue is a 503, the client should try again a bit later.
+            * */
+            if (reviewQueue != null){
+                if (courseDao.findById(courseId) == null){
+                    throw new ApiError(404, "Could not find Course with id: " + courseId);
+                }
+                ReviewSubmission submission = reviewQueue.submit(review);
+                if (submission == null){
+                    res.header("Retry-After", "1");
+                    throw new ApiError(503, "Too many reviews waiting to be saved, try again later");
+                }
+                res.status(202);
+                res.header("Location", "/review-submissions/" + submission.getId());
+                return submission;
+            }
+
             /*
             * Learning from the dao test that some cases involving foreign key in this case courseId often causes
             * runtime errors it is best to ensure catch it using DaoException
+            *
+            * We do not look the course up before adding: the foreign key of reviews.course_id already checks it in
+            * the same round trip, and the dao tells us with a CourseNotFoundException, which is our 404
             * */
             try {
                 reviewDao.add(review);
+            } catch (CourseNotFoundException ex){
+                throw new ApiError(404, ex.getMessage());
             } catch (DaoException ex){
                 /*
                 * when this exception happen throw it and apply to be apierror and pass the messaage with status 500
@@ -188,34 +577,228 @@ public class Api {
             * */
             res.status(201);
             return review;
-        }, gson::toJson);
+        })), json);
+
+        /*
+        * Batch version of the endpoint above for importers: the body is a JSON array of reviews and all of the valid
+        * ones are added with a single ReviewDao.addAll call (one connection, one transaction) instead of one request
+        * per review.
+        *
+        * Every entry is checked on its own. The invalid ones are reported back by their index in the array in
+        * "errors" and the valid ones (now with their ids) are in "created". Only when not a single review could be
+        * created the status is 400.
+        * */
+        int maxBatchSize = Integer.getInteger("courses.batch.maxSize", 1000);
+        post("/courses/:courseId/reviews/batch", "application/json",
+                metrics.timed("POST", "/courses/:courseId/reviews/batch", admission.admit((req, res) -> {
+            int courseId = Integer.parseInt(req.params("courseId"));
+            if (courseDao.findById(courseId) == null){
+                throw new ApiError(404, "Could not find Course with id: " + courseId);
+            }
+
+            JsonElement body;
+            try {
+                body = new JsonParser().parse(req.body());
+            } catch (JsonParseException ex){
+                throw new ApiError(400, "The body must be a JSON array of reviews");
+            }
+            if (!body.isJsonArray()){
+                throw new ApiError(400, "The body must be a JSON array of reviews");
+            }
+            JsonArray items = body.getAsJsonArray();
+            if (items.size() > maxBatchSize){
+                throw new ApiError(400, String.format("A batch can have at most %d reviews but this one has %d",
+                        maxBatchSize, items.size()));
+            }
+
+            List<Review> reviews = new ArrayList<>();
+            List<Map<String, Object>> errors = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++){
+                String problem;
+                try {
+                    Review review = gson.fromJson(items.get(i), Review.class);
+                    problem = review == null ? "review must be a JSON object" : invalidReason(review);
+                    if (problem == null){
+                        review.setCourseId(courseId);
+                        reviews.add(review);
+                        continue;
+                    }
+                } catch (JsonParseException ex){
+                    problem = "review is not valid JSON for a review: " + ex.getMessage();
+                }
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("index", i);
+                error.put("errorMsg", problem);
+                errors.add(error);
+            }
+
+            if (!reviews.isEmpty()){
+                try {
+                    reviewDao.addAll(reviews);
+                } catch (DaoException ex){
+                    throw new ApiError(500, ex.getMessage());
+                }
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("created", reviews);
+            result.put("errors", errors);
+            res.status(reviews.isEmpty() ? 400 : 201);
+            return result;
+        })), json);
+
+        /*
+        * Bulk import of courses and reviews as newline delimited JSON (see NdjsonImporter for the record format).
+        *
+        * The records are written in batches of courses.import.batchSize (or ?batchSize=<n> for one import). When it is
+        * done we answer with a report of what was added, how fast (rows per second) and which records failed.
+        *
+        * NOTE: we must not use req.body() here since it reads the whole body into a String, see rawBody() below.
+        * */
+        int importBatchSize = Integer.getInteger("courses.import.batchSize", 500);
+        post("/import", "application/json", metrics.timed("POST", "/import", admission.admit((req, res) -> {
+            int batchSize = queryInt(req, "batchSize", importBatchSize);
+            if (batchSize < 1){
+                throw new ApiError(400, "batchSize must be at least 1");
+            }
+            NdjsonImporter importer = new NdjsonImporter(courseDao, reviewDao, gson, batchSize);
+            return importer.importFrom(new InputStreamReader(rawBody(req), StandardCharsets.UTF_8));
+        })), json);
 
         /*
         * building the findAll() API controller
         * */
-        get("/reviews", "application/json", (req, res)->
-            reviewDao.findAll(), gson::toJson);
+        get("/reviews", "application/json",
+                metrics.timed("GET", "/reviews", admission.admit(compression.json((req, res)-> {
+            notModified(req, res, conditionalGet, readsCommitted, versions.etag("reviews", versions.reviews()));
+            if (isPaged(req)){
+                int limit = pageLimit(req);
+                return page(res, reviewDao.findAll(queryInt(req, "after", 0), limit + 1), limit, Review::getId);
+            }
+            /*
+            * The full list is streamed: every review goes from the ResultSet straight to the response, see
+            * streamJsonArray() below
+            * */
+            return streamJsonArray(req, res, gson, compression, Review.class, reviewDao::streamAll);
+        }, json))));
+
+        /*
+        * The reviews whose comment has the words of ?q=, best match first (see ReviewIndex for the ranking). ?courseId=
+        * only searches the reviews of one course and ?limit= (50) is how many hits we send back.
+        * */
+        get("/reviews/search", "application/json",
+                metrics.timed("GET", "/reviews/search", admission.admit(compression.json((req, res) -> {
+            if (searchIndex == null){
+                throw new ApiError(404, "Review search is not enabled");
+            }
+            String query = req.queryParams("q");
+            if (query == null || query.trim().isEmpty()){
+                throw new ApiError(400, "q must have the words to search for");
+            }
+            return searchIndex.search(query, queryInt(req, "courseId", 0), pageLimit(req));
+        }, json))));
 
         /*
         * building API controller for findByCourseId
         * */
         get("/courses/:courseId/reviews", "application/json",
-                (req, res) -> {
+                metrics.timed("GET", "/courses/:courseId/reviews", admission.admit(compression.json((req, res) -> {
             int courseId = Integer.parseInt(req.params("courseId"));
+            notModified(req, res, conditionalGet, readsCommitted,
+                    versions.etag("reviews." + courseId, versions.reviewsOf(courseId)));
 
             /*
-            * Let's just make sure if the Course is indeed exist
+            * Let's find all available reviews if exist (or just one page of them). The same query also checks that the
+            * Course is indeed exist: we get null when it does not, and an empty list when it has no reviews
             * */
-            if (courseDao.findById(courseId) == null){
+            boolean paged = isPaged(req);
+            List<Review> reviews;
+            int limit = 0;
+            if (paged){
+                limit = pageLimit(req);
+                reviews = reviewDao.findByCourseId(courseId, queryInt(req, "after", 0), limit + 1);
+            } else {
+                reviews = reviewDao.findByCourseId(courseId);
+            }
+            if (reviews == null){
                 throw new ApiError(404, "There is no such Course with id: " + courseId);
             }
+            return paged ? page(res, reviews, limit, Review::getId) : reviews;
+                }, json))));
 
-            /*
-            * If the course indeed exist let's find all available reviews if exist
-            * */
+        /*
+        * The rating aggregates of a course (count, sum, min, max, average and the histogram of 1 to 5 ratings). These
+        * are maintained on every added review, so this is one lookup instead of fetching and averaging all reviews.
+        * */
+        get("/courses/:id/stats", "application/json",
+                metrics.timed("GET", "/courses/:id/stats", admission.admit(compression.json((req, res) -> {
+            int id = Integer.parseInt(req.params("id"));
+            CourseStats stats = statsDao.findByCourseId(id);
+            if (stats == null){
+                throw new ApiError(404, "Could Not find Course with id: " + id);
+            }
+            return stats;
+        }, json))));
 
-            return reviewDao.findByCourseId(courseId);
-                }, gson::toJson);
+        /*
+        * In case the aggregates are ever off (for example reviews inserted straight into the database) they can be
+        * recomputed from the reviews table
+        * */
+        post("/admin/stats/rebuild", "application/json", metrics.timed("POST", "/admin/stats/rebuild", (req, res) -> {
+            Map<String, Object> result = new HashMap<>();
+            try {
+                result.put("courses", statsDao.rebuild());
+            } catch (DaoException ex){
+                throw new ApiError(500, ex.getMessage());
+            }
+            return result;
+        }), json);
+
+        /*
+        * Exposing the connection pool statistics (active, idle, waiters and the acquire latency) so we can see how the
+        * pool behaves under load
+        * */
+        get("/admin/pool", "application/json",
+                metrics.timed("GET", "/admin/pool", (req, res) -> pool.getStats()), json);
+
+        /*
+        * and the course cache hit, miss and eviction counts, each hit is a database round trip we saved
+        * */
+        get("/admin/cache", "application/json", metrics.timed("GET", "/admin/cache", (req, res) -> {
+            if (courseCache == null){
+                throw new ApiError(404, "The course cache is not enabled");
+            }
+            return courseCache.getStats();
+        }), json);
+
+        /*
+        * and how many conditional GETs we could answer with 304 Not Modified
+        * */
+        get("/admin/etags", "application/json",
+                metrics.timed("GET", "/admin/etags", (req, res) -> conditionalGet.getStats()), json);
+
+        /*
+        * Where a client looks up a review it posted in the async mode: QUEUED, COMMITTED (with the id of the review)
+        * or FAILED (with the reason)
+        * */
+        get("/review-submissions/:id", "application/json",
+                metrics.timed("GET", "/review-submissions/:id", admission.admit((req, res) -> {
+            long id = Long.parseLong(req.params("id"));
+            ReviewSubmission submission = reviewQueue == null ? null : reviewQueue.find(id);
+            if (submission == null){
+                throw new ApiError(404, "Could not find review submission with id: " + id);
+            }
+            return submission;
+        })), json);
+
+        /*
+        * All of our metrics in the Prometheus text format, so a Prometheus server can scrape them. This route is not
+        * timed itself, scraping should not show up in the numbers it scrapes.
+        * */
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4; charset=utf-8");
+            return metrics.scrape();
+        });
 
         /*
         * Even if both of our get and post request ensure to return a JSON object by definition to gson::toJson
@@ -226,7 +809,9 @@ public class Api {
         * after that all response will be using JSON object ("application/json")
         * */
         after((req, res)-> {
-            res.type("application/json");
+            if (res.raw().getContentType() == null){ // <- unless the route chose its own type (GET /metrics)
+                res.type("application/json");
+            }
         });
 
         /*
@@ -240,27 +825,236 @@ public class Api {
             * */
             ApiError err = (ApiError)exc;
             /*
-            * Next we build the JSON response. To do this like before we need to make a Map of variable and value
-            * onlyu this time the value is and Object rather just a string since there will be status which is an
-            * integer and message which is a String.
-            *
-            * Note for this message since in the ApiError class we pass the msg to superclass in the RuntimeException
-            * class there is one getter method for the message thus we can just use that through the ApiError object
-            * err
+            * Next we build the JSON response: the status and the message of the error. We used to copy these into a
+            * Map first, now the ApiErrorTypeAdapter registered on our gson writes them straight from the ApiError
+            * object err (the message comes from the getter of its RuntimeException superclass)
             * */
-            Map<String, Object> jsonMap = new HashMap<>();
-            jsonMap.put("status", err.getStatus());
-            jsonMap.put("errorMsg", err.getMessage());
             /*
             * Now let's build the response:
             * 1. since we build it from scratch we need to determine the type of data which is JSON
             * 2. determine the status of the response
-            * 3. put the body of the response which already mapped in jsonMap
+            * 3. put the body of the response which is the JSON of err
             * */
             res.type("application/json");
             res.status(err.getStatus());
-            res.body(gson.toJson(jsonMap));
+            res.body(gson.toJson(err, ApiError.class));
         });
 
+        /*
+        * Spark ignites the embedded server in its own thread, we wait for it here so that whoever called main (for
+        * example our ApiTest) can send requests as soon as main returns
+        * */
+        awaitInitialization();
+    }
+
+    /*
+    * The checks a posted review has to pass (alone or in a batch), gives back why it is invalid or null when it is fine
+    * */
+    private static String invalidReason(Review review) {
+        if (review.getRating() < Review.MIN_RATING || review.getRating() > Review.MAX_RATING){
+            return String.format("rating must be between %d and %d but was %d",
+                    Review.MIN_RATING, Review.MAX_RATING, review.getRating());
+        }
+        return null;
+    }
+
+    /*
+    * The request body as a stream that is read straight from the connection.
+    *
+    * Spark wraps the servlet request in a wrapper that copies the whole body into a byte array the first time anyone
+    * asks for its input stream. For a bulk import that could be gigabytes, thus we go around the wrapper and read from
+    * the original request of Jetty.
+    * */
+    private static InputStream rawBody(Request req) throws IOException {
+        ServletRequest raw = req.raw();
+        while (raw instanceof ServletRequestWrapper){
+            raw = ((ServletRequestWrapper) raw).getRequest();
+        }
+        return raw.getInputStream();
+    }
+
+    /*
+    * Keyset pagination helpers for the list endpoints.
+    *
+    * A client pages through a list with ?after=<last id it has seen>&limit=<page size>. Only when one of those two is
+    * present we page, so the clients that expect the whole list keep working.
+    *
+    * We always ask the DAO for one row more than the limit: if it comes back we know there is a next page and we tell
+    * the client where it starts with the X-Next-Cursor header (the value to send as "after" next time). This way the
+    * memory used by a request is bounded by the page size and not by the size of the table.
+    * */
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_LIMIT = Integer.getInteger("courses.page.defaultLimit", 50);
+    private static final int MAX_PAGE_LIMIT = Integer.getInteger("courses.page.maxLimit", 500);
+
+    private static boolean isPaged(Request req) {
+        return req.queryParams("after") != null || req.queryParams("limit") != null;
+    }
+
+    private static int pageLimit(Request req) {
+        int limit = queryInt(req, "limit", DEFAULT_PAGE_LIMIT);
+        if (limit < 1){
+            throw new ApiError(400, "limit must be at least 1");
+        }
+        return Math.min(limit, MAX_PAGE_LIMIT);
+    }
+
+    private static int queryInt(Request req, String name, int defaultValue) {
+        String value = req.queryParams(name);
+        if (value == null){
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex){
+            throw new ApiError(400, String.format("%s must be a number but was: %s", name, value));
+        }
+    }
+
+    /*
+    * A comma separated list of ids, every id only once (in the order of its first appearance) and at most
+    * MAX_PAGE_LIMIT of them
+    * */
+    private static List<Integer> queryIds(Request req, String name) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (String value : req.queryParams(name).split(",")){
+            if (value.trim().isEmpty()){
+                continue;
+            }
+            try {
+                ids.add(Integer.parseInt(value.trim()));
+            } catch (NumberFormatException ex){
+                throw new ApiError(400, String.format("%s must be numbers but had: %s", name, value));
+            }
+        }
+        if (ids.isEmpty()){
+            throw new ApiError(400, name + " must have at least one id");
+        }
+        if (ids.size() > MAX_PAGE_LIMIT){
+            throw new ApiError(400, String.format("%s can have at most %d ids", name, MAX_PAGE_LIMIT));
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private static <T> List<T> page(Response res, List<T> rows, int limit, ToIntFunction<T> idOf) {
+        if (rows.size() > limit){
+            List<T> page = rows.subList(0, limit);
+            res.header(NEXT_CURSOR_HEADER, String.valueOf(idOf.applyAsInt(page.get(limit - 1))));
+            return page;
+        }
+        return rows;
+    }
+
+    /*
+    * Conditional GET: every response of the route gets the ETag of the current version of its data. When the client
+    * sends that same ETag back in If-None-Match its copy is still current, so we halt right here with 304 Not Modified
+    * and an empty body, before any query and any serialization.
+    *
+    * The version must be read before the query (we are called first thing in the route): if a write lands between the
+    * two the client gets the new data with the old ETag and simply fetches once more next time.
+    *
+    * When the reads of the request do not see every committed write (readsCommitted is false, they go to a replica)
+    * the data may be older than the version, so we neither send the ETag nor answer 304.
+    * */
+    private static void notModified(Request req, Response res, ConditionalGet conditionalGet,
+                                    BooleanSupplier readsCommitted, String etag) {
+        if (!readsCommitted.getAsBoolean()){
+            return;
+        }
+        res.header("ETag", etag);
+        if (conditionalGet.isNotModified(req.headers("If-None-Match"), etag)){
+            halt(304);
+        }
+    }
+
+    /*
+    * Writes a JSON array straight onto the servlet output stream while the rows come out of the database.
+    *
+    * Building the List first and then the whole JSON String (what gson::toJson does) costs memory proportional to the
+    * number of rows. Here the source calls us back for every row and we write it right away with a gson JsonWriter,
+    * so memory stays constant and the client gets the first bytes as soon as the first row is read. Because we do not
+    * know the length upfront Jetty sends the body with chunked transfer encoding.
+    *
+    * The rows go through the Compression stream, so the array is compressed on the fly while it is written.
+    *
+    * When we are done we close the writer, which commits the response. Spark then sees the committed response and does
+    * not write the (empty) return value of the route anymore.
+    * */
+    private static <T> String streamJsonArray(Request req, Response res, Gson gson, Compression compression,
+                                              Class<T> type, Consumer<Consumer<T>> source) throws IOException {
+        res.type("application/json");
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(compression.open(req, res), StandardCharsets.UTF_8)))){
+            writer.beginArray();
+            source.accept(row -> gson.toJson(row, type, writer));
+            writer.endArray();
+        }
+        return "";
+    }
+
+    /*
+    * Stops the server, lets the review queue commit what it still holds, writes the last snapshot of the in memory
+    * backend, closes the review log and then closes the pooled database connections. Because the pool keeps
+    * connections open an in memory database would otherwise live on after the server is gone (and the same for the
+    * pool of the read replica).
+    * */
+    public static void stop() {
+        Spark.stop();
+        if (reviewQueue != null){
+            closeQuietly(reviewQueue);
+            reviewQueue = null;
+        }
+        if (snapshot != null){
+            try {
+                snapshot.close();
+            } catch (IOException ex){
+                System.err.println("Could not write the last snapshot: " + ex);
+            }
+            snapshot = null;
+        }
+        if (reviewLog != null){
+            try {
+                reviewLog.close();
+            } catch (IOException ex){
+                System.err.println("Could not close the review log: " + ex);
+            }
+            reviewLog = null;
+        }
+        if (pool != null){
+            pool.close();
+            pool = null;
+        }
+        if (readPool != null){
+            readPool.close();
+            readPool = null;
+        }
+    }
+
+    /*
+    * a ConnectionPool on the datasource, tuned with the courses.pool system properties
+    * */
+    private static ConnectionPool openPool(String datasource) {
+        try {
+            return new ConnectionPool(
+                    datasource, "", "",
+                    Integer.getInteger("courses.pool.min", 2),
+                    Integer.getInteger("courses.pool.max", 10),
+                    Long.getLong("courses.pool.acquireTimeoutMillis", 5000L),
+                    Long.getLong("courses.pool.idleTimeoutMillis", 60000L),
+                    Integer.getInteger("courses.pool.statementCacheSize", 64));
+        } catch (SQLException ex){
+            throw new IllegalStateException("Could not open the database " + datasource, ex);
+        }
+    }
+
+    private static void closeQuietly(ReviewWriteQueue queue) {
+        try {
+            if (!queue.close(30, TimeUnit.SECONDS)){
+                System.err.printf("Gave up waiting for the review queue, %d reviews were not saved%n",
+                        queue.getDepth());
+            }
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }
     }
 }
@@ -0,0 +1,154 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.Course;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-through cache that can be wrapped around any CourseDao (a decorator).
+ *
+ * Courses are read far more often than they are written: every GET /courses/:id and both of the review endpoints look
+ * up the course by its id. This class keeps the most recently used courses in memory so those lookups do not have to
+ * go to the database at all.
+ *
+ * The cache is bounded by maxSize and evicts the least recently used course when it is full (a LinkedHashMap in access
+ * order does exactly that). Adding a course puts it straight in the cache. Courses that are not found are not cached,
+ * so a course added later by someone else can still be found.
+ *
+ * NOTE: the cached Course objects are shared, callers must not modify the courses they get back.
+ * */
+public class CachingCourseDao implements CourseDao {
+    private final CourseDao delegate;
+    private final int maxSize;
+    private final Map<Integer, Course> cache;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CachingCourseDao(CourseDao delegate, int maxSize) {
+        if (maxSize < 1){
+            throw new IllegalArgumentException("Cache size must be at least 1 but was " + maxSize);
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Integer, Course>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Course> eldest) {
+                if (size() > CachingCourseDao.this.maxSize){
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void add(Course course) throws DaoException {
+        delegate.add(course);
+        synchronized (this){
+            cache.put(course.getId(), course);
+        }
+    }
+
+    @Override
+    public void addAll(List<Course> courses) throws DaoException {
+        delegate.addAll(courses);
+        synchronized (this){
+            for (Course course : courses){
+                cache.put(course.getId(), course);
+            }
+        }
+    }
+
+    @Override
+    public List<Course> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Course> findAll(int afterId, int limit) {
+        return delegate.findAll(afterId, limit);
+    }
+
+    @Override
+    public Course findById(int id) {
+        synchronized (this){
+            Course cached = cache.get(id);
+            if (cached != null){
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        /*
+        * the database call is made outside of the lock, two threads missing the same id at the same time will both
+        * load it but that is cheaper than making every reader wait for the database
+        * */
+        Course course = delegate.findById(id);
+        if (course != null){
+            synchronized (this){
+                cache.put(id, course);
+            }
+        }
+        return course;
+    }
+
+    @Override
+    public Map<Integer, Course> findByIds(Collection<Integer> ids) {
+        /*
+        * The cached courses come from the cache and only the rest from the delegate, in one findByIds call. Every id
+        * counts as a hit or a miss just like a findById would.
+        * */
+        Map<Integer, Course> found = new LinkedHashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        synchronized (this){
+            for (Integer id : ids){
+                if (found.containsKey(id)){
+                    continue;
+                }
+                Course cached = cache.get(id);
+                if (cached != null){
+                    hits++;
+                } else {
+                    misses++;
+                    missing.add(id);
+                }
+                /*
+                * a null for now keeps the place of the id in the order of the ids
+                * */
+                found.put(id, cached);
+            }
+        }
+        if (missing.isEmpty()){
+            return found;
+        }
+
+        Map<Integer, Course> loaded = delegate.findByIds(missing);
+        synchronized (this){
+            for (Map.Entry<Integer, Course> entry : loaded.entrySet()){
+                cache.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Integer id : missing){
+            Course course = loaded.get(id);
+            if (course != null){
+                found.put(id, course);
+            } else {
+                found.remove(id);
+            }
+        }
+        return found;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(cache.size(), maxSize, hits, misses, evictions);
+    }
+}
@@ -0,0 +1,51 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.model.CourseStats;
+import com.teamtreehouse.courses.model.Review;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A CourseStatsDao for the review stores without a course_stats table (InMemoryReviewDao, MappedLogReviewDao). Both
+ * keep the reviews of a course right next to each other, so we simply sum up the ratings when the stats are asked for.
+ * */
+public class ComputedCourseStatsDao implements CourseStatsDao {
+    private final ReviewDao reviewDao;
+
+    public ComputedCourseStatsDao(ReviewDao reviewDao) {
+        this.reviewDao = reviewDao;
+    }
+
+    @Override
+    public CourseStats findByCourseId(int courseId) {
+        List<Review> reviews = reviewDao.findByCourseId(courseId);
+        if (reviews == null){
+            return null;
+        }
+        long sum = 0;
+        Integer min = null;
+        Integer max = null;
+        int[] ratingCounts = new int[Review.MAX_RATING - Review.MIN_RATING + 1];
+        for (Review review : reviews){
+            int rating = review.getRating();
+            sum += rating;
+            min = min == null || rating < min ? rating : min;
+            max = max == null || rating > max ? rating : max;
+            if (rating >= Review.MIN_RATING && rating <= Review.MAX_RATING){
+                ratingCounts[rating - Review.MIN_RATING]++;
+            }
+        }
+        return new CourseStats(courseId, reviews.size(), sum, min, max, ratingCounts);
+    }
+
+    /*
+    * the stats are computed on every read, there is nothing to rebuild, we only tell how many courses have stats
+    * */
+    @Override
+    public int rebuild() {
+        BitSet courses = new BitSet();
+        reviewDao.streamAll(review -> courses.set(review.getCourseId()));
+        return courses.cardinality();
+    }
+}
@@ -4,7 +4,9 @@ package com.teamtreehouse.courses.dao;
 import com.teamtreehouse.courses.exc.DaoException;
 import com.teamtreehouse.courses.model.Course;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**Entry 2: Accessing Data
  * This is the standard Dao interface
@@ -13,11 +15,21 @@ import java.util.List;
  * we need to be able to:
  * 1. add new course
  * 2. list all available courses
+ * 3. list one page of courses at a time (keyset pagination: the courses with an id after the given one)
+ * 4. add many courses at once, all of them or none of them
+ * 5. find many courses by their ids at once: we get the courses found by their id, in the order the ids were given,
+ * and the ids without a course are simply not in there
  * */
 public interface CourseDao {
     void add(Course course) throws DaoException;
 
+    void addAll(List<Course> courses) throws DaoException;
+
     List<Course> findAll();
 
+    List<Course> findAll(int afterId, int limit);
+
     Course findById(int id);
+
+    Map<Integer, Course> findByIds(Collection<Integer> ids);
 }
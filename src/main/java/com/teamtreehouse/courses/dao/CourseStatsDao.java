@@ -0,0 +1,18 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.CourseStats;
+
+/**
+ * Reads the per course rating aggregates.
+ *
+ * The aggregates themselves are kept up to date by the ReviewDao when reviews are added (in the same transaction as
+ * the review), this interface only needs to:
+ * 1. find the stats of one course (null when the course does not exist)
+ * 2. rebuild all stats from the reviews table, in case they ever need to be recomputed
+ * */
+public interface CourseStatsDao {
+    CourseStats findByCourseId(int courseId);
+
+    int rebuild() throws DaoException;
+}
@@ -0,0 +1,53 @@
+package com.teamtreehouse.courses.dao;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters of our data: one for the courses table, one for the reviews table and one for the reviews of every
+ * course. The VersionedCourseDao and VersionedReviewDao bump them after every successful add, thus as long as a counter
+ * did not move the data behind it did not change either, and the Api can answer a conditional GET without a query.
+ *
+ * The counters only live in this process and start at 0 again after a restart, that is why every ETag also holds the
+ * epoch (the time this object was created): an ETag from before a restart never matches a new one.
+ *
+ * NOTE: the counters only see the writes that go through the versioned daos. Rows written straight into the database
+ * (or by another process sharing it) are not noticed.
+ * */
+public class DataVersions {
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong courses = new AtomicLong();
+    private final AtomicLong reviews = new AtomicLong();
+    private final ConcurrentMap<Integer, AtomicLong> reviewsByCourse = new ConcurrentHashMap<>();
+
+    public long courses() {
+        return courses.get();
+    }
+
+    public long reviews() {
+        return reviews.get();
+    }
+
+    public long reviewsOf(int courseId) {
+        AtomicLong version = reviewsByCourse.get(courseId);
+        return version == null ? 0 : version.get();
+    }
+
+    void coursesChanged() {
+        courses.incrementAndGet();
+    }
+
+    void reviewsChanged(int courseId) {
+        reviewsByCourse.computeIfAbsent(courseId, id -> new AtomicLong()).incrementAndGet();
+        reviews.incrementAndGet();
+    }
+
+    /*
+    * A strong ETag (quoted, see RFC 7232) for one version of a resource, like "jq8x1c2-courses-5". The name tells the
+    * resources apart so the tag of one can never match another that happens to have the same version.
+    * */
+    public String etag(String resource, long version) {
+        return "\"" + epoch + "-" + resource + "-" + version + "\"";
+    }
+}
@@ -0,0 +1,65 @@
+package com.teamtreehouse.courses.dao;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An int keyed map for the in memory daos. Our ids are handed out one after the other from 1, so the id itself is the
+ * index into an array: no hashing, no boxing of the key and no entry objects, a lookup is a single array read.
+ *
+ * Writers take the lock of the table, readers take no lock at all. The array is an AtomicReferenceArray (every slot
+ * is read and written like a volatile field) and when it is full we copy it into one twice the size and publish that
+ * through the volatile slots field, so a reader sees either the old array or the new one, both complete.
+ *
+ * Values are never removed, which is what lets readers walk the table without locks: a value at or below lastId()
+ * is there for good.
+ * */
+class IdTable<T> {
+    private volatile AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(16);
+    private volatile int lastId;
+
+    /*
+    * puts the value under the next free id and gives back that id
+    * */
+    synchronized int append(T value) {
+        int id = lastId + 1;
+        put(id, value);
+        return id;
+    }
+
+    /*
+    * puts the value under the given id, for the tables whose ids come from somewhere else (the courses of the reviews,
+    * the ids in a snapshot). The lastId is only moved once the value is in its slot, readers that go by lastId never
+    * see an empty slot.
+    * */
+    synchronized void put(int id, T value) {
+        AtomicReferenceArray<T> current = slots;
+        if (id >= current.length()){
+            int length = current.length();
+            while (id >= length){
+                length *= 2;
+            }
+            AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < current.length(); i++){
+                grown.lazySet(i, current.get(i));
+            }
+            slots = grown;
+            current = grown;
+        }
+        current.set(id, value);
+        if (id > lastId){
+            lastId = id;
+        }
+    }
+
+    T get(int id) {
+        AtomicReferenceArray<T> current = slots;
+        return id > 0 && id < current.length() ? current.get(id) : null;
+    }
+
+    /*
+    * the highest id in use, read it before walking the table with get()
+    * */
+    int lastId() {
+        return lastId;
+    }
+}
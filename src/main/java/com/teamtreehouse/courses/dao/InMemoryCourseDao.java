@@ -0,0 +1,100 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.Course;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A CourseDao that keeps the courses in memory only, for the read heavy nodes where the round trip to H2 is all
+ * overhead (-Dcourses.backend=memory, see Api). The courses live in an IdTable by their id: findById is one array read
+ * and the pages of findAll walk the array from afterId on, without any lock.
+ *
+ * We keep our own copy of every course added, the caller can go on changing its Course object. The courses we give
+ * back are that copy though, like with the CachingCourseDao callers must not modify them.
+ *
+ * InMemorySnapshot writes the courses to a file and reads them back after a restart.
+ * */
+public class InMemoryCourseDao implements CourseDao {
+    private final IdTable<Course> courses = new IdTable<>();
+
+    @Override
+    public void add(Course course) throws DaoException {
+        course.setId(append(course));
+    }
+
+    @Override
+    public void addAll(List<Course> courses) throws DaoException {
+        /*
+        * nothing in here can fail half way, thus all of them or none of them comes for free. We hold the lock of the
+        * table for the whole list so the ids of the list are in one run, like they are in the database.
+        * */
+        int[] ids = new int[courses.size()];
+        synchronized (this.courses){
+            for (int i = 0; i < ids.length; i++){
+                ids[i] = append(courses.get(i));
+            }
+        }
+        for (int i = 0; i < ids.length; i++){
+            courses.get(i).setId(ids[i]);
+        }
+    }
+
+    @Override
+    public List<Course> findAll() {
+        return findAll(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Course> findAll(int afterId, int limit) {
+        int lastId = courses.lastId();
+        List<Course> page = new ArrayList<>(Math.max(0, Math.min(limit, lastId - afterId)));
+        for (int id = Math.max(afterId, 0) + 1; id <= lastId && page.size() < limit; id++){
+            page.add(courses.get(id));
+        }
+        return page;
+    }
+
+    @Override
+    public Course findById(int id) {
+        return courses.get(id);
+    }
+
+    @Override
+    public Map<Integer, Course> findByIds(Collection<Integer> ids) {
+        Map<Integer, Course> found = new LinkedHashMap<>();
+        for (Integer id : ids){
+            Course course = courses.get(id);
+            if (course != null){
+                found.put(id, course);
+            }
+        }
+        return found;
+    }
+
+    int lastId() {
+        return courses.lastId();
+    }
+
+    /*
+    * puts a course back under its own id, for InMemorySnapshot
+    * */
+    void restore(Course course) {
+        courses.put(course.getId(), course);
+    }
+
+    /*
+    * our copy has to carry its id before anyone can read it, thus we pick the id ourselves under the lock of the table
+    * */
+    private int append(Course course) {
+        synchronized (courses){
+            Course copy = new Course(course.getName(), course.getUrl());
+            copy.setId(courses.lastId() + 1);
+            return courses.append(copy);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.CourseNotFoundException;
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.Review;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A ReviewDao that keeps the reviews in memory only, the partner of InMemoryCourseDao (it asks that one whether a
+ * course exists, like the foreign key does in the database).
+ *
+ * The reviews live in an IdTable by their id. For every course we keep the ids of its reviews in a plain int array
+ * (CourseReviews), again in an IdTable by the id of the course: 4 bytes per review instead of a List of boxed
+ * Integers, already in id order, so a page of the reviews of a course is a binary search for afterId and a short walk.
+ *
+ * Writers take the lock of the dao, readers never lock. Like InMemoryCourseDao we store our own copies and hand those
+ * out, callers must not modify the reviews they get back.
+ * */
+public class InMemoryReviewDao implements ReviewDao {
+    private final InMemoryCourseDao courseDao;
+    private final IdTable<Review> reviews = new IdTable<>();
+    private final IdTable<CourseReviews> byCourse = new IdTable<>();
+
+    public InMemoryReviewDao(InMemoryCourseDao courseDao) {
+        this.courseDao = courseDao;
+    }
+
+    @Override
+    public void add(Review review) throws DaoException {
+        if (courseDao.findById(review.getCourseId()) == null){
+            throw new CourseNotFoundException(null, review.getCourseId());
+        }
+        int id;
+        synchronized (this){
+            id = append(review);
+        }
+        review.setId(id);
+    }
+
+    @Override
+    public void addAll(List<Review> reviews) throws DaoException {
+        /*
+        * all of them or none of them: every course is checked before the first review goes in, after that nothing
+        * can fail anymore
+        * */
+        for (Review review : reviews){
+            if (courseDao.findById(review.getCourseId()) == null){
+                throw new CourseNotFoundException(null, review.getCourseId());
+            }
+        }
+        int[] ids = new int[reviews.size()];
+        synchronized (this){
+            for (int i = 0; i < ids.length; i++){
+                ids[i] = append(reviews.get(i));
+            }
+        }
+        for (int i = 0; i < ids.length; i++){
+            reviews.get(i).setId(ids[i]);
+        }
+    }
+
+    @Override
+    public List<Review> findAll() {
+        return findAll(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Review> findAll(int afterId, int limit) {
+        int lastId = reviews.lastId();
+        List<Review> page = new ArrayList<>(Math.max(0, Math.min(limit, lastId - afterId)));
+        for (int id = Math.max(afterId, 0) + 1; id <= lastId && page.size() < limit; id++){
+            page.add(reviews.get(id));
+        }
+        return page;
+    }
+
+    @Override
+    public void streamAll(Consumer<Review> visitor) {
+        int lastId = reviews.lastId();
+        for (int id = 1; id <= lastId; id++){
+            visitor.accept(reviews.get(id));
+        }
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId) {
+        return findByCourseId(courseId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId, int afterId, int limit) {
+        if (courseDao.findById(courseId) == null){
+            return null;
+        }
+        CourseReviews course = byCourse.get(courseId);
+        if (course == null){
+            return new ArrayList<>();
+        }
+        /*
+        * count before ids: the writer puts the id in the array before it moves count, so every id below the count we
+        * read is in the array we read after it
+        * */
+        int count = course.count;
+        int[] ids = course.ids;
+        int from = Arrays.binarySearch(ids, 0, count, afterId);
+        from = from >= 0 ? from + 1 : -from - 1;
+        int to = (int) Math.min(count, (long) from + limit);
+        List<Review> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++){
+            page.add(reviews.get(ids[i]));
+        }
+        return page;
+    }
+
+    int lastId() {
+        return reviews.lastId();
+    }
+
+    Review get(int id) {
+        return reviews.get(id);
+    }
+
+    /*
+    * puts a review back under its own id, for InMemorySnapshot which restores them in id order
+    * */
+    synchronized void restore(Review review) {
+        reviews.put(review.getId(), review);
+        courseReviews(review.getCourseId()).add(review.getId());
+    }
+
+    /*
+    * called with the lock of the dao held
+    * */
+    private int append(Review review) {
+        Review copy = new Review(review.getCourseId(), review.getRating(), review.getComment());
+        copy.setId(reviews.lastId() + 1);
+        int id = reviews.append(copy);
+        courseReviews(review.getCourseId()).add(id);
+        return id;
+    }
+
+    private CourseReviews courseReviews(int courseId) {
+        CourseReviews course = byCourse.get(courseId);
+        if (course == null){
+            course = new CourseReviews();
+            byCourse.put(courseId, course);
+        }
+        return course;
+    }
+
+    /*
+    * the ids of the reviews of one course in id order, only changed with the lock of the dao held
+    * */
+    private static class CourseReviews {
+        private volatile int[] ids = new int[4];
+        private volatile int count;
+
+        void add(int id) {
+            if (count == ids.length){
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count] = id;
+            count = count + 1;
+        }
+    }
+}
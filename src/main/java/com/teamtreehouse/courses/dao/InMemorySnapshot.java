@@ -0,0 +1,188 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes everything in an InMemoryCourseDao and InMemoryReviewDao to a file and reads it back, so an in memory node
+ * keeps its data over a restart. start() writes a snapshot every interval (when anything changed) and close() writes
+ * a last one.
+ *
+ * Because the in memory tables only ever grow we need no lock for a consistent snapshot: we take the last review id
+ * first and the last course id after it, then every review up to there belongs to a course up to there, and the
+ * writes that come in meanwhile are simply in the next snapshot.
+ *
+ * The file is written next to the old one and then moved over it, so a crash half way through a snapshot leaves the
+ * previous snapshot as it was. The format is binary: a header, the courses and the reviews in id order, each list ends
+ * with an id of 0.
+ * */
+public class InMemorySnapshot {
+    private static final int MAGIC = 0x43525331; // CRS1
+    private static final int VERSION = 1;
+
+    private final InMemoryCourseDao courseDao;
+    private final InMemoryReviewDao reviewDao;
+    private final Path file;
+    private ScheduledExecutorService scheduler;
+    private int savedCourses = -1;
+    private int savedReviews = -1;
+
+    public InMemorySnapshot(InMemoryCourseDao courseDao, InMemoryReviewDao reviewDao, Path file) {
+        this.courseDao = courseDao;
+        this.reviewDao = reviewDao;
+        this.file = file;
+    }
+
+    /*
+    * Reads the snapshot into the (empty) daos, gives back false when there is no snapshot yet
+    * */
+    public boolean restore() throws IOException {
+        if (courseDao.lastId() != 0 || reviewDao.lastId() != 0){
+            throw new IllegalStateException("Snapshots can only be restored into empty daos");
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+            if (in.readInt() != MAGIC || in.readInt() != VERSION){
+                throw new IOException(file + " is not a course snapshot of version " + VERSION);
+            }
+            for (int id = in.readInt(); id != 0; id = in.readInt()){
+                Course course = new Course(readString(in), readString(in));
+                course.setId(id);
+                courseDao.restore(course);
+            }
+            for (int id = in.readInt(); id != 0; id = in.readInt()){
+                Review review = new Review(in.readInt(), in.readInt(), readString(in));
+                review.setId(id);
+                reviewDao.restore(review);
+            }
+        } catch (NoSuchFileException ex){
+            return false;
+        }
+        synchronized (this){
+            savedCourses = courseDao.lastId();
+            savedReviews = reviewDao.lastId();
+        }
+        return true;
+    }
+
+    /*
+    * Writes a snapshot unless nothing was added since the last one, gives back whether it wrote one
+    * */
+    public synchronized boolean save() throws IOException {
+        int lastReview = reviewDao.lastId();
+        int lastCourse = courseDao.lastId();
+        if (lastReview == savedReviews && lastCourse == savedCourses){
+            return false;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (int id = 1; id <= lastCourse; id++){
+                Course course = courseDao.findById(id);
+                if (course != null){
+                    out.writeInt(id);
+                    writeString(out, course.getName());
+                    writeString(out, course.getUrl());
+                }
+            }
+            out.writeInt(0);
+            for (int id = 1; id <= lastReview; id++){
+                Review review = reviewDao.get(id);
+                if (review != null){
+                    out.writeInt(id);
+                    out.writeInt(review.getCourseId());
+                    out.writeInt(review.getRating());
+                    writeString(out, review.getComment());
+                }
+            }
+            out.writeInt(0);
+            out.flush();
+            stream.getFD().sync(); // <- on disk before it replaces the old snapshot
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        savedCourses = lastCourse;
+        savedReviews = lastReview;
+        return true;
+    }
+
+    /*
+    * writes a snapshot every interval from a background thread, a failed snapshot is reported and tried again the
+    * next time
+    * */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if (scheduler != null){
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                save();
+            } catch (IOException | RuntimeException ex){
+                System.err.println("Could not write the snapshot " + file + ": " + ex);
+            }
+        }, interval, interval, unit);
+    }
+
+    /*
+    * stops the background snapshots and writes the last one
+    * */
+    public void close() throws IOException {
+        ScheduledExecutorService running;
+        synchronized (this){
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running != null){
+            running.shutdown();
+            try {
+                running.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+            }
+        }
+        save();
+    }
+
+    /*
+    * a length (-1 for null) and the UTF-8 bytes, DataOutputStream.writeUTF would stop at 64KB
+    * */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null){
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0){
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
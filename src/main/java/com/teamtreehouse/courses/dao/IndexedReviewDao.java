@@ -0,0 +1,59 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.Review;
+import com.teamtreehouse.courses.search.ReviewIndex;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Adds the reviews to the search ReviewIndex once the delegate added them (and gave them their ids), so a new review
+ * can be found right after it was posted. Reviews the delegate fails to add never reach the index.
+ * */
+public class IndexedReviewDao implements ReviewDao {
+    private final ReviewDao delegate;
+    private final ReviewIndex index;
+
+    public IndexedReviewDao(ReviewDao delegate, ReviewIndex index) {
+        this.delegate = delegate;
+        this.index = index;
+    }
+
+    @Override
+    public void add(Review review) throws DaoException {
+        delegate.add(review);
+        index.add(review);
+    }
+
+    @Override
+    public void addAll(List<Review> reviews) throws DaoException {
+        delegate.addAll(reviews);
+        index.addAll(reviews);
+    }
+
+    @Override
+    public List<Review> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Review> findAll(int afterId, int limit) {
+        return delegate.findAll(afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<Review> visitor) {
+        delegate.streamAll(visitor);
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId) {
+        return delegate.findByCourseId(courseId);
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId, int afterId, int limit) {
+        return delegate.findByCourseId(courseId, afterId, limit);
+    }
+}
@@ -0,0 +1,391 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.CourseNotFoundException;
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.Review;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A ReviewDao that stores the reviews in an append only log of memory mapped segment files instead of H2 rows.
+ * Reviews never change once written, so all we ever do is append to the end of the log, and reading is following an
+ * offset into a mapped file: no SQL, no JDBC, no read() calls, the operating system pages the data in for us.
+ *
+ * The log is a directory of segments (reviews-000001.log, reviews-000002.log, ...) of segmentBytes each. A record is
+ *
+ *   int length of the payload | int CRC32 of the payload | byte flags | int id | int courseId | int rating |
+ *   int length of the comment in UTF-8 bytes (-1 for null) | the comment
+ *
+ * and a length of 0 ends a segment (a new segment is all zeros). All reviews of one add or addAll go into the same
+ * segment, when they do not fit we roll over to a new segment first, and the last of them carries the COMMIT flag.
+ *
+ * In memory we only keep the index: the location (segment and offset) of every review by its id, and for every course
+ * the locations of its reviews in id order, in compact long arrays like the review ids of InMemoryReviewDao. Writers
+ * take the lock of the dao, readers take none: a location is only published after its record is in the mapping.
+ *
+ * Crash recovery: on startup we replay every segment and index the records up to the last COMMIT record, a record with
+ * a bad CRC or a cut off length ends the replay of that segment. What comes after (a batch that was being written when
+ * the process died) is dropped and zeroed, so addAll stays all or nothing even across a crash.
+ *
+ * Durability: the records are in the page cache as soon as they are written, a crash of the process loses nothing. To
+ * survive a crash of the machine as well syncWrites forces the segment to disk on every write, which costs an fsync.
+ *
+ * Courses still live in their CourseDao, we ask it whether a course exists like the foreign key of the database does.
+ * */
+public class MappedLogReviewDao implements ReviewDao, AutoCloseable {
+    private static final String PREFIX = "reviews-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final int FIXED_PAYLOAD_BYTES = 17;
+    private static final byte COMMIT = 1;
+
+    private final CourseDao courseDao;
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean syncWrites;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final Locations all = new Locations(); // the location of review n is at index n - 1
+    private final IdTable<Locations> byCourse = new IdTable<>();
+    private final CRC32 writeCrc = new CRC32();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private ByteBuffer writer; // our own view of the last segment, only used with the lock held
+    private int lastId;
+
+    public MappedLogReviewDao(CourseDao courseDao, Path directory, int segmentBytes, boolean syncWrites)
+            throws IOException {
+        if (segmentBytes < HEADER_BYTES + FIXED_PAYLOAD_BYTES){
+            throw new IllegalArgumentException("Segments must be bigger than a record but were " + segmentBytes);
+        }
+        this.courseDao = courseDao;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncWrites = syncWrites;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    @Override
+    public void add(Review review) throws DaoException {
+        addAll(Collections.singletonList(review));
+    }
+
+    @Override
+    public void addAll(List<Review> reviews) throws DaoException {
+        if (reviews.isEmpty()){
+            return;
+        }
+        Set<Integer> checked = new HashSet<>();
+        for (Review review : reviews){
+            if (checked.add(review.getCourseId()) && courseDao.findById(review.getCourseId()) == null){
+                throw new CourseNotFoundException(null, review.getCourseId());
+            }
+        }
+        byte[][] comments = new byte[reviews.size()][];
+        int bytes = 0;
+        for (int i = 0; i < comments.length; i++){
+            String comment = reviews.get(i).getComment();
+            comments[i] = comment == null ? null : comment.getBytes(StandardCharsets.UTF_8);
+            bytes += HEADER_BYTES + FIXED_PAYLOAD_BYTES + (comment == null ? 0 : comments[i].length);
+        }
+
+        int[] ids = new int[comments.length];
+        synchronized (this){
+            try {
+                if (writer.remaining() < bytes){
+                    roll(Math.max(segmentBytes, bytes));
+                }
+            } catch (IOException ex){
+                throw new DaoException(ex, "Problem adding reviews");
+            }
+            int segment = segments.length - 1;
+            long[] locations = new long[comments.length];
+            for (int i = 0; i < comments.length; i++){
+                Review review = reviews.get(i);
+                ids[i] = lastId + 1 + i;
+                locations[i] = location(segment, writer.position());
+                write(ids[i], review, comments[i], i == comments.length - 1 ? COMMIT : 0);
+            }
+            if (syncWrites){
+                segments[segment].force();
+            }
+            /*
+            * only now that every record is in the mapping the readers get to see them
+            * */
+            for (int i = 0; i < comments.length; i++){
+                all.add(locations[i]);
+                locationsOf(reviews.get(i).getCourseId()).add(locations[i]);
+            }
+            lastId += comments.length;
+        }
+        for (int i = 0; i < ids.length; i++){
+            reviews.get(i).setId(ids[i]);
+        }
+    }
+
+    @Override
+    public List<Review> findAll() {
+        return findAll(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Review> findAll(int afterId, int limit) {
+        int count = all.count;
+        long[] locations = all.values;
+        int from = Math.max(afterId, 0);
+        int to = (int) Math.min(count, (long) from + limit);
+        List<Review> page = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++){
+            page.add(read(locations[i]));
+        }
+        return page;
+    }
+
+    @Override
+    public void streamAll(Consumer<Review> visitor) {
+        int count = all.count;
+        long[] locations = all.values;
+        for (int i = 0; i < count; i++){
+            visitor.accept(read(locations[i]));
+        }
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId) {
+        return findByCourseId(courseId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId, int afterId, int limit) {
+        if (courseDao.findById(courseId) == null){
+            return null;
+        }
+        Locations course = byCourse.get(courseId);
+        if (course == null){
+            return new ArrayList<>();
+        }
+        int count = course.count;
+        long[] locations = course.values;
+        /*
+        * the locations are in id order (the log only grows) so we can skip to afterId with a binary search over the
+        * ids, reading an id is one int out of the mapping
+        * */
+        int low = 0;
+        int high = count;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if (idAt(locations[middle]) <= afterId){
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int to = (int) Math.min(count, (long) low + limit);
+        List<Review> page = new ArrayList<>(to - low);
+        for (int i = low; i < to; i++){
+            page.add(read(locations[i]));
+        }
+        return page;
+    }
+
+    /*
+    * forces everything to disk and closes the segment files
+    * */
+    @Override
+    public synchronized void close() throws IOException {
+        for (MappedByteBuffer segment : segments){
+            segment.force();
+        }
+        for (FileChannel channel : channels){
+            channel.close();
+        }
+    }
+
+    /*
+    * Reads a review straight out of the mapped segment: the numbers are read in place, only the comment is copied
+    * because a String needs its own bytes. The duplicate is our own position on the shared buffer, the position of a
+    * buffer is not safe to share between threads.
+    * */
+    private Review read(long location) {
+        ByteBuffer record = segments[segmentOf(location)].duplicate();
+        int payload = offsetOf(location) + HEADER_BYTES;
+        Review review = new Review(record.getInt(payload + 5), record.getInt(payload + 9), null);
+        review.setId(record.getInt(payload + 1));
+        int commentLength = record.getInt(payload + 13);
+        if (commentLength >= 0){
+            byte[] comment = new byte[commentLength];
+            record.position(payload + FIXED_PAYLOAD_BYTES);
+            record.get(comment);
+            review.setComment(new String(comment, StandardCharsets.UTF_8));
+        }
+        return review;
+    }
+
+    private int idAt(long location) {
+        return segments[segmentOf(location)].getInt(offsetOf(location) + HEADER_BYTES + 1);
+    }
+
+    /*
+    * called with the lock held, the record goes to the position of the writer
+    * */
+    private void write(int id, Review review, byte[] comment, byte flags) {
+        int start = writer.position();
+        int payload = FIXED_PAYLOAD_BYTES + (comment == null ? 0 : comment.length);
+        writer.position(start + HEADER_BYTES);
+        writer.put(flags)
+                .putInt(id)
+                .putInt(review.getCourseId())
+                .putInt(review.getRating())
+                .putInt(comment == null ? -1 : comment.length);
+        if (comment != null){
+            writer.put(comment);
+        }
+        writer.putInt(start + 4, crc(writeCrc, writer, start + HEADER_BYTES, payload));
+        writer.putInt(start, payload); // <- the length last, a record without it is the end of the segment
+    }
+
+    private static int crc(CRC32 crc, ByteBuffer buffer, int offset, int length) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(offset + length).position(offset);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private Locations locationsOf(int courseId) {
+        Locations course = byCourse.get(courseId);
+        if (course == null){
+            course = new Locations();
+            byCourse.put(courseId, course);
+        }
+        return course;
+    }
+
+    /*
+    * Replays the segments in order. See the class comment for what counts as the end of the log.
+    * */
+    private synchronized void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)){
+            for (Path file : stream){
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        CRC32 crc = new CRC32();
+        for (Path file : files){
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channels.add(channel);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int index = segments.length;
+            segments = append(segments, segment);
+
+            List<long[]> pending = new ArrayList<>(); // {location, courseId} since the last COMMIT
+            int position = 0;
+            int committed = 0;
+            while (position + HEADER_BYTES + FIXED_PAYLOAD_BYTES <= segment.capacity()){
+                int length = segment.getInt(position);
+                if (length < FIXED_PAYLOAD_BYTES || position + HEADER_BYTES + length > segment.capacity()
+                        || segment.getInt(position + 4) != crc(crc, segment, position + HEADER_BYTES, length)){
+                    break;
+                }
+                int payload = position + HEADER_BYTES;
+                pending.add(new long[]{location(index, position), segment.getInt(payload + 5)});
+                position = payload + length;
+                if ((segment.get(payload) & COMMIT) != 0){
+                    for (long[] record : pending){
+                        all.add(record[0]);
+                        locationsOf((int) record[1]).add(record[0]);
+                    }
+                    lastId += pending.size();
+                    pending.clear();
+                    committed = position;
+                }
+            }
+            zeroFrom(segment, committed);
+            writer = segment.duplicate();
+            writer.position(committed);
+        }
+        if (writer == null){
+            roll(segmentBytes);
+        }
+    }
+
+    /*
+    * clears whatever is left of a torn write, so it can never be mistaken for records later on
+    * */
+    private static void zeroFrom(MappedByteBuffer segment, int position) {
+        if (position + HEADER_BYTES > segment.capacity() || segment.getLong(position) == 0){
+            return;
+        }
+        ByteBuffer rest = segment.duplicate();
+        rest.position(position);
+        byte[] zeros = new byte[Math.min(1 << 16, rest.remaining())];
+        while (rest.hasRemaining()){
+            rest.put(zeros, 0, Math.min(zeros.length, rest.remaining()));
+        }
+    }
+
+    /*
+    * starts the next segment, called with the lock held
+    * */
+    private void roll(int bytes) throws IOException {
+        Path file = directory.resolve(String.format("%s%06d%s", PREFIX, segments.length + 1, SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channels.add(channel);
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        segments = append(segments, segment); // <- published before any location points into it
+        writer = segment.duplicate();
+    }
+
+    private static MappedByteBuffer[] append(MappedByteBuffer[] segments, MappedByteBuffer segment) {
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+        grown[segments.length] = segment;
+        return grown;
+    }
+
+    private static long location(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /*
+    * a growing list of locations, only changed with the lock of the dao held. Readers read count before values: a
+    * location is in the array before count moves past it.
+    * */
+    private static class Locations {
+        private volatile long[] values = new long[4];
+        private volatile int count;
+
+        void add(long location) {
+            if (count == values.length){
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count] = location;
+            count = count + 1;
+        }
+    }
+}
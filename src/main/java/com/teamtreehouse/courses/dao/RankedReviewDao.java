@@ -0,0 +1,59 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.Review;
+import com.teamtreehouse.courses.ranking.CourseLeaderboard;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Moves the courses of the added reviews up or down the CourseLeaderboard once the delegate added them. Reviews the
+ * delegate fails to add are not counted.
+ * */
+public class RankedReviewDao implements ReviewDao {
+    private final ReviewDao delegate;
+    private final CourseLeaderboard leaderboard;
+
+    public RankedReviewDao(ReviewDao delegate, CourseLeaderboard leaderboard) {
+        this.delegate = delegate;
+        this.leaderboard = leaderboard;
+    }
+
+    @Override
+    public void add(Review review) throws DaoException {
+        delegate.add(review);
+        leaderboard.add(review);
+    }
+
+    @Override
+    public void addAll(List<Review> reviews) throws DaoException {
+        delegate.addAll(reviews);
+        leaderboard.addAll(reviews);
+    }
+
+    @Override
+    public List<Review> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Review> findAll(int afterId, int limit) {
+        return delegate.findAll(afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<Review> visitor) {
+        delegate.streamAll(visitor);
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId) {
+        return delegate.findByCourseId(courseId);
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId, int afterId, int limit) {
+        return delegate.findByCourseId(courseId, afterId, limit);
+    }
+}
@@ -4,6 +4,7 @@ import com.teamtreehouse.courses.exc.DaoException;
 import com.teamtreehouse.courses.model.Review;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**Entry 2: Accessing Data
  * This interface is to make Review database manager
@@ -12,11 +13,26 @@ import java.util.List;
  * 1. add new review
  * 2. find all review
  * 3. find all review specific to a courseId
+ * 4. do both of those one page at a time (keyset pagination: the reviews with an id after the given one)
+ * 5. stream all reviews to a visitor one row at a time, without building a List of all of them
+ * 6. add many reviews at once, all of them or none of them
+ *
+ * Adding a review to a course that does not exist throws a CourseNotFoundException and the findByCourseId methods
+ * return null for a course that does not exist (and an empty list for a course without reviews), thus callers do not
+ * need to look the course up first
  * */
 public interface ReviewDao {
     void add(Review review) throws DaoException;
 
+    void addAll(List<Review> reviews) throws DaoException;
+
     List<Review> findAll();
 
+    List<Review> findAll(int afterId, int limit);
+
+    void streamAll(Consumer<Review> visitor);
+
     List<Review> findByCourseId(int courseId);
+
+    List<Review> findByCourseId(int courseId, int afterId, int limit);
 }
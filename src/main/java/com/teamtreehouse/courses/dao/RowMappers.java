@@ -0,0 +1,32 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.sql2o.ResultSetHandler;
+
+/*
+* Maps the rows of the courses and reviews tables to our models by hand.
+*
+* executeAndFetch(Course.class) makes sql2o find the setter of every column by its name and call it by reflection for
+* every row (and for the reviews we also had to tell it that COURSE_ID is courseId). These handlers read the columns by
+* their position instead, thus the queries that use them must select COURSE_COLUMNS or REVIEW_COLUMNS in this order.
+* */
+class RowMappers {
+    static final String COURSE_COLUMNS = "id, name, url";
+    static final String REVIEW_COLUMNS = "id, course_id, rating, comment";
+
+    static final ResultSetHandler<Course> COURSE = rs -> {
+        Course course = new Course(rs.getString(2), rs.getString(3));
+        course.setId(rs.getInt(1));
+        return course;
+    };
+
+    static final ResultSetHandler<Review> REVIEW = rs -> {
+        Review review = new Review(rs.getInt(2), rs.getInt(3), rs.getString(4));
+        review.setId(rs.getInt(1));
+        return review;
+    };
+
+    private RowMappers() {
+    }
+}
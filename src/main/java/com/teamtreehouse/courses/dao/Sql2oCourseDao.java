@@ -3,10 +3,16 @@ package com.teamtreehouse.courses.dao;
 import com.teamtreehouse.courses.exc.DaoException;
 import com.teamtreehouse.courses.model.Course;
 import org.sql2o.Connection;
+import org.sql2o.Query;
 import org.sql2o.Sql2o;
 import org.sql2o.Sql2oException;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**Entry 2: Accessing Data
  *
@@ -21,6 +27,7 @@ import java.util.List;
 public class Sql2oCourseDao implements CourseDao{
 
     private final Sql2o sql2o;
+    private final Sql2o readSql2o;
 
     // constructor
     /* When we want to use SQL2o we still need to configure it although not as complex as Hibernate. We still need to tell
@@ -32,7 +39,15 @@ public class Sql2oCourseDao implements CourseDao{
      * to do this we need to build a constructor to this class that require to pass SQL2o object.
      * */
     public Sql2oCourseDao(Sql2o sql2o){
+        this(sql2o, sql2o);
+    }
+
+    /*
+    * The finds go to readSql2o (for example a read replica, see ReadRoutingDataSource) and the adds to sql2o
+    * */
+    public Sql2oCourseDao(Sql2o sql2o, Sql2o readSql2o){
         this.sql2o = sql2o;
+        this.readSql2o = readSql2o;
     }
 
     @Override
@@ -80,13 +95,39 @@ public class Sql2oCourseDao implements CourseDao{
         }
     }
 
+    @Override
+    public void addAll(List<Course> courses) throws DaoException {
+        /*
+        * All courses in one transaction with one prepared statement, the same way as Sql2oReviewDao.addAll (see the
+        * notes there on why we execute the statement per course rather than as a JDBC batch)
+        * */
+        String sql = "INSERT INTO courses(name, url) VALUES (:name, :url)";
+        int[] ids = new int[courses.size()];
+        try (Connection con = sql2o.beginTransaction()){
+            Query insert = con.createQuery(sql, true);
+            for (int i = 0; i < courses.size(); i++){
+                Course course = courses.get(i);
+                ids[i] = (int) insert.addParameter("name", course.getName())
+                        .addParameter("url", course.getUrl())
+                        .executeUpdate()
+                        .getKey();
+            }
+            con.commit();
+        } catch (Sql2oException ex){
+            throw new DaoException(ex, "Problem adding courses");
+        }
+        for (int i = 0; i < ids.length; i++){
+            courses.get(i).setId(ids[i]);
+        }
+    }
+
     @Override
     public List<Course> findAll() {
         /*
         * to access the list of all courses in the database we first just like when we add the new course Open the
         * connection to the database
         * */
-        try (Connection con = sql2o.open()){
+        try (Connection con = readSql2o.open()){
             /*remember the connection is auto closable so we don't have to close it in here (since it is try resources
             * the case is different with test of the Sql2oCourseDaoTest when we make the connection stays open in the
             * beginning of the test
@@ -97,13 +138,32 @@ public class Sql2oCourseDao implements CourseDao{
             * Then we use execute and fetch method to determine which class we want to make list into. In this case
             * we want the Course class and this method will sort all out through getters and setters inside the
             * Course class objects.
+            *
+            * UPDATE: rather than letting sql2o find those setters by reflection we pass our own RowMappers.COURSE which
+            * builds the Course from the columns directly
             * */
-            return con.createQuery("SELECT * FROM courses")
-                    .executeAndFetch(Course.class);
+            return con.createQuery("SELECT " + RowMappers.COURSE_COLUMNS + " FROM courses")
+                    .executeAndFetch(RowMappers.COURSE);
         }
 
     }
 
+    @Override
+    public List<Course> findAll(int afterId, int limit) {
+        /*
+        * This is the paged version of findAll(). Rather than skipping rows with OFFSET (which gets slower the further
+        * we go) we continue right after the last id the client has seen, the primary key index takes us straight there
+        * and we never hold more than one page in memory.
+        * */
+        try (Connection con = readSql2o.open()){
+            return con.createQuery("SELECT " + RowMappers.COURSE_COLUMNS + " FROM courses WHERE id > :afterId " +
+                    "ORDER BY id LIMIT :limit")
+                    .addParameter("afterId", afterId)
+                    .addParameter("limit", limit)
+                    .executeAndFetch(RowMappers.COURSE);
+        }
+    }
+
     @Override
     public Course findById(int id) {
         /*
@@ -114,10 +174,45 @@ public class Sql2oCourseDao implements CourseDao{
         *
         * Then we only need to find one course with specific id thus we will only fetch the first result in the List
         * */
-        try (Connection con = sql2o.open()){
-            return con.createQuery("SELECT * FROM courses WHERE id = :id")
+        try (Connection con = readSql2o.open()){
+            return con.createQuery("SELECT " + RowMappers.COURSE_COLUMNS + " FROM courses WHERE id = :id")
                     .addParameter("id", id)
-                    .executeAndFetchFirst(Course.class);
+                    .executeAndFetchFirst(RowMappers.COURSE);
+        }
+    }
+
+    @Override
+    public Map<Integer, Course> findByIds(Collection<Integer> ids) {
+        /*
+        * One query for all of the ids instead of one findById per id. We bind all of the ids as a single array
+        * parameter and let H2 turn it into a table we join the courses with (TABLE(course_id INT = ?)), so the SQL is
+        * the same no matter how many ids we get and the pool can reuse its prepared statement (see StatementCache).
+        * With IN (:id1, :id2, ...) every number of ids would be a different statement.
+        *
+        * The rows come back in whatever order H2 likes, we put them back in the order of the ids.
+        * */
+        Map<Integer, Course> found = new LinkedHashMap<>();
+        Integer[] unique = new LinkedHashSet<>(ids).toArray(new Integer[0]);
+        if (unique.length == 0){
+            return found;
+        }
+        List<Course> courses;
+        try (Connection con = readSql2o.open()){
+            courses = con.createQuery("SELECT " + RowMappers.COURSE_COLUMNS + " FROM TABLE(course_id INT = :ids) ids " +
+                    "INNER JOIN courses ON courses.id = ids.course_id")
+                    .addParameter("ids", (Object) unique)
+                    .executeAndFetch(RowMappers.COURSE);
+        }
+        Map<Integer, Course> byId = new HashMap<>();
+        for (Course course : courses){
+            byId.put(course.getId(), course);
+        }
+        for (Integer id : unique){
+            Course course = byId.get(id);
+            if (course != null){
+                found.put(id, course);
+            }
         }
+        return found;
     }
 }
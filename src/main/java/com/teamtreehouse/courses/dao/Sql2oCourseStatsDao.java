@@ -0,0 +1,178 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.CourseStats;
+import com.teamtreehouse.courses.model.Review;
+import org.sql2o.Connection;
+import org.sql2o.Query;
+import org.sql2o.Sql2o;
+import org.sql2o.Sql2oException;
+
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The course_stats table (db/V3.sql) holds one row per reviewed course with the review count, the rating sum, min and
+ * max and one counter per rating for the histogram.
+ *
+ * Reading the stats of a course is a single primary key lookup, no matter how many reviews the course has.
+ * */
+public class Sql2oCourseStatsDao implements CourseStatsDao {
+    private static final String RATING_COLUMNS = "rating_1, rating_2, rating_3, rating_4, rating_5";
+
+    private final Sql2o sql2o;
+    private final Sql2o readSql2o;
+
+    public Sql2oCourseStatsDao(Sql2o sql2o) {
+        this(sql2o, sql2o);
+    }
+
+    /*
+    * findByCourseId reads from readSql2o, rebuild writes to sql2o (see Sql2oCourseDao)
+    * */
+    public Sql2oCourseStatsDao(Sql2o sql2o, Sql2o readSql2o) {
+        this.sql2o = sql2o;
+        this.readSql2o = readSql2o;
+    }
+
+    @Override
+    public CourseStats findByCourseId(int courseId) {
+        /*
+        * We start from the courses table so we can tell a course that does not exist (no row at all, we return null)
+        * from a course without reviews (a row with only NULL stats columns, we return zeros)
+        * */
+        try (Connection con = readSql2o.open()){
+            return con.createQuery("SELECT c.id, s.review_count, s.rating_sum, s.rating_min, s.rating_max, " +
+                    RATING_COLUMNS + " FROM courses c LEFT JOIN course_stats s ON s.course_id = c.id " +
+                    "WHERE c.id = :courseId")
+                    .addParameter("courseId", courseId)
+                    .executeAndFetchFirst((ResultSet rs) -> {
+                        int[] ratingCounts = new int[Review.MAX_RATING - Review.MIN_RATING + 1];
+                        for (int i = 0; i < ratingCounts.length; i++){
+                            ratingCounts[i] = rs.getInt(6 + i);
+                        }
+                        return new CourseStats(rs.getInt(1), rs.getInt(2), rs.getLong(3),
+                                (Integer) rs.getObject(4), (Integer) rs.getObject(5), ratingCounts);
+                    });
+        }
+    }
+
+    @Override
+    public int rebuild() throws DaoException {
+        /*
+        * Recomputes every row from the reviews table in one transaction. The reviews added while we rebuild wait for
+        * our row locks and then add themselves on top of the rebuilt rows, so nothing is counted twice or lost.
+        * */
+        try (Connection con = sql2o.beginTransaction()){
+            con.createQuery("DELETE FROM course_stats").executeUpdate();
+            int courses = con.createQuery("INSERT INTO course_stats(course_id, review_count, rating_sum, " +
+                    "rating_min, rating_max, " + RATING_COLUMNS + ") " +
+                    "SELECT course_id, COUNT(*), SUM(rating), MIN(rating), MAX(rating), " +
+                    "SUM(CASE WHEN rating = 1 THEN 1 ELSE 0 END), " +
+                    "SUM(CASE WHEN rating = 2 THEN 1 ELSE 0 END), " +
+                    "SUM(CASE WHEN rating = 3 THEN 1 ELSE 0 END), " +
+                    "SUM(CASE WHEN rating = 4 THEN 1 ELSE 0 END), " +
+                    "SUM(CASE WHEN rating = 5 THEN 1 ELSE 0 END) " +
+                    "FROM reviews GROUP BY course_id")
+                    .executeUpdate()
+                    .getResult();
+            con.commit();
+            return courses;
+        } catch (Sql2oException ex){
+            throw new DaoException(ex, "Problem rebuilding course stats");
+        }
+    }
+
+    /*
+    * Adds the given (just inserted) reviews to the stats of their courses. This is called by Sql2oReviewDao with its
+    * own connection so it happens in the same transaction as the insert of the reviews: either both are committed or
+    * neither is.
+    *
+    * The reviews are first summed up per course so every course gets one UPDATE. The UPDATE adds to the current values
+    * in the database (review_count = review_count + ...) and H2 locks the row until we commit, thus concurrent inserts
+    * for the same course are applied one after the other and the totals stay exact.
+    *
+    * When the course has no stats row yet we insert one. If another transaction inserted it at the same time our
+    * insert fails, and then the row exists so we update it instead.
+    * */
+    static void addReviews(Connection con, List<Review> reviews) {
+        Map<Integer, Delta> deltas = new LinkedHashMap<>();
+        for (Review review : reviews){
+            deltas.computeIfAbsent(review.getCourseId(), courseId -> new Delta()).add(review.getRating());
+        }
+        for (Map.Entry<Integer, Delta> entry : deltas.entrySet()){
+            int courseId = entry.getKey();
+            Delta delta = entry.getValue();
+            if (update(con, courseId, delta) > 0){
+                continue;
+            }
+            try {
+                insert(con, courseId, delta);
+            } catch (Sql2oException ex){
+                if (update(con, courseId, delta) == 0){
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private static int update(Connection con, int courseId, Delta delta) {
+        Query update = con.createQuery("UPDATE course_stats SET " +
+                "review_count = review_count + :count, " +
+                "rating_sum = rating_sum + :sum, " +
+                "rating_min = CASE WHEN rating_min IS NULL OR rating_min > :min THEN :min ELSE rating_min END, " +
+                "rating_max = CASE WHEN rating_max IS NULL OR rating_max < :max THEN :max ELSE rating_max END, " +
+                "rating_1 = rating_1 + :r1, rating_2 = rating_2 + :r2, rating_3 = rating_3 + :r3, " +
+                "rating_4 = rating_4 + :r4, rating_5 = rating_5 + :r5 " +
+                "WHERE course_id = :courseId");
+        return delta.bindTo(update, courseId)
+                .executeUpdate()
+                .getResult();
+    }
+
+    private static void insert(Connection con, int courseId, Delta delta) {
+        Query insert = con.createQuery("INSERT INTO course_stats(course_id, review_count, rating_sum, " +
+                "rating_min, rating_max, " + RATING_COLUMNS + ") " +
+                "VALUES (:courseId, :count, :sum, :min, :max, :r1, :r2, :r3, :r4, :r5)");
+        delta.bindTo(insert, courseId)
+                .executeUpdate();
+    }
+
+    /*
+    * The change a group of reviews makes to the stats of one course
+    * */
+    private static class Delta {
+        private int count;
+        private long sum;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        private final int[] ratingCounts = new int[Review.MAX_RATING - Review.MIN_RATING + 1];
+
+        void add(int rating) {
+            count++;
+            sum += rating;
+            min = Math.min(min, rating);
+            max = Math.max(max, rating);
+            if (rating >= Review.MIN_RATING && rating <= Review.MAX_RATING){
+                ratingCounts[rating - Review.MIN_RATING]++;
+            }
+        }
+
+        /*
+        * sets the :courseId, :count, :sum, :min, :max and :r1 to :r5 parameters of the update and insert queries
+        * */
+        Query bindTo(Query query, int courseId) {
+            query.addParameter("courseId", courseId)
+                    .addParameter("count", count)
+                    .addParameter("sum", sum)
+                    .addParameter("min", min)
+                    .addParameter("max", max);
+            for (int i = 0; i < ratingCounts.length; i++){
+                query.addParameter("r" + (i + 1), ratingCounts[i]);
+            }
+            return query;
+        }
+    }
+}
@@ -1,40 +1,64 @@
 package com.teamtreehouse.courses.dao;
 
+import com.teamtreehouse.courses.exc.CourseNotFoundException;
 import com.teamtreehouse.courses.exc.DaoException;
 import com.teamtreehouse.courses.model.Review;
 import org.sql2o.Connection;
+import org.sql2o.Query;
+import org.sql2o.ResultSetIterable;
 import org.sql2o.Sql2o;
 import org.sql2o.Sql2oException;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class Sql2oReviewDao implements ReviewDao {
+    private static final String PARENT_MISSING = "23506";
+    private static final String COURSE_REVIEWS = "SELECT c.id, r.id, r.rating, r.comment FROM courses c " +
+            "LEFT JOIN reviews r ON r.course_id = c.id ";
+
     private Sql2o sql2o;
+    private Sql2o readSql2o;
 
     /*
     * constructor for dao review
     * */
 
     public Sql2oReviewDao(Sql2o sql2o) {
+        this(sql2o, sql2o);
+    }
+
+    /*
+    * the finds and streamAll go to readSql2o, the adds to sql2o (see Sql2oCourseDao)
+    * */
+    public Sql2oReviewDao(Sql2o sql2o, Sql2o readSql2o) {
         this.sql2o = sql2o;
+        this.readSql2o = readSql2o;
     }
 
     @Override
     public void add(Review review) throws DaoException {
         /*
-        * making the SQL code: The naming course_id is located to denotes the column name in the init.sql BUT then
+        * making the SQL code: The naming course_id is located to denotes the column name in the db/V1.sql BUT then
         * naming of the values input MUST be the same as in the com.teamtreehouse.courses.model.Review model which
         * written as courseId thus in the value of SQL string it must be named :courseId NOT :course_id!!!
         *
-        * Note that the courseId is a foreign key but the implementation of making sure that the foreign key is valid
-        * or not might not be here
+        * Note that the courseId is a foreign key, we do not look the course up first: the database checks it anyway and
+        * when it fails we throw a CourseNotFoundException (see missingCourse below)
         * */
         String sql = "INSERT INTO reviews(course_id, rating, comment) VALUES (:courseId, :rating, :comment)";
 
         /*
         * making connection using Sql2o (using try for self closing)
+        *
+        * The connection is a transaction because the rating of the review must also be added to the course_stats of
+        * its course, and either both happen or none of them (if we fail the connection rolls back on close)
         * */
-        try (Connection conn = sql2o.open()){
+        try (Connection conn = sql2o.beginTransaction()){
 
             /*
             * lets make the id primary key for the review added
@@ -44,6 +68,9 @@ public class Sql2oReviewDao implements ReviewDao {
                     .executeUpdate()
                     .getKey();
 
+            Sql2oCourseStatsDao.addReviews(conn, Collections.singletonList(review));
+            conn.commit();
+
             /*
             * using the id from the query above we set the id for the newly added review
             * */
@@ -53,10 +80,56 @@ public class Sql2oReviewDao implements ReviewDao {
             /*
             * handle the exception to DaoException
             * */
+            if (missingCourse(ex)){
+                throw new CourseNotFoundException(ex, review.getCourseId());
+            }
             throw new DaoException(ex, "Problem adding review");
         }
     }
 
+    @Override
+    public void addAll(List<Review> reviews) throws DaoException {
+        /*
+        * Adding reviews one by one costs a connection, a statement preparation and a commit for every single review.
+        * Here all of them share one connection, one transaction and one prepared statement that we execute again for
+        * every review with its own values. The course_stats of their courses are updated in the same transaction.
+        *
+        * NOTE: we do not use JDBC addBatch/executeBatch here, because H2 only gives back the generated key of the last
+        * row of a batch and we need the id of every review.
+        *
+        * The ids are only set on the reviews after the commit, if anything fails the whole transaction is rolled back
+        * (the Connection rolls back on close when it was not committed) and none of the reviews gets an id.
+        * */
+        String sql = "INSERT INTO reviews(course_id, rating, comment) VALUES (:courseId, :rating, :comment)";
+        int[] ids = new int[reviews.size()];
+        int i = 0;
+        try (Connection conn = sql2o.beginTransaction()){
+            Query insert = conn.createQuery(sql, true);
+            for (; i < reviews.size(); i++){
+                /*
+                * WARNING: bind() only sets the parameters that were not added before, so on a reused query it would
+                * keep the values of the first review. We set every parameter ourselves instead.
+                * */
+                Review review = reviews.get(i);
+                ids[i] = (int) insert.addParameter("courseId", review.getCourseId())
+                        .addParameter("rating", review.getRating())
+                        .addParameter("comment", review.getComment())
+                        .executeUpdate()
+                        .getKey();
+            }
+            Sql2oCourseStatsDao.addReviews(conn, reviews);
+            conn.commit();
+        } catch (Sql2oException ex){
+            if (i < reviews.size() && missingCourse(ex)){
+                throw new CourseNotFoundException(ex, reviews.get(i).getCourseId());
+            }
+            throw new DaoException(ex, "Problem adding reviews");
+        }
+        for (i = 0; i < ids.length; i++){
+            reviews.get(i).setId(ids[i]);
+        }
+    }
+
     @Override
     public List<Review> findAll() {
         /*
@@ -65,11 +138,44 @@ public class Sql2oReviewDao implements ReviewDao {
         * Here we need to add Column Mapping since it generate error on testing complaining that it did not know how to
         * map "COURSE_ID" this will map it ino courseId variable in the Review class object!
         * WARNING: same property must be added for findByCourseId below!
+        *
+        * UPDATE: we now map the rows with our own RowMappers.REVIEW, it reads course_id by its position so no column
+        * mapping is needed anymore
+        * */
+        try (Connection conn = readSql2o.open()){
+            return conn.createQuery("SELECT " + RowMappers.REVIEW_COLUMNS + " FROM reviews")
+                    .executeAndFetch(RowMappers.REVIEW);
+        }
+    }
+
+    @Override
+    public List<Review> findAll(int afterId, int limit) {
+        /*
+        * one page of reviews, continuing after the last review id the client has seen (see Sql2oCourseDao)
         * */
-        try (Connection conn = sql2o.open()){
-            return conn.createQuery("SELECT * FROM reviews")
-                    .addColumnMapping("COURSE_ID", "courseId")
-                    .executeAndFetch(Review.class);
+        try (Connection conn = readSql2o.open()){
+            return conn.createQuery("SELECT " + RowMappers.REVIEW_COLUMNS + " FROM reviews WHERE id > :afterId " +
+                    "ORDER BY id LIMIT :limit")
+                    .addParameter("afterId", afterId)
+                    .addParameter("limit", limit)
+                    .executeAndFetch(RowMappers.REVIEW);
+        }
+    }
+
+    @Override
+    public void streamAll(Consumer<Review> visitor) {
+        /*
+        * executeAndFetchLazy does not build a List, it gives us an iterable over the open ResultSet. Each review is
+        * mapped and passed to the visitor while we move the cursor, so only one row at a time is held by us no matter
+        * how many reviews there are. The iterable must be closed to close the ResultSet (try with resources again).
+        * */
+        try (Connection conn = readSql2o.open();
+             ResultSetIterable<Review> reviews = conn.createQuery("SELECT " + RowMappers.REVIEW_COLUMNS +
+                     " FROM reviews ORDER BY id")
+                     .executeAndFetchLazy(RowMappers.REVIEW)){
+            for (Review review : reviews){
+                visitor.accept(review);
+            }
         }
     }
 
@@ -78,12 +184,67 @@ public class Sql2oReviewDao implements ReviewDao {
         /*
         * This time it is specific to courseId thus we need to list all reviews related to given courseId
         * Remember it is specific to courseId not the review's id. And also it is fetch all not just fetch first
+        *
+        * We start from the courses table and LEFT JOIN the reviews, so the same query also tells us whether the course
+        * exists (see fetchCourseReviews)
+        * */
+        try (Connection conn = readSql2o.open()){
+            return fetchCourseReviews(conn.createQuery(COURSE_REVIEWS + "WHERE c.id = :courseId ORDER BY r.id")
+                    .addParameter("courseId", courseId)); //-> this we transform courseId into course_id
+        }
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId, int afterId, int limit) {
+        /*
+        * one page of the reviews of a course, the (course_id, id) index from db/V2.sql serves both the filter and
+        * the ordering. The afterId condition is part of the join, thus a course with no reviews after afterId still
+        * gives its one row
         * */
-        try (Connection conn = sql2o.open()){
-            return conn.createQuery("SELECT * FROM reviews WHERE course_id = :courseId")
-                    .addColumnMapping("COURSE_ID", "courseId")
-                    .addParameter("courseId", courseId) //-> this we transform courseId into course_id
-                    .executeAndFetch(Review.class);
+        try (Connection conn = readSql2o.open()){
+            return fetchCourseReviews(conn.createQuery(COURSE_REVIEWS + "AND r.id > :afterId " +
+                    "WHERE c.id = :courseId ORDER BY r.id LIMIT :limit")
+                    .addParameter("courseId", courseId)
+                    .addParameter("afterId", afterId)
+                    .addParameter("limit", limit));
+        }
+    }
+
+    /*
+    * A course without reviews still gives one row where all the review columns are NULL, a course that does not exist
+    * gives no row at all. So we return null for no rows and skip the NULL review.
+    * */
+    private static List<Review> fetchCourseReviews(Query query) {
+        List<Review> rows = query.executeAndFetch((ResultSet rs) -> {
+            if (rs.getObject(2) == null){
+                return null;
+            }
+            Review review = new Review(rs.getInt(1), rs.getInt(3), rs.getString(4));
+            review.setId(rs.getInt(2));
+            return review;
+        });
+        if (rows.isEmpty()){
+            return null;
+        }
+        List<Review> reviews = new ArrayList<>(rows.size());
+        for (Review review : rows){
+            if (review != null){
+                reviews.add(review);
+            }
+        }
+        return reviews;
+    }
+
+    /*
+    * H2 reports a foreign key that points to a missing row with SQL state 23506, anywhere down the causes of the
+    * Sql2oException
+    * */
+    private static boolean missingCourse(Sql2oException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()){
+            if (cause instanceof SQLException && PARENT_MISSING.equals(((SQLException) cause).getSQLState())){
+                return true;
+            }
         }
+        return false;
     }
 }
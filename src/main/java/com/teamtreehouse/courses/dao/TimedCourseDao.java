@@ -0,0 +1,94 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.metrics.LatencyHistogram;
+import com.teamtreehouse.courses.metrics.Metrics;
+import com.teamtreehouse.courses.model.Course;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A decorator that times every call to the wrapped CourseDao into the Metrics, one histogram per method (the failed
+ * calls too). The histograms are looked up once here, so a call only costs two System.nanoTime() and one record.
+ * */
+public class TimedCourseDao implements CourseDao {
+    private final CourseDao delegate;
+    private final LatencyHistogram add;
+    private final LatencyHistogram addAll;
+    private final LatencyHistogram findAll;
+    private final LatencyHistogram findAllPage;
+    private final LatencyHistogram findById;
+    private final LatencyHistogram findByIds;
+
+    public TimedCourseDao(CourseDao delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.add = metrics.query("CourseDao", "add");
+        this.addAll = metrics.query("CourseDao", "addAll");
+        this.findAll = metrics.query("CourseDao", "findAll");
+        this.findAllPage = metrics.query("CourseDao", "findAllPage");
+        this.findById = metrics.query("CourseDao", "findById");
+        this.findByIds = metrics.query("CourseDao", "findByIds");
+    }
+
+    @Override
+    public void add(Course course) throws DaoException {
+        long start = System.nanoTime();
+        try {
+            delegate.add(course);
+        } finally {
+            add.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addAll(List<Course> courses) throws DaoException {
+        long start = System.nanoTime();
+        try {
+            delegate.addAll(courses);
+        } finally {
+            addAll.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Course> findAll() {
+        long start = System.nanoTime();
+        try {
+            return delegate.findAll();
+        } finally {
+            findAll.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Course> findAll(int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findAll(afterId, limit);
+        } finally {
+            findAllPage.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Course findById(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findById(id);
+        } finally {
+            findById.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Map<Integer, Course> findByIds(Collection<Integer> ids) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByIds(ids);
+        } finally {
+            findByIds.recordNanos(System.nanoTime() - start);
+        }
+    }
+}
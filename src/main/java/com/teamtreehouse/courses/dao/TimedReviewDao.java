@@ -0,0 +1,107 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.metrics.LatencyHistogram;
+import com.teamtreehouse.courses.metrics.Metrics;
+import com.teamtreehouse.courses.model.Review;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Times every call to the wrapped ReviewDao into the Metrics, see TimedCourseDao.
+ *
+ * NOTE: streamAll hands every row to the visitor while the query runs, so its time includes what the visitor does
+ * with the rows (writing them to the response for GET /reviews).
+ * */
+public class TimedReviewDao implements ReviewDao {
+    private final ReviewDao delegate;
+    private final LatencyHistogram add;
+    private final LatencyHistogram addAll;
+    private final LatencyHistogram findAll;
+    private final LatencyHistogram findAllPage;
+    private final LatencyHistogram streamAll;
+    private final LatencyHistogram findByCourseId;
+    private final LatencyHistogram findByCourseIdPage;
+
+    public TimedReviewDao(ReviewDao delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.add = metrics.query("ReviewDao", "add");
+        this.addAll = metrics.query("ReviewDao", "addAll");
+        this.findAll = metrics.query("ReviewDao", "findAll");
+        this.findAllPage = metrics.query("ReviewDao", "findAllPage");
+        this.streamAll = metrics.query("ReviewDao", "streamAll");
+        this.findByCourseId = metrics.query("ReviewDao", "findByCourseId");
+        this.findByCourseIdPage = metrics.query("ReviewDao", "findByCourseIdPage");
+    }
+
+    @Override
+    public void add(Review review) throws DaoException {
+        long start = System.nanoTime();
+        try {
+            delegate.add(review);
+        } finally {
+            add.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addAll(List<Review> reviews) throws DaoException {
+        long start = System.nanoTime();
+        try {
+            delegate.addAll(reviews);
+        } finally {
+            addAll.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Review> findAll() {
+        long start = System.nanoTime();
+        try {
+            return delegate.findAll();
+        } finally {
+            findAll.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Review> findAll(int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findAll(afterId, limit);
+        } finally {
+            findAllPage.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void streamAll(Consumer<Review> visitor) {
+        long start = System.nanoTime();
+        try {
+            delegate.streamAll(visitor);
+        } finally {
+            streamAll.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByCourseId(courseId);
+        } finally {
+            findByCourseId.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId, int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByCourseId(courseId, afterId, limit);
+        } finally {
+            findByCourseIdPage.recordNanos(System.nanoTime() - start);
+        }
+    }
+}
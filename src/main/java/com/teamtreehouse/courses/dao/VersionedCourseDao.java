@@ -0,0 +1,57 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.Course;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A decorator (like the CachingCourseDao) that bumps the courses version of DataVersions every time courses are added.
+ *
+ * The version is bumped after the delegate returned, that is after the insert was committed. A reader that reads the
+ * version before its query can thus only ever pair new data with an old version (the client fetches once more), never
+ * old data with a new version.
+ * */
+public class VersionedCourseDao implements CourseDao {
+    private final CourseDao delegate;
+    private final DataVersions versions;
+
+    public VersionedCourseDao(CourseDao delegate, DataVersions versions) {
+        this.delegate = delegate;
+        this.versions = versions;
+    }
+
+    @Override
+    public void add(Course course) throws DaoException {
+        delegate.add(course);
+        versions.coursesChanged();
+    }
+
+    @Override
+    public void addAll(List<Course> courses) throws DaoException {
+        delegate.addAll(courses);
+        versions.coursesChanged();
+    }
+
+    @Override
+    public List<Course> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Course> findAll(int afterId, int limit) {
+        return delegate.findAll(afterId, limit);
+    }
+
+    @Override
+    public Course findById(int id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public Map<Integer, Course> findByIds(Collection<Integer> ids) {
+        return delegate.findByIds(ids);
+    }
+}
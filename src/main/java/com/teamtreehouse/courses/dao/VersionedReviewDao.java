@@ -0,0 +1,66 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.Review;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Bumps the reviews versions of DataVersions (all reviews and the reviews of the course) after reviews were added,
+ * see VersionedCourseDao.
+ * */
+public class VersionedReviewDao implements ReviewDao {
+    private final ReviewDao delegate;
+    private final DataVersions versions;
+
+    public VersionedReviewDao(ReviewDao delegate, DataVersions versions) {
+        this.delegate = delegate;
+        this.versions = versions;
+    }
+
+    @Override
+    public void add(Review review) throws DaoException {
+        delegate.add(review);
+        versions.reviewsChanged(review.getCourseId());
+    }
+
+    @Override
+    public void addAll(List<Review> reviews) throws DaoException {
+        delegate.addAll(reviews);
+        Set<Integer> courseIds = new LinkedHashSet<>();
+        for (Review review : reviews){
+            courseIds.add(review.getCourseId());
+        }
+        for (int courseId : courseIds){
+            versions.reviewsChanged(courseId);
+        }
+    }
+
+    @Override
+    public List<Review> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Review> findAll(int afterId, int limit) {
+        return delegate.findAll(afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<Review> visitor) {
+        delegate.streamAll(visitor);
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId) {
+        return delegate.findByCourseId(courseId);
+    }
+
+    @Override
+    public List<Review> findByCourseId(int courseId, int afterId, int limit) {
+        return delegate.findByCourseId(courseId, afterId, limit);
+    }
+}
@@ -0,0 +1,437 @@
+package com.teamtreehouse.courses.db;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A small JDBC connection pool that we put behind the Sql2o object as its DataSource.
+ *
+ * Without it every DAO method that calls sql2o.open() creates a brand new H2 connection (and runs the INIT script of
+ * the connection string again). With the pool the physical connections are opened once and handed out again and
+ * again: Sql2o still calls close() on them, but close() on a pooled connection only gives it back to the pool.
+ *
+ * The pool is configured with:
+ * 1. minSize -> how many connections we keep open even when nobody uses them
+ * 2. maxSize -> the upper bound of physical connections
+ * 3. acquireTimeoutMillis -> how long a caller waits for a free connection before it gets an SQLTimeoutException
+ * 4. idleTimeoutMillis -> idle connections above minSize older than this are closed by a background evictor
+ * 5. statementCacheSize -> how many prepared statements every connection keeps for reuse, see StatementCache (0 for
+ * none)
+ * */
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int statementCacheSize;
+
+    /*
+    * All of the pool state below is guarded by this single lock. The idle deque is used as a stack (LIFO) so the most
+    * recently used connection is handed out first and the ones at the bottom are the ones that get evicted.
+    * */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private int total;
+    private int waiters;
+    private boolean closed;
+
+    private long acquireCount;
+    private long acquireNanos;
+    private long maxAcquireNanos;
+    private long timeoutCount;
+    private long evictedCount;
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long acquireTimeoutMillis, long idleTimeoutMillis) throws SQLException {
+        this(url, user, password, minSize, maxSize, acquireTimeoutMillis, idleTimeoutMillis, 0);
+    }
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long acquireTimeoutMillis, long idleTimeoutMillis, int statementCacheSize)
+            throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize){
+            throw new IllegalArgumentException(
+                    String.format("Invalid pool size min=%d max=%d", minSize, maxSize));
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+
+        /*
+        * open the minimum connections eagerly, this way the first requests does not pay for the connection setup
+        * */
+        for (int i = 0; i < minSize; i++){
+            Connection physical = openPhysical();
+            idle.push(new IdleConnection(physical, newStatementCache(physical)));
+            total++;
+        }
+
+        if (idleTimeoutMillis > 0){
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "connection-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(idleTimeoutMillis / 2, 100);
+            evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            evictor = null;
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        boolean mustOpen = false;
+        Connection physical = null;
+        StatementCache statements = null;
+
+        lock.lock();
+        try {
+            while (true){
+                if (closed){
+                    throw new SQLException("Connection pool is closed");
+                }
+                if (!idle.isEmpty()){
+                    IdleConnection entry = idle.pop();
+                    physical = entry.connection;
+                    statements = entry.statements;
+                    break;
+                }
+                if (total < maxSize){
+                    /*
+                    * we reserve the slot while holding the lock but open the connection outside of it so the other
+                    * threads are not blocked by a slow connect
+                    * */
+                    total++;
+                    mustOpen = true;
+                    break;
+                }
+                if (remaining <= 0){
+                    timeoutCount++;
+                    throw new SQLTimeoutException(String.format(
+                            "Timed out after %dms waiting for a connection (active=%d, max=%d)",
+                            acquireTimeoutMillis, total - idle.size(), maxSize));
+                }
+                waiters++;
+                try {
+                    remaining = released.awaitNanos(remaining);
+                } catch (InterruptedException ex){
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection", ex);
+                } finally {
+                    waiters--;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (mustOpen){
+            try {
+                physical = openPhysical();
+            } catch (SQLException ex){
+                discard(null);
+                throw ex;
+            }
+            statements = newStatementCache(physical);
+        }
+        recordAcquire(System.nanoTime() - start);
+        return wrap(physical, statements);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pool only hands out connections for its configured user");
+    }
+
+    /**
+     * Takes a snapshot of the pool counters, this is what we expose through the API
+     * */
+    public PoolStats getStats() {
+        lock.lock();
+        try {
+            return new PoolStats(total - idle.size(), idle.size(), total, waiters, maxSize, acquireCount,
+                    timeoutCount, evictedCount,
+                    acquireCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(acquireNanos / acquireCount),
+                    TimeUnit.NANOSECONDS.toMicros(maxAcquireNanos),
+                    statementHits.sum(), statementMisses.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        Deque<IdleConnection> toClose;
+        lock.lock();
+        try {
+            if (closed){
+                return;
+            }
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            total -= idle.size();
+            idle.clear();
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (evictor != null){
+            evictor.shutdownNow();
+        }
+        for (IdleConnection entry : toClose){
+            closeQuietly(entry.connection);
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private StatementCache newStatementCache(Connection physical) {
+        return statementCacheSize > 0 ?
+                new StatementCache(physical, statementCacheSize, statementHits, statementMisses) : null;
+    }
+
+    private void recordAcquire(long nanos) {
+        lock.lock();
+        try {
+            acquireCount++;
+            acquireNanos += nanos;
+            if (nanos > maxAcquireNanos){
+                maxAcquireNanos = nanos;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+    * This is called when the borrower closes its (proxied) connection. We make sure the next borrower gets a clean
+    * connection: no open transaction and auto commit back on. If that fails the physical connection is broken so we
+    * throw it away instead of putting it back.
+    * */
+    private void release(Connection physical, StatementCache statements) {
+        boolean healthy;
+        try {
+            if (!physical.getAutoCommit()){
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            healthy = !physical.isClosed();
+        } catch (SQLException ex){
+            healthy = false;
+        }
+
+        lock.lock();
+        try {
+            if (healthy && !closed){
+                idle.push(new IdleConnection(physical, statements));
+                released.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        discard(physical);
+    }
+
+    private void discard(Connection physical) {
+        lock.lock();
+        try {
+            total--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (physical != null){
+            closeQuietly(physical);
+        }
+    }
+
+    /*
+    * The evictor closes connections that have been sitting in the pool longer than idleTimeoutMillis, but never goes
+    * below minSize. The oldest connections are at the bottom of the stack (the tail of the deque).
+    * */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        Deque<Connection> toClose = new ArrayDeque<>();
+        lock.lock();
+        try {
+            Iterator<IdleConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && total > minSize){
+                IdleConnection entry = oldestFirst.next();
+                if (now - entry.idleSince < idleTimeoutMillis){
+                    break;
+                }
+                oldestFirst.remove();
+                total--;
+                evictedCount++;
+                toClose.add(entry.connection);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Connection connection : toClose){
+            closeQuietly(connection);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored){
+            // the connection is going away anyway
+        }
+    }
+
+    private Connection wrap(Connection physical, StatementCache statements) {
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new PooledConnectionHandler(physical, statements));
+    }
+
+    /*
+    * Every connection we hand out is a dynamic proxy around the physical one. All calls are passed through except
+    * close() and isClosed(), which only change and report the borrower's view of the connection, and (with a statement
+    * cache) prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys), which may hand out a statement the
+    * connection already prepared.
+    * */
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+        private final StatementCache statements;
+        private boolean returned;
+
+        PooledConnectionHandler(Connection physical, StatementCache statements) {
+            this.physical = physical;
+            this.statements = statements;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()){
+                case "close":
+                    if (!returned){
+                        returned = true;
+                        release(physical, statements);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical;
+                default:
+                    if (returned){
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (statements != null && method.getName().equals("prepareStatement")){
+                        /*
+                        * prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys), the one Sql2o uses. The
+                        * other forms (column indexes or names, result set types) are rare enough to go uncached.
+                        * */
+                        if (args.length == 1){
+                            return statements.prepare((String) args[0]);
+                        }
+                        if (args.length == 2 && args[1] instanceof Integer){
+                            return statements.prepare((String) args[0], (Integer) args[1]);
+                        }
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException ex){
+                        throw ex.getCause();
+                    }
+            }
+        }
+    }
+
+    private static class IdleConnection {
+        private final Connection connection;
+        private final StatementCache statements;
+        private final long idleSince;
+
+        IdleConnection(Connection connection, StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+
+    /*
+    * The rest of the DataSource interface, we do not need any of it for the pool
+    * */
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)){
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,92 @@
+package com.teamtreehouse.courses.db;
+
+/**
+ * A point in time snapshot of the ConnectionPool counters.
+ *
+ * The fields are what gson serializes when the stats are requested through the API:
+ * 1. active -> connections borrowed right now
+ * 2. idle -> connections sitting in the pool ready to be used
+ * 3. waiters -> threads blocked waiting for a connection
+ * 4. acquire latency -> how long getConnection() took on average and at worst (in microseconds)
+ * 5. statement hits and misses -> prepared statements reused from the statement caches of the connections and the
+ * ones that had to be prepared
+ * */
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int waiters;
+    private final int maxSize;
+    private final long acquired;
+    private final long timeouts;
+    private final long evicted;
+    private final long avgAcquireMicros;
+    private final long maxAcquireMicros;
+    private final long statementHits;
+    private final long statementMisses;
+
+    public PoolStats(int active, int idle, int total, int waiters, int maxSize, long acquired, long timeouts,
+                     long evicted, long avgAcquireMicros, long maxAcquireMicros, long statementHits,
+                     long statementMisses) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.waiters = waiters;
+        this.maxSize = maxSize;
+        this.acquired = acquired;
+        this.timeouts = timeouts;
+        this.evicted = evicted;
+        this.avgAcquireMicros = avgAcquireMicros;
+        this.maxAcquireMicros = maxAcquireMicros;
+        this.statementHits = statementHits;
+        this.statementMisses = statementMisses;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getWaiters() {
+        return waiters;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getAcquired() {
+        return acquired;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getEvicted() {
+        return evicted;
+    }
+
+    public long getAvgAcquireMicros() {
+        return avgAcquireMicros;
+    }
+
+    public long getMaxAcquireMicros() {
+        return maxAcquireMicros;
+    }
+
+    public long getStatementHits() {
+        return statementHits;
+    }
+
+    public long getStatementMisses() {
+        return statementMisses;
+    }
+}
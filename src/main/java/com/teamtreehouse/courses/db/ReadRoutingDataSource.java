@@ -0,0 +1,122 @@
+package com.teamtreehouse.courses.db;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * The DataSource of the reads when there is a read replica (or any read only copy of the database): it hands out the
+ * connections of the replica, unless the current thread was told to use the primary.
+ *
+ * The daos get a Sql2o on this one for their finds next to the Sql2o of the primary for their adds, they never know
+ * which database a find went to. The http.ReadYourWrites filter tells the request threads which one to use: a client
+ * that just wrote reads from the primary for a while, so it sees its own writes even when the replica lags behind.
+ * */
+public class ReadRoutingDataSource implements DataSource {
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ThreadLocal<Boolean> usePrimary = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder replicaReads = new LongAdder();
+
+    public ReadRoutingDataSource(DataSource primary, DataSource replica) {
+        this.primary = primary;
+        this.replica = replica;
+    }
+
+    /*
+    * for the reads of the current thread from now on, a thread that never calls this reads from the replica
+    * */
+    public void usePrimary(boolean primary) {
+        usePrimary.set(primary);
+    }
+
+    /*
+    * true when the reads of the current thread go to the primary
+    * */
+    public boolean readsFromPrimary() {
+        return usePrimary.get();
+    }
+
+    /*
+    * Runs the reads of the task on the primary and then goes back to the database the thread used before. For the
+    * reads outside of any request, like loading everything the Api keeps in memory at startup: a replica that lags
+    * behind would leave out its latest rows for good.
+    * */
+    public void onPrimary(Runnable task) {
+        boolean before = usePrimary.get();
+        usePrimary.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            usePrimary.set(before);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (usePrimary.get()){
+            primaryReads.increment();
+            return primary.getConnection();
+        }
+        replicaReads.increment();
+        return replica.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The routed connections use the credentials of their databases");
+    }
+
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    /*
+    * The rest of the DataSource interface, we do not need any of it (see ConnectionPool)
+    * */
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)){
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,126 @@
+package com.teamtreehouse.courses.db;
+
+import com.teamtreehouse.courses.exc.DaoException;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+import org.sql2o.Sql2oException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Applies the numbered SQL scripts in the db folder of the classpath (db/V1.sql, db/V2.sql, ...) exactly once.
+ *
+ * Before this class existed the connection string had INIT=RUNSCRIPT in it, which made H2 run the whole init script
+ * every time a connection was opened. Now we run the migration once when the Api starts and every applied version
+ * is recorded in the schema_history table, so on the next start only the new scripts are run.
+ *
+ * To ship a schema change just add the next script (for example db/V3.sql). The first line of a script may be an SQL
+ * comment (-- ...) that we keep as the description of that version.
+ * */
+public class SchemaMigrator {
+    public static final String HISTORY_TABLE = "schema_history";
+
+    private final Sql2o sql2o;
+    private final String location;
+
+    public SchemaMigrator(Sql2o sql2o) {
+        this(sql2o, "db");
+    }
+
+    public SchemaMigrator(Sql2o sql2o, String location) {
+        this.sql2o = sql2o;
+        this.location = location;
+    }
+
+    /**
+     * Runs every script newer than the current version, in order.
+     *
+     * @return how many versions were applied by this call
+     * */
+    public int migrate() throws DaoException {
+        int applied = 0;
+        try (Connection con = sql2o.open()){
+            con.createQuery("CREATE TABLE IF NOT EXISTS " + HISTORY_TABLE + " (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR, " +
+                    "script VARCHAR, " +
+                    "installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "execution_ms BIGINT)")
+                    .executeUpdate();
+
+            int version = currentVersion(con);
+            while (true){
+                int next = version + 1;
+                String script = String.format("%s/V%d.sql", location, next);
+                URL resource = SchemaMigrator.class.getClassLoader().getResource(script);
+                if (resource == null){
+                    break;
+                }
+
+                long start = System.currentTimeMillis();
+                try {
+                    /*
+                    * H2 can run a script straight from the classpath, the same thing INIT=RUNSCRIPT used to do
+                    * */
+                    con.createQuery(String.format("RUNSCRIPT FROM 'classpath:%s'", script))
+                            .executeUpdate();
+                } catch (Sql2oException ex){
+                    throw new DaoException(ex, "Problem migrating schema to version " + next);
+                }
+
+                con.createQuery("INSERT INTO " + HISTORY_TABLE + "(version, description, script, execution_ms) " +
+                        "VALUES (:version, :description, :script, :ms)")
+                        .addParameter("version", next)
+                        .addParameter("description", describe(resource))
+                        .addParameter("script", script)
+                        .addParameter("ms", System.currentTimeMillis() - start)
+                        .executeUpdate();
+                version = next;
+                applied++;
+            }
+        } catch (Sql2oException ex){
+            throw new DaoException(ex, "Problem reading schema history");
+        }
+        return applied;
+    }
+
+    /**
+     * The latest applied version, 0 when nothing has been applied yet
+     * */
+    public int currentVersion() {
+        try (Connection con = sql2o.open()){
+            Integer tables = con.createQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_NAME = :name")
+                    .addParameter("name", HISTORY_TABLE.toUpperCase())
+                    .executeScalar(Integer.class);
+            return tables == 0 ? 0 : currentVersion(con);
+        }
+    }
+
+    private int currentVersion(Connection con) {
+        Integer version = con.createQuery("SELECT MAX(version) FROM " + HISTORY_TABLE)
+                .executeScalar(Integer.class);
+        return version == null ? 0 : version;
+    }
+
+    /*
+    * takes the first line of the script as the description when it is an SQL comment
+    * */
+    private static String describe(URL resource) {
+        try (InputStream in = resource.openStream();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))){
+            String first = reader.readLine();
+            if (first != null && first.startsWith("--")){
+                return first.substring(2).trim();
+            }
+        } catch (IOException ignored){
+            // the description is only informative
+        }
+        return null;
+    }
+}
@@ -0,0 +1,135 @@
+package com.teamtreehouse.courses.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The prepared statements of one physical connection of the ConnectionPool, by their SQL, so the daos that prepare
+ * the same query again and again (Sql2o prepares the statement of every query it creates) get the statement H2 already
+ * parsed and planned the last time.
+ *
+ * Sql2o prepares every query with prepareStatement(sql, RETURN_GENERATED_KEYS) unless it is told otherwise, so we
+ * cache that form as well. A statement is kept by its SQL together with its autoGeneratedKeys, the two forms of the
+ * same SQL are different statements.
+ *
+ * The borrower gets a proxy of the statement: its close() only clears the parameters and gives the statement back to
+ * the cache. When the same SQL is prepared again while its statement is still open (one query inside the loop of
+ * another) the second one is an ordinary statement. The least recently used statements beyond the capacity are
+ * really closed.
+ *
+ * Only one thread at a time uses a connection, thus only one thread at a time uses its cache and we need no locking.
+ * */
+class StatementCache {
+    private final Connection physical;
+    private final int capacity;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int capacity, LongAdder hits, LongAdder misses) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null){
+            if (cached.open){
+                return physical.prepareStatement(sql, autoGeneratedKeys);
+            }
+            hits.increment();
+            cached.open = true;
+            return cached.proxy;
+        }
+        misses.increment();
+        cached = new CachedStatement(physical.prepareStatement(sql, autoGeneratedKeys));
+        statements.put(key, cached);
+        evictOverCapacity();
+        cached.open = true;
+        return cached.proxy;
+    }
+
+    private void evictOverCapacity() {
+        Iterator<Map.Entry<String, CachedStatement>> leastRecentFirst = statements.entrySet().iterator();
+        while (statements.size() > capacity && leastRecentFirst.hasNext()){
+            CachedStatement eldest = leastRecentFirst.next().getValue();
+            leastRecentFirst.remove();
+            /*
+            * a statement still in use is closed when its borrower closes it
+            * */
+            eldest.evicted = true;
+            if (!eldest.open){
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored){
+            // it is no use to us anymore anyway
+        }
+    }
+
+    private static class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean open;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()){
+                case "close":
+                    if (open){
+                        open = false;
+                        if (evicted){
+                            statement.close();
+                        } else {
+                            statement.clearParameters();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return !open || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    if (!open){
+                        throw new SQLException("Statement has already been closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException ex){
+                        throw ex.getCause();
+                    }
+            }
+        }
+    }
+}
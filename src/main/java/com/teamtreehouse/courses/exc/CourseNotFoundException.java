@@ -0,0 +1,21 @@
+package com.teamtreehouse.courses.exc;
+
+/*
+* A DaoException for writes that point to a course that does not exist. Instead of looking the course up before every
+* write we let the database check the foreign key and turn its violation into this exception, thus the Api can still
+* answer 404 for it (and 500 for any other DaoException)
+* */
+public class CourseNotFoundException extends DaoException {
+    private static final long serialVersionUID = 1L;
+
+    private final int courseId;
+
+    public CourseNotFoundException(Exception originalException, int courseId){
+        super(originalException, "Could not find Course with id: " + courseId);
+        this.courseId = courseId;
+    }
+
+    public int getCourseId() {
+        return courseId;
+    }
+}
@@ -0,0 +1,110 @@
+package com.teamtreehouse.courses.http;
+
+import com.teamtreehouse.courses.exc.ApiError;
+import spark.Route;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load shedding in front of the routes: at most maxConcurrent requests run at once, up to maxQueued more wait for a
+ * turn (at most queueTimeoutMillis) and everything beyond that is turned away right away with 503 Service Unavailable
+ * and a Retry-After header.
+ *
+ * Without it an overloaded server takes on every request, they all queue up for the threads and the database
+ * connections, and every client waits longer and longer until they all time out. With it the requests we can serve
+ * keep their normal latency and the others learn within microseconds that they should come back later.
+ *
+ * maxConcurrent + maxQueued should stay below the maximum threads of the server (courses.threads.max), the waiting
+ * requests hold a server thread too.
+ * */
+public class AdmissionControl {
+    private final Semaphore running;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+    private final String retryAfterSeconds;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdmissionControl(int maxConcurrent, int maxQueued, long queueTimeoutMillis, int retryAfterSeconds) {
+        if (maxConcurrent < 1){
+            throw new IllegalArgumentException("Concurrency must be at least 1 but was " + maxConcurrent);
+        }
+        if (maxQueued < 0){
+            throw new IllegalArgumentException("Queue size must not be negative but was " + maxQueued);
+        }
+        this.running = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+    }
+
+    /*
+    * Wraps a route so it only runs once it got one of the maxConcurrent turns. The turn is given back when the route
+    * is done, whether it returned or threw (a halt, an ApiError), which is why this is a route wrapper and not a pair
+    * of before and after filters: Spark skips the after filters when a route throws.
+    * */
+    public Route admit(Route route) {
+        return (req, res) -> {
+            if (!enter()){
+                res.header("Retry-After", retryAfterSeconds);
+                throw new ApiError(503, "The server is too busy right now, try again later");
+            }
+            try {
+                return route.handle(req, res);
+            } finally {
+                exit();
+            }
+        };
+    }
+
+    /*
+    * the fast path is a free turn, otherwise we wait in the queue if there is room left in it
+    * */
+    boolean enter() throws InterruptedException {
+        if (running.tryAcquire()){
+            admitted.incrementAndGet();
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued){
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            if (running.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)){
+                admitted.incrementAndGet();
+                return true;
+            }
+            rejected.incrementAndGet();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    void exit() {
+        running.release();
+    }
+
+    public int getRunning() {
+        return maxConcurrent - running.availablePermits();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
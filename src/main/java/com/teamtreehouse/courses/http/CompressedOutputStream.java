@@ -0,0 +1,123 @@
+package com.teamtreehouse.courses.http;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The body of one response, compressed with the encoding Compression negotiated, but only when it is big enough.
+ *
+ * We do not know the size of a streamed body upfront, so the first minSize bytes are held back. As soon as more come
+ * in we set the Content-Encoding header and compress from there on. If the body ends (close) before that the held
+ * back bytes are sent as they are. Either way the headers are only set once we know, before anything is committed.
+ *
+ * NOTE: the stream must be closed, until then a small body is still waiting in the buffer. Closing finishes the
+ * gzip or deflate stream but only flushes the one of the container (see NonClosingOutputStream).
+ * */
+class CompressedOutputStream extends OutputStream {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final HttpServletResponse response;
+    private final String encoding;
+    private final int level;
+    private final int minSize;
+    private ByteArrayOutputStream held;
+    private OutputStream out;
+
+    CompressedOutputStream(HttpServletResponse response, String encoding, int level, int minSize) {
+        this.response = response;
+        this.encoding = encoding;
+        this.level = level;
+        this.minSize = minSize;
+        this.held = new ByteArrayOutputStream(Math.min(minSize, BUFFER_SIZE));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (out == null){
+            if (held.size() + len < minSize){
+                held.write(b, off, len);
+                return;
+            }
+            start(true);
+        }
+        out.write(b, off, len);
+    }
+
+    /*
+    * a flush while we still hold the bytes back does nothing, the decision is made by the next write or by close
+    * */
+    @Override
+    public void flush() throws IOException {
+        if (out != null){
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null){
+            start(false);
+        }
+        out.close();
+    }
+
+    private void start(boolean compress) throws IOException {
+        OutputStream raw = new NonClosingOutputStream(response.getOutputStream());
+        if (compress){
+            response.setHeader("Content-Encoding", encoding);
+            /*
+            * the compressed bytes differ from the plain ones, so a strong ETag would be wrong here. Like nginx does
+            * we make it weak, ConditionalGet ignores the W/ when it compares
+            * */
+            String etag = response.getHeader("ETag");
+            if (etag != null && !etag.startsWith("W/")){
+                response.setHeader("ETag", "W/" + etag);
+            }
+            out = Compression.GZIP.equals(encoding) ? new LeveledGzipOutputStream(raw, level) :
+                    new LeveledDeflaterOutputStream(raw, level);
+        } else {
+            out = raw;
+        }
+        held.writeTo(out);
+        held = null;
+    }
+
+    /*
+    * GZIPOutputStream has no constructor for the level, but its deflater is protected
+    * */
+    private static class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+
+    /*
+    * HTTP deflate is the zlib format (RFC 1950), which is what a Deflater writes unless it is told nowrap. A Deflater
+    * we pass in ourselves is not ended by close, so we do that to free its native memory right away.
+    * */
+    private static class LeveledDeflaterOutputStream extends DeflaterOutputStream {
+        LeveledDeflaterOutputStream(OutputStream out, int level) {
+            super(out, new Deflater(level), BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+}
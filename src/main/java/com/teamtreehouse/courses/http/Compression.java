@@ -0,0 +1,136 @@
+package com.teamtreehouse.courses.http;
+
+import spark.Request;
+import spark.Response;
+import spark.ResponseTransformer;
+import spark.Route;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * gzip and deflate compression of our JSON responses, negotiated with the Accept-Encoding header of the client.
+ *
+ * Spark only knows gzip (when the route sets Content-Encoding itself) at a fixed level and for any size. Here we pick
+ * the encoding, use the configured compression level and leave bodies smaller than minSize alone: for those the gzip
+ * header and the CPU cost more than the few bytes we would save.
+ *
+ * There are two ways in:
+ * 1. open() gives a route that streams its body (like GET /reviews) the stream to write it to
+ * 2. json() wraps a normal route, renders its result and writes it through open() as well
+ *
+ * Either way the response is written and committed by us, Spark then has nothing left to write.
+ * */
+public class Compression {
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private final boolean enabled;
+    private final int minSize;
+    private final int level;
+
+    public Compression(boolean enabled, int minSize, int level) {
+        if (minSize < 0){
+            throw new IllegalArgumentException("Minimum size must not be negative but was " + minSize);
+        }
+        if (level < 0 || level > 9){
+            throw new IllegalArgumentException("Compression level must be between 0 and 9 but was " + level);
+        }
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.level = level;
+    }
+
+    /*
+    * The stream for the body of this response, it compresses if the client accepts it and the body gets big enough.
+    * The caller must close it: that finishes the compressed body, but the stream of the container is only flushed
+    * (see NonClosingOutputStream) so a streamed body stays chunked.
+    * */
+    public OutputStream open(Request req, Response res) throws IOException {
+        if (!enabled){
+            return new NonClosingOutputStream(res.raw().getOutputStream());
+        }
+        /*
+        * the body now depends on the Accept-Encoding of the request, caches must know that even when we send it plain
+        * */
+        res.header("Vary", "Accept-Encoding");
+        String encoding = negotiate(req.headers("Accept-Encoding"));
+        if (encoding == null){
+            return new NonClosingOutputStream(res.raw().getOutputStream());
+        }
+        return new CompressedOutputStream(res.raw(), encoding, level, minSize);
+    }
+
+    /*
+    * Wraps a route whose result is rendered with the given transformer (our JsonTransformer). A route that already
+    * wrote its body itself (it streamed it) has committed the response and we leave it alone.
+    * */
+    public Route json(Route route, ResponseTransformer transformer) {
+        return (req, res) -> {
+            Object model = route.handle(req, res);
+            if (res.raw().isCommitted()){
+                return "";
+            }
+            byte[] body = transformer.render(model).getBytes(StandardCharsets.UTF_8);
+            res.type("application/json");
+            try (OutputStream out = open(req, res)){
+                /*
+                * a body that goes out as it is has a known length, the client gets it as Content-Length rather than
+                * in chunks
+                * */
+                if (!(out instanceof CompressedOutputStream) || body.length < minSize){
+                    res.raw().setContentLength(body.length);
+                }
+                out.write(body);
+            }
+            return "";
+        };
+    }
+
+    /*
+    * Picks gzip or deflate from an Accept-Encoding header like "deflate, gzip;q=0.8" (RFC 7231 section 5.3.4). The
+    * encoding with the highest q wins, on a tie gzip since every client handles it. q=0 means not acceptable, * stands
+    * for any encoding not listed. Returns null when neither is acceptable.
+    * */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null){
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")){
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < params.length; i++){
+                String param = params[i].trim();
+                if (param.startsWith("q=")){
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException ex){
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals(GZIP) || coding.equals("x-gzip")){
+                gzip = q;
+            } else if (coding.equals(DEFLATE)){
+                deflate = q;
+            } else if (coding.equals("*")){
+                any = q;
+            }
+        }
+        if (gzip < 0){
+            gzip = any;
+        }
+        if (deflate < 0){
+            deflate = any;
+        }
+        if (gzip <= 0 && deflate <= 0){
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+}
@@ -0,0 +1,40 @@
+package com.teamtreehouse.courses.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a GET can be answered with 304 Not Modified: the client sends the ETag of the copy it already has in
+ * its If-None-Match header and when that is still the current ETag the client's copy is up to date.
+ *
+ * It also counts how many GETs it checked and how many of them it could short-circuit with a 304.
+ * */
+public class ConditionalGet {
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    /*
+    * If-None-Match holds a comma separated list of ETags or * (any). We compare weakly (RFC 7232 section 3.2): a W/ in
+    * front of a tag is ignored, some proxies add one when they change the encoding of the body.
+    * */
+    public boolean isNotModified(String ifNoneMatch, String etag) {
+        checked.incrementAndGet();
+        if (ifNoneMatch == null){
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")){
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")){
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)){
+                notModified.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ConditionalGetStats getStats() {
+        return new ConditionalGetStats(checked.get(), notModified.get());
+    }
+}
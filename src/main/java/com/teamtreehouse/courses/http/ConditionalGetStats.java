@@ -0,0 +1,29 @@
+package com.teamtreehouse.courses.http;
+
+/**
+ * A snapshot of the ConditionalGet counters. Every notModified is a request we answered without a query and without
+ * serializing a body.
+ * */
+public class ConditionalGetStats {
+    private final long checked;
+    private final long notModified;
+    private final double notModifiedRatio;
+
+    public ConditionalGetStats(long checked, long notModified) {
+        this.checked = checked;
+        this.notModified = notModified;
+        this.notModifiedRatio = checked == 0 ? 0 : (double) notModified / checked;
+    }
+
+    public long getChecked() {
+        return checked;
+    }
+
+    public long getNotModified() {
+        return notModified;
+    }
+
+    public double getNotModifiedRatio() {
+        return notModifiedRatio;
+    }
+}
@@ -0,0 +1,40 @@
+package com.teamtreehouse.courses.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The output stream of the servlet container as we hand it to the routes: close() only flushes it.
+ *
+ * Closing the container stream tells Jetty the body is complete, and a body that still fits in its buffer then goes out
+ * with a Content-Length. That is fine for a rendered body but it would turn a streamed one (GET /reviews) into a
+ * buffered one. The flush commits the response with chunked transfer encoding instead, and the container completes
+ * the response itself once the route has returned.
+ * */
+class NonClosingOutputStream extends OutputStream {
+    private final OutputStream out;
+
+    NonClosingOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,225 @@
+package com.teamtreehouse.courses.http;
+
+import com.teamtreehouse.courses.exc.ApiError;
+import spark.Filter;
+import spark.Request;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiting per client, with one limit for the reads (GET and HEAD) and one for the writes. A client
+ * is its API key (the keyHeader of the request) or else its IP address. A client over its limit gets 429 Too Many
+ * Requests with a Retry-After header, through our usual ApiError JSON.
+ *
+ * Every bucket is a single AtomicLong holding the time its next token is due (the "theoretical arrival time" of the
+ * GCRA algorithm, which behaves exactly like a token bucket): a request moves it one interval (1 / rate) further and
+ * is let through if it ends up no more than burst intervals ahead of now. That is one compare-and-set and no lock, and
+ * the buckets live in a ConcurrentHashMap which is striped itself, so clients on different cores do not wait for each
+ * other. A decision takes a few tens of nanoseconds.
+ *
+ * A bucket whose next token is due in the past is full, it is no different from a new bucket, thus from time to time
+ * (every sweepIntervalMillis) we remove those. Idle clients cost no memory for long. The requests that come by do the
+ * sweeping, but each one looks at SWEEP_CHUNK buckets at most and leaves the rest to the next ones, so no single
+ * request pays for all of our clients.
+ * */
+public class RateLimiter {
+    static final int SWEEP_CHUNK = 256;
+
+    private final Limit reads;
+    private final Limit writes;
+    private final String keyHeader;
+    private final LongSupplier nanoClock;
+    private final long sweepIntervalNanos;
+    private final AtomicLong lastSweep;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile boolean sweepPending;
+    /*
+    * where the sweep that is under way stands, only touched by the thread that holds sweeping
+    * */
+    private Iterator<Limit> sweepLimits;
+    private Limit sweepLimit;
+    private Iterator<Map.Entry<String, AtomicLong>> sweepCursor;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+
+    /*
+    * a rate of 0 means no limit for that kind of request
+    * */
+    public RateLimiter(double readsPerSecond, int readBurst, double writesPerSecond, int writeBurst,
+                       String keyHeader, long sweepIntervalMillis) {
+        this(readsPerSecond, readBurst, writesPerSecond, writeBurst, keyHeader, sweepIntervalMillis,
+                System::nanoTime);
+    }
+
+    RateLimiter(double readsPerSecond, int readBurst, double writesPerSecond, int writeBurst,
+                String keyHeader, long sweepIntervalMillis, LongSupplier nanoClock) {
+        this.reads = readsPerSecond > 0 ? new Limit(readsPerSecond, readBurst) : null;
+        this.writes = writesPerSecond > 0 ? new Limit(writesPerSecond, writeBurst) : null;
+        this.keyHeader = keyHeader;
+        this.nanoClock = nanoClock;
+        this.sweepIntervalNanos = TimeUnit.MILLISECONDS.toNanos(sweepIntervalMillis);
+        this.lastSweep = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /*
+    * The before filter for the Api. /metrics and the /admin routes are not limited, we need them most when something
+    * is hammering us.
+    * */
+    public Filter filter() {
+        return (req, res) -> {
+            String path = req.pathInfo();
+            if (path != null && (path.equals("/metrics") || path.startsWith("/admin/"))){
+                return;
+            }
+            long waitNanos = tryAcquire(clientOf(req), isRead(req.requestMethod()));
+            if (waitNanos > 0){
+                res.header("Retry-After", String.valueOf(
+                        Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1))));
+                throw new ApiError(429, "Too many requests, slow down");
+            }
+        };
+    }
+
+    /*
+    * Takes a token from the bucket of the client, gives back 0 when it got one or else how many nanoseconds until the
+    * next token is due
+    * */
+    long tryAcquire(String client, boolean read) {
+        Limit limit = read ? reads : writes;
+        if (limit == null){
+            return 0;
+        }
+        long now = nanoClock.getAsLong();
+        sweepIfDue(now);
+        long waitNanos = limit.tryAcquire(client, now);
+        if (waitNanos == 0){
+            allowed.increment();
+        } else {
+            limited.increment();
+        }
+        return waitNanos;
+    }
+
+    private String clientOf(Request req) {
+        String key = keyHeader == null ? null : req.headers(keyHeader);
+        return key != null ? "key:" + key : req.ip();
+    }
+
+    private static boolean isRead(String method) {
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    /*
+    * Only the one request that wins the compare-and-set of sweeping does a chunk of the sweep, the others go on right
+    * away. A sweep starts every sweepIntervalNanos and goes on over as many requests as it needs.
+    * */
+    private void sweepIfDue(long now) {
+        if (!sweepPending && now - lastSweep.get() < sweepIntervalNanos){
+            return;
+        }
+        if (!sweeping.compareAndSet(false, true)){
+            return;
+        }
+        try {
+            if (!sweepPending){
+                if (now - lastSweep.get() < sweepIntervalNanos){
+                    return;
+                }
+                lastSweep.set(now);
+                List<Limit> limits = new ArrayList<>(2);
+                if (reads != null){
+                    limits.add(reads);
+                }
+                if (writes != null){
+                    limits.add(writes);
+                }
+                sweepLimits = limits.iterator();
+                sweepCursor = null;
+                sweepPending = true;
+            }
+            sweepChunk(now);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /*
+    * NOTE: a client that takes a token from a bucket in the moment we remove it gets a full new bucket, which is at
+    * most one burst more than it should have had
+    * */
+    private void sweepChunk(long now) {
+        for (int looked = 0; looked < SWEEP_CHUNK; looked++){
+            while (sweepCursor == null || !sweepCursor.hasNext()){
+                if (!sweepLimits.hasNext()){
+                    sweepLimits = null;
+                    sweepLimit = null;
+                    sweepCursor = null;
+                    sweepPending = false;
+                    return;
+                }
+                sweepLimit = sweepLimits.next();
+                sweepCursor = sweepLimit.buckets.entrySet().iterator();
+            }
+            Map.Entry<String, AtomicLong> bucket = sweepCursor.next();
+            if (bucket.getValue().get() <= now){
+                sweepLimit.buckets.remove(bucket.getKey(), bucket.getValue());
+            }
+        }
+    }
+
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    public long getLimited() {
+        return limited.sum();
+    }
+
+    public int getClients() {
+        return (reads == null ? 0 : reads.buckets.size()) + (writes == null ? 0 : writes.buckets.size());
+    }
+
+    /*
+    * One rate and burst with the buckets of all clients. A bucket holds the time (nanoTime) its next token is due.
+    * */
+    private static class Limit {
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        Limit(double perSecond, int burst) {
+            if (burst < 1){
+                throw new IllegalArgumentException("Burst must be at least 1 but was " + burst);
+            }
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+            this.burstNanos = intervalNanos * burst;
+        }
+
+        long tryAcquire(String client, long now) {
+            AtomicLong bucket = buckets.get(client);
+            if (bucket == null){
+                bucket = buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+            }
+            while (true){
+                long due = bucket.get();
+                long next = Math.max(due, now) + intervalNanos;
+                if (next - now > burstNanos){
+                    return next - now - burstNanos;
+                }
+                if (bucket.compareAndSet(due, next)){
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.teamtreehouse.courses.http;
+
+import com.teamtreehouse.courses.db.ReadRoutingDataSource;
+import spark.Filter;
+import spark.Request;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the database the reads of a request go to when there is a read replica (see ReadRoutingDataSource).
+ *
+ * Reads go to the replica, except for the clients that wrote something (any request but GET and HEAD) during the last
+ * pinMillis: those are pinned to the primary, so a client that posts a review and then lists the reviews of the course
+ * finds its review even if the replica did not get it yet. A client is its API key (keyHeader) or else its IP address,
+ * like in the RateLimiter. A pinMillis of 0 sends the reads of all GETs (and HEADs) to the replica.
+ *
+ * The pins that ran out are removed by the next request of their client or, for the clients that do not come back, by
+ * the request that sweeps them (at most once per pinMillis).
+ * */
+public class ReadYourWrites {
+    private final ReadRoutingDataSource reads;
+    private final long pinNanos;
+    private final String keyHeader;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<String, Long> pinnedUntil = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+
+    public ReadYourWrites(ReadRoutingDataSource reads, long pinMillis, String keyHeader) {
+        this(reads, pinMillis, keyHeader, System::nanoTime);
+    }
+
+    ReadYourWrites(ReadRoutingDataSource reads, long pinMillis, String keyHeader, LongSupplier nanoClock) {
+        this.reads = reads;
+        this.pinNanos = TimeUnit.MILLISECONDS.toNanos(pinMillis);
+        this.keyHeader = keyHeader;
+        this.nanoClock = nanoClock;
+        this.lastSweep = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /*
+    * The before filter for the Api. It runs for every request and always sets the database of its thread, the
+    * threads of Jetty serve one request after the other.
+    * */
+    public Filter filter() {
+        return (req, res) -> reads.usePrimary(readsFromPrimary(clientOf(req), isWrite(req.requestMethod())));
+    }
+
+    /*
+    * true when the reads of this request must go to the primary, a write pins the client from now on. The reads of a
+    * write itself always go to the primary, even without pins: its checks (does the course exist?) must see what was
+    * committed.
+    * */
+    boolean readsFromPrimary(String client, boolean write) {
+        if (pinNanos == 0){
+            return write;
+        }
+        long now = nanoClock.getAsLong();
+        sweepIfDue(now);
+        if (write){
+            pinnedUntil.put(client, now + pinNanos);
+            return true;
+        }
+        Long until = pinnedUntil.get(client);
+        if (until == null){
+            return false;
+        }
+        if (until - now > 0){
+            return true;
+        }
+        pinnedUntil.remove(client, until);
+        return false;
+    }
+
+    public int getPinnedClients() {
+        return pinnedUntil.size();
+    }
+
+    private String clientOf(Request req) {
+        String key = keyHeader == null ? null : req.headers(keyHeader);
+        return key != null ? "key:" + key : req.ip();
+    }
+
+    private static boolean isWrite(String method) {
+        return !"GET".equals(method) && !"HEAD".equals(method);
+    }
+
+    private void sweepIfDue(long now) {
+        long last = lastSweep.get();
+        if (now - last < pinNanos || !lastSweep.compareAndSet(last, now)){
+            return;
+        }
+        pinnedUntil.entrySet().removeIf(pin -> pin.getValue() - now <= 0);
+    }
+}
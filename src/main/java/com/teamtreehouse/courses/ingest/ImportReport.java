@@ -0,0 +1,86 @@
+package com.teamtreehouse.courses.ingest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the NdjsonImporter did: how many records it read, what it added, how fast and which records failed.
+ *
+ * Only the first errors are listed (failed still counts all of them). aborted is true when the input had broken JSON
+ * and the import stopped reading at that point.
+ * */
+public class ImportReport {
+    private final int records;
+    private final int courses;
+    private final int reviews;
+    private final int failed;
+    private final boolean aborted;
+    private final List<Error> errors;
+    private final long elapsedMillis;
+    private final long rowsPerSecond;
+
+    public ImportReport(int records, int courses, int reviews, int failed, boolean aborted, List<Error> errors,
+                        long elapsedNanos) {
+        this.records = records;
+        this.courses = courses;
+        this.reviews = reviews;
+        this.failed = failed;
+        this.aborted = aborted;
+        this.errors = errors;
+        this.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        this.rowsPerSecond = elapsedNanos == 0 ? 0 : (courses + reviews) * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public int getRecords() {
+        return records;
+    }
+
+    public int getCourses() {
+        return courses;
+    }
+
+    public int getReviews() {
+        return reviews;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public List<Error> getErrors() {
+        return errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    /*
+    * one failed record, record is its position in the input (the first record is 1)
+    * */
+    public static class Error {
+        private final int record;
+        private final String errorMsg;
+
+        public Error(int record, String errorMsg) {
+            this.record = record;
+            this.errorMsg = errorMsg;
+        }
+
+        public int getRecord() {
+            return record;
+        }
+
+        public String getErrorMsg() {
+            return errorMsg;
+        }
+    }
+}
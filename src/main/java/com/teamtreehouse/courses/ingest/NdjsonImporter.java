@@ -0,0 +1,241 @@
+package com.teamtreehouse.courses.ingest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.teamtreehouse.courses.dao.CourseDao;
+import com.teamtreehouse.courses.dao.ReviewDao;
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk import of courses and reviews from newline delimited JSON (one JSON object per line).
+ *
+ * Every record has a "type" which is either "course" or "review":
+ *
+ *   {"type": "course", "ref": "java-basics", "name": "Java Basics", "url": "http://..."}
+ *   {"type": "review", "courseRef": "java-basics", "rating": 5, "comment": "Great"}
+ *   {"type": "review", "courseId": 12, "rating": 4, "comment": "Good"}
+ *
+ * A review points to its course either by the id of a course already in the database (courseId) or by the "ref" of a
+ * course earlier in the same import (courseRef), since the ids of new courses are only known after they are added.
+ *
+ * The input is read with a gson JsonReader one record at a time, so the import never holds the whole input in memory,
+ * only the records of the current batch. Once batchSize records are pending they are written with CourseDao.addAll and
+ * ReviewDao.addAll (courses first so the reviews can refer to them). When a batch fails we add its records one at a
+ * time to find the bad ones, so one bad record does not make the rest of its batch fail.
+ * */
+public class NdjsonImporter {
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final CourseDao courseDao;
+    private final ReviewDao reviewDao;
+    private final Gson gson;
+    private final int batchSize;
+
+    public NdjsonImporter(CourseDao courseDao, ReviewDao reviewDao, Gson gson, int batchSize) {
+        if (batchSize < 1){
+            throw new IllegalArgumentException("Batch size must be at least 1 but was " + batchSize);
+        }
+        this.courseDao = courseDao;
+        this.reviewDao = reviewDao;
+        this.gson = gson;
+        this.batchSize = batchSize;
+    }
+
+    public ImportReport importFrom(Reader input) throws IOException {
+        long start = System.nanoTime();
+        ImportRun run = new ImportRun();
+
+        /*
+        * In lenient mode the JsonReader accepts many top level values one after the other, which is exactly what
+        * newline delimited JSON is
+        * */
+        JsonReader reader = new JsonReader(input);
+        reader.setLenient(true);
+        JsonParser parser = new JsonParser();
+        try {
+            while (reader.peek() != JsonToken.END_DOCUMENT){
+                run.record(parser.parse(reader));
+            }
+        } catch (JsonParseException | MalformedJsonException ex){
+            /*
+            * after broken JSON we can not tell where the next record starts, thus we stop reading here but still
+            * write what we have so far
+            * */
+            run.fail(run.records + 1, "Stopped reading, malformed JSON: " + ex.getMessage());
+            run.aborted = true;
+        }
+        run.flush();
+        return run.report(System.nanoTime() - start);
+    }
+
+    /*
+    * The state of one import: the records waiting for the next batch, the refs of the courses added so far and the
+    * counters for the report
+    * */
+    private class ImportRun {
+        private final List<Pending<Course>> pendingCourses = new ArrayList<>();
+        private final List<Pending<Review>> pendingReviews = new ArrayList<>();
+        private final Map<String, Integer> courseIdsByRef = new HashMap<>();
+        private final List<ImportReport.Error> errors = new ArrayList<>();
+        private int records;
+        private int coursesAdded;
+        private int reviewsAdded;
+        private int failed;
+        private boolean aborted;
+
+        void record(JsonElement element) {
+            int record = ++records;
+            if (!element.isJsonObject()){
+                fail(record, "record must be a JSON object");
+                return;
+            }
+            JsonObject object = element.getAsJsonObject();
+            try {
+                String type = stringOrNull(object, "type");
+                if ("course".equals(type)){
+                    Course course = gson.fromJson(object, Course.class);
+                    if (course.getName() == null){
+                        fail(record, "course must have a name");
+                        return;
+                    }
+                    pendingCourses.add(new Pending<>(record, course, stringOrNull(object, "ref")));
+                } else if ("review".equals(type)){
+                    Review review = gson.fromJson(object, Review.class);
+                    String courseRef = stringOrNull(object, "courseRef");
+                    if (courseRef == null && !object.has("courseId")){
+                        fail(record, "review must have a courseId or a courseRef");
+                        return;
+                    }
+                    if (review.getRating() < Review.MIN_RATING || review.getRating() > Review.MAX_RATING){
+                        fail(record, String.format("rating must be between %d and %d but was %d",
+                                Review.MIN_RATING, Review.MAX_RATING, review.getRating()));
+                        return;
+                    }
+                    pendingReviews.add(new Pending<>(record, review, courseRef));
+                } else {
+                    fail(record, "type must be \"course\" or \"review\" but was " + type);
+                    return;
+                }
+            } catch (JsonParseException | IllegalStateException | UnsupportedOperationException ex){
+                fail(record, "record has invalid fields: " + ex.getMessage());
+                return;
+            }
+
+            if (pendingCourses.size() + pendingReviews.size() >= batchSize){
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!pendingCourses.isEmpty()){
+                List<Course> courses = new ArrayList<>(pendingCourses.size());
+                for (Pending<Course> pending : pendingCourses){
+                    courses.add(pending.item);
+                }
+                try {
+                    courseDao.addAll(courses);
+                    for (Pending<Course> pending : pendingCourses){
+                        courseAdded(pending);
+                    }
+                } catch (DaoException batchFailed){
+                    for (Pending<Course> pending : pendingCourses){
+                        try {
+                            courseDao.add(pending.item);
+                            courseAdded(pending);
+                        } catch (DaoException ex){
+                            fail(pending.record, ex.getMessage());
+                        }
+                    }
+                }
+                pendingCourses.clear();
+            }
+
+            if (!pendingReviews.isEmpty()){
+                /*
+                * the reviews that point to a course of this import by its ref get the id of that course now
+                * */
+                List<Pending<Review>> resolved = new ArrayList<>(pendingReviews.size());
+                for (Pending<Review> pending : pendingReviews){
+                    if (pending.ref != null){
+                        Integer courseId = courseIdsByRef.get(pending.ref);
+                        if (courseId == null){
+                            fail(pending.record, "no course with ref " + pending.ref + " was imported before");
+                            continue;
+                        }
+                        pending.item.setCourseId(courseId);
+                    }
+                    resolved.add(pending);
+                }
+                List<Review> reviews = new ArrayList<>(resolved.size());
+                for (Pending<Review> pending : resolved){
+                    reviews.add(pending.item);
+                }
+                try {
+                    reviewDao.addAll(reviews);
+                    reviewsAdded += reviews.size();
+                } catch (DaoException batchFailed){
+                    for (Pending<Review> pending : resolved){
+                        try {
+                            reviewDao.add(pending.item);
+                            reviewsAdded++;
+                        } catch (DaoException ex){
+                            fail(pending.record, String.format("%s (course %d)",
+                                    ex.getMessage(), pending.item.getCourseId()));
+                        }
+                    }
+                }
+                pendingReviews.clear();
+            }
+        }
+
+        private void courseAdded(Pending<Course> pending) {
+            coursesAdded++;
+            if (pending.ref != null){
+                courseIdsByRef.put(pending.ref, pending.item.getId());
+            }
+        }
+
+        void fail(int record, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS){
+                errors.add(new ImportReport.Error(record, message));
+            }
+        }
+
+        ImportReport report(long elapsedNanos) {
+            return new ImportReport(records, coursesAdded, reviewsAdded, failed, aborted, errors, elapsedNanos);
+        }
+    }
+
+    private static String stringOrNull(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private static class Pending<T> {
+        private final int record;
+        private final T item;
+        private final String ref;
+
+        Pending(int record, T item, String ref) {
+            this.record = record;
+            this.item = item;
+            this.ref = ref;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.teamtreehouse.courses.ingest;
+
+/**
+ * A review handed to the ReviewWriteQueue, what the client gets back with 202 Accepted and can look up later by its
+ * id: QUEUED until the writer gets to it, then COMMITTED with the id of the new review or FAILED with the reason.
+ *
+ * Only the writer thread changes it, the fields are volatile so the request threads that look it up see its changes.
+ * */
+public class ReviewSubmission {
+    public enum State { QUEUED, COMMITTED, FAILED }
+
+    private final long id;
+    private final int courseId;
+    private volatile State state = State.QUEUED;
+    private volatile Integer reviewId;
+    private volatile String errorMsg;
+
+    public ReviewSubmission(long id, int courseId) {
+        this.id = id;
+        this.courseId = courseId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Integer getReviewId() {
+        return reviewId;
+    }
+
+    public String getErrorMsg() {
+        return errorMsg;
+    }
+
+    void committed(int reviewId) {
+        this.reviewId = reviewId;
+        this.state = State.COMMITTED;
+    }
+
+    void failed(String errorMsg) {
+        this.errorMsg = errorMsg;
+        this.state = State.FAILED;
+    }
+}
@@ -0,0 +1,207 @@
+package com.teamtreehouse.courses.ingest;
+
+import com.teamtreehouse.courses.dao.ReviewDao;
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.metrics.LatencyHistogram;
+import com.teamtreehouse.courses.metrics.Metrics;
+import com.teamtreehouse.courses.model.Review;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind for new reviews: the request thread only puts the review on a bounded queue and answers right away, one
+ * writer thread takes the reviews off the queue and commits them with ReviewDao.addAll.
+ *
+ * Group commit: while the writer commits one batch the next reviews pile up in the queue, and the next time round it
+ * takes all of them (up to maxBatchSize) for a single transaction. Under a burst every commit carries many reviews,
+ * when it is quiet a review is committed on its own as soon as it arrives, so nothing waits for a batch to fill up.
+ *
+ * There is one writer and the queue is FIFO, thus the reviews are committed in the order they were accepted.
+ *
+ * Backpressure: when the queue is full submit() gives back null instead of waiting, the Api turns that into a 503 so
+ * the client backs off instead of piling up blocked request threads.
+ *
+ * close() stops taking new reviews and waits for the writer to commit everything that is already queued.
+ * */
+public class ReviewWriteQueue {
+    /*
+    * how many finished submissions we remember for the lookups by id, the older ones are forgotten
+    * */
+    private static final int RETAINED_SUBMISSIONS = 10000;
+    private static final long POLL_MILLIS = 100;
+
+    private final ReviewDao reviewDao;
+    private final int maxBatchSize;
+    private final BlockingQueue<Pending> queue;
+    private final ConcurrentMap<Long, ReviewSubmission> submissions = new ConcurrentHashMap<>();
+    private final Queue<Long> finished = new ArrayDeque<>(); // only touched by the writer
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram batchSizes;
+    private final LatencyHistogram commitLatency;
+    private final Thread writer;
+    private final Object submitLock = new Object();
+    private volatile boolean closed;
+
+    public ReviewWriteQueue(ReviewDao reviewDao, int capacity, int maxBatchSize, Metrics metrics) {
+        if (capacity < 1){
+            throw new IllegalArgumentException("Capacity must be at least 1 but was " + capacity);
+        }
+        if (maxBatchSize < 1){
+            throw new IllegalArgumentException("Batch size must be at least 1 but was " + maxBatchSize);
+        }
+        this.reviewDao = reviewDao;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        metrics.gauge("courses_review_queue_depth", "Reviews waiting to be committed.", queue::size);
+        metrics.gauge("courses_review_queue_capacity", "Reviews the queue can hold.", () -> capacity);
+        metrics.counter("courses_review_queue_rejected_total", "Reviews turned away because the queue was full.",
+                rejected::get);
+        metrics.counter("courses_review_queue_committed_total", "Queued reviews committed.", committed::get);
+        metrics.counter("courses_review_queue_failed_total", "Queued reviews that could not be committed.",
+                failed::get);
+        this.batchSizes = metrics.sizes("courses_review_queue_commit_batch_size", "Reviews per group commit.");
+        this.commitLatency = metrics.query("ReviewWriteQueue", "commit");
+
+        this.writer = new Thread(this::drain, "review-writer");
+        writer.start();
+    }
+
+    /*
+    * Queues the review (its course must already be checked), gives back its submission or null when the queue is full
+    * or closed
+    * */
+    public ReviewSubmission submit(Review review) {
+        /*
+        * the lock makes sure no review slips into the queue after close() has set closed, the writer might already
+        * have finished and it would never be committed
+        * */
+        synchronized (submitLock){
+            if (closed){
+                return null;
+            }
+            ReviewSubmission submission = new ReviewSubmission(nextId.getAndIncrement(), review.getCourseId());
+            submissions.put(submission.getId(), submission);
+            if (!queue.offer(new Pending(review, submission))){
+                submissions.remove(submission.getId());
+                rejected.incrementAndGet();
+                return null;
+            }
+            return submission;
+        }
+    }
+
+    /*
+    * the submission with the given id, null when there never was one or it finished long enough ago to be forgotten
+    * */
+    public ReviewSubmission find(long id) {
+        return submissions.get(id);
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    /*
+    * Stops taking reviews and waits up to the timeout for the writer to commit the ones still queued. Gives back true
+    * when all of them were committed in time.
+    * */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (submitLock){
+            closed = true;
+        }
+        writer.join(unit.toMillis(timeout));
+        return !writer.isAlive();
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (true){
+            Pending first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex){
+                /*
+                * we only stop when we are closed and the queue is empty, the reviews in it were already accepted
+                * */
+                continue;
+            }
+            if (first == null){
+                if (closed && queue.isEmpty()){
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatchSize - 1);
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    /*
+    * One transaction for the whole batch. If it fails we do not know which review was the bad one (a course that was
+    * removed meanwhile for example), thus like the NdjsonImporter we add them one at a time and only the bad ones fail.
+    * */
+    private void commit(List<Pending> batch) {
+        long start = System.nanoTime();
+        List<Review> reviews = new ArrayList<>(batch.size());
+        for (Pending pending : batch){
+            reviews.add(pending.review);
+        }
+        try {
+            reviewDao.addAll(reviews);
+            for (Pending pending : batch){
+                committed(pending);
+            }
+        } catch (DaoException | RuntimeException batchFailed){
+            for (Pending pending : batch){
+                try {
+                    reviewDao.add(pending.review);
+                    committed(pending);
+                } catch (DaoException | RuntimeException ex){
+                    pending.submission.failed(ex.getMessage());
+                    failed.incrementAndGet();
+                    forgetOld(pending.submission);
+                }
+            }
+        }
+        batchSizes.record(batch.size());
+        commitLatency.recordNanos(System.nanoTime() - start);
+    }
+
+    private void committed(Pending pending) {
+        pending.submission.committed(pending.review.getId());
+        committed.incrementAndGet();
+        forgetOld(pending.submission);
+    }
+
+    private void forgetOld(ReviewSubmission submission) {
+        finished.add(submission.getId());
+        while (finished.size() > RETAINED_SUBMISSIONS){
+            submissions.remove(finished.remove());
+        }
+    }
+
+    private static class Pending {
+        private final Review review;
+        private final ReviewSubmission submission;
+
+        Pending(Review review, ReviewSubmission submission) {
+            this.review = review;
+            this.submission = submission;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.teamtreehouse.courses.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.teamtreehouse.courses.exc.ApiError;
+
+import java.io.IOException;
+
+/**
+ * The body of an error response: {"status": 404, "errorMsg": "..."}
+ *
+ * ApiError is an exception, so by reflection gson would try to write its stack trace and cause as well. Before this
+ * adapter the exception handler in Api copied the two fields into a HashMap for every error.
+ * */
+public class ApiErrorTypeAdapter extends TypeAdapter<ApiError> {
+
+    @Override
+    public void write(JsonWriter out, ApiError error) throws IOException {
+        if (error == null){
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("status").value(error.getStatus());
+        if (error.getMessage() != null){
+            out.name("errorMsg").value(error.getMessage());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ApiError read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL){
+            in.nextNull();
+            return null;
+        }
+        int status = 0;
+        String errorMsg = null;
+        in.beginObject();
+        while (in.hasNext()){
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL){
+                in.nextNull();
+            } else if ("status".equals(name)){
+                status = in.nextInt();
+            } else if ("errorMsg".equals(name)){
+                errorMsg = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new ApiError(status, errorMsg);
+    }
+}
@@ -0,0 +1,81 @@
+package com.teamtreehouse.courses.json;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.teamtreehouse.courses.model.Course;
+
+import java.io.IOException;
+
+/**
+ * Writes and reads a Course field by field, without the reflection gson uses by default.
+ *
+ * The JSON is the same as before: {"id": 1, "name": "...", "url": "..."}, null fields are left out and unknown fields
+ * are skipped when reading (the import records carry a "type" and a "ref" for example).
+ * */
+public class CourseTypeAdapter extends TypeAdapter<Course> {
+
+    @Override
+    public void write(JsonWriter out, Course course) throws IOException {
+        if (course == null){
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(course.getId());
+        if (course.getName() != null){
+            out.name("name").value(course.getName());
+        }
+        if (course.getUrl() != null){
+            out.name("url").value(course.getUrl());
+        }
+        out.endObject();
+    }
+
+    /*
+    * A field of the wrong type ({"rating": "five"}, {"name": [1]}) makes the JsonReader throw a NumberFormatException
+    * or an IllegalStateException. We turn them into the JsonSyntaxException the adapters of gson throw, that is what
+    * the callers catch (as a JsonParseException) to reject just this one course.
+    * */
+    @Override
+    public Course read(JsonReader in) throws IOException {
+        try {
+            return readCourse(in);
+        } catch (NumberFormatException | IllegalStateException ex){
+            throw new JsonSyntaxException(ex);
+        }
+    }
+
+    private Course readCourse(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL){
+            in.nextNull();
+            return null;
+        }
+        Course course = new Course(null, null);
+        in.beginObject();
+        while (in.hasNext()){
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL){
+                in.nextNull(); // <- like gson does, a null keeps the default value
+                continue;
+            }
+            switch (name){
+                case "id":
+                    course.setId(in.nextInt());
+                    break;
+                case "name":
+                    course.setName(in.nextString());
+                    break;
+                case "url":
+                    course.setUrl(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return course;
+    }
+}
@@ -0,0 +1,27 @@
+package com.teamtreehouse.courses.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.teamtreehouse.courses.exc.ApiError;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+
+/**
+ * The one Gson the Api shares between all of its routes, with our own TypeAdapters for the models and the error body.
+ *
+ * A Gson is thread safe and caches the adapter of every type, so building it once (rather than per request) also
+ * means every type is only looked up once.
+ * */
+public class GsonFactory {
+
+    private GsonFactory() {
+    }
+
+    public static Gson create() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Course.class, new CourseTypeAdapter())
+                .registerTypeAdapter(Review.class, new ReviewTypeAdapter())
+                .registerTypeHierarchyAdapter(ApiError.class, new ApiErrorTypeAdapter())
+                .create();
+    }
+}
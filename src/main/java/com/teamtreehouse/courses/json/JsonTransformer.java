@@ -0,0 +1,61 @@
+package com.teamtreehouse.courses.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import spark.ResponseTransformer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+/**
+ * The response transformer of the Api routes (it replaces gson::toJson).
+ *
+ * For a List gson only knows the element type at run time, so it looks up the adapter of every element again. Our list
+ * responses always hold one kind of model, thus here we write the array ourselves and look the adapter up once, when
+ * the element class changes. Anything else goes to gson as before.
+ * */
+public class JsonTransformer implements ResponseTransformer {
+    private final Gson gson;
+
+    public JsonTransformer(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public String render(Object model) throws IOException {
+        if (!(model instanceof List)){
+            return gson.toJson(model);
+        }
+        StringWriter body = new StringWriter();
+        JsonWriter writer = new JsonWriter(body);
+        /*
+        * the same settings gson.toJson uses for its own writer
+        * */
+        writer.setHtmlSafe(true);
+        writer.setSerializeNulls(false);
+        writeArray(writer, (List<?>) model);
+        writer.flush();
+        return body.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeArray(JsonWriter writer, List<?> items) throws IOException {
+        Class<?> type = null;
+        TypeAdapter<Object> adapter = null;
+        writer.beginArray();
+        for (Object item : items){
+            if (item == null){
+                writer.nullValue();
+                continue;
+            }
+            if (item.getClass() != type){
+                type = item.getClass();
+                adapter = (TypeAdapter<Object>) gson.getAdapter(type);
+            }
+            adapter.write(writer, item);
+        }
+        writer.endArray();
+    }
+}
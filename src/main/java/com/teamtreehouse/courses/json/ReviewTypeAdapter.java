@@ -0,0 +1,82 @@
+package com.teamtreehouse.courses.json;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.teamtreehouse.courses.model.Review;
+
+import java.io.IOException;
+
+/**
+ * Writes and reads a Review field by field: {"id": 1, "courseId": 2, "rating": 5, "comment": "..."}
+ *
+ * Same rules as the CourseTypeAdapter: null fields are left out, unknown fields are skipped.
+ * */
+public class ReviewTypeAdapter extends TypeAdapter<Review> {
+
+    @Override
+    public void write(JsonWriter out, Review review) throws IOException {
+        if (review == null){
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(review.getId());
+        out.name("courseId").value(review.getCourseId());
+        out.name("rating").value(review.getRating());
+        if (review.getComment() != null){
+            out.name("comment").value(review.getComment());
+        }
+        out.endObject();
+    }
+
+    /*
+    * A field of the wrong type ({"rating": "five"}, {"name": [1]}) makes the JsonReader throw a NumberFormatException
+    * or an IllegalStateException. We turn them into the JsonSyntaxException the adapters of gson throw, that is what
+    * the callers catch (as a JsonParseException) to reject just this one review.
+    * */
+    @Override
+    public Review read(JsonReader in) throws IOException {
+        try {
+            return readReview(in);
+        } catch (NumberFormatException | IllegalStateException ex){
+            throw new JsonSyntaxException(ex);
+        }
+    }
+
+    private Review readReview(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL){
+            in.nextNull();
+            return null;
+        }
+        Review review = new Review(0, 0, null);
+        in.beginObject();
+        while (in.hasNext()){
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL){
+                in.nextNull();
+                continue;
+            }
+            switch (name){
+                case "id":
+                    review.setId(in.nextInt());
+                    break;
+                case "courseId":
+                    review.setCourseId(in.nextInt());
+                    break;
+                case "rating":
+                    review.setRating(in.nextInt());
+                    break;
+                case "comment":
+                    review.setComment(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return review;
+    }
+}
@@ -0,0 +1,96 @@
+package com.teamtreehouse.courses.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram in microseconds, laid out like HdrHistogram: every power of two is split into 64 equal
+ * sub-buckets, thus a recorded value is off by at most 1/64 (about 1.6%) from the real one, from 1 microsecond up to an
+ * hour, in about 1700 counters.
+ *
+ * Recording is one array increment plus two adders, no locks and no allocation, so it can sit on the path of every
+ * request. Reading the percentiles walks the counters while others may still record, which makes them approximate by
+ * the few values recorded meanwhile (fine for monitoring).
+ *
+ * Nothing in here is specific to time, record() takes any value from 0 to MAX_VALUE as it is, e.g. the size of a batch.
+ * */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = TimeUnit.HOURS.toMicros(1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void recordNanos(long nanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void record(long value) {
+        long bounded = Math.min(Math.max(value, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(bounded));
+        count.increment();
+        sum.add(bounded);
+        max.accumulate(bounded);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumMicros() {
+        return sum.sum();
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    /*
+    * The value (in microseconds) that the given fraction of the recorded values is at or below, e.g. 0.99 for p99.
+    * Like HdrHistogram we answer with the highest value of the bucket we end up in, but never more than the maximum.
+    * */
+    public long percentileMicros(double quantile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++){
+            total += counts.get(i);
+        }
+        if (total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++){
+            seen += counts.get(i);
+            if (seen >= rank){
+                return Math.min(highestValueOf(i), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /*
+    * Values below 128 get a bucket each. Above that a value with its highest bit at position msb falls in the
+    * power of two block msb - 6 and within it in sub-bucket (value >> (msb - 6)) - 64.
+    * */
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS){
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS){
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,173 @@
+package com.teamtreehouse.courses.metrics;
+
+import com.teamtreehouse.courses.exc.ApiError;
+import spark.HaltException;
+import spark.Route;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The metrics of the Api: the latency and the errors of every route (by its method and path template, like
+ * GET /courses/:id) and the latency of every dao method, all written out in the Prometheus text format by scrape().
+ * Other parts of the Api add their own numbers as gauges, counters and size summaries (see ReviewWriteQueue).
+ *
+ * Everything a request touches is looked up once when the route is registered or the dao is built, the hot path only
+ * records into a LatencyHistogram.
+ * */
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99, 0.999};
+
+    private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> queries = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Value> values = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Value> sizes = new ConcurrentSkipListMap<>();
+
+    /*
+    * Wraps a route so every request to it is timed and its failures counted.
+    *
+    * An ApiError counts with its status, a halt (like our 304 Not Modified) with the status it halts with and any
+    * other exception as a 500. NOTE: the time of a route that leaves the rendering of its result to a transformer
+    * does not include that rendering, wrap the compression.json() route instead of the bare one to include it.
+    * */
+    public Route timed(String method, String path, Route route) {
+        RouteMetrics metrics = routes.computeIfAbsent(method + " " + path, key -> new RouteMetrics(method, path));
+        return (req, res) -> {
+            long start = System.nanoTime();
+            int status = 500;
+            try {
+                Object result = route.handle(req, res);
+                status = res.raw().getStatus();
+                return result;
+            } catch (ApiError ex){
+                status = ex.getStatus();
+                throw ex;
+            } catch (HaltException ex){
+                status = ex.getStatusCode();
+                throw ex;
+            } finally {
+                metrics.record(System.nanoTime() - start, status);
+            }
+        };
+    }
+
+    /*
+    * the histogram of one dao method, like "CourseDao.findAll"
+    * */
+    public LatencyHistogram query(String dao, String method) {
+        return queries.computeIfAbsent(dao + "." + method, key -> new LatencyHistogram());
+    }
+
+    /*
+    * A number that goes up and down (like the depth of a queue), read from the supplier on every scrape
+    * */
+    public void gauge(String name, String help, LongSupplier value) {
+        values.put(name, new Value("gauge", help, value, null));
+    }
+
+    /*
+    * A number that only goes up (like the requests rejected so far), read from the supplier on every scrape
+    * */
+    public void counter(String name, String help, LongSupplier value) {
+        values.put(name, new Value("counter", help, value, null));
+    }
+
+    /*
+    * A summary of plain values, not of times (like the number of rows per commit), record() them into the histogram
+    * */
+    public LatencyHistogram sizes(String name, String help) {
+        return sizes.computeIfAbsent(name, key -> new Value("summary", help, null, new LatencyHistogram())).histogram;
+    }
+
+    public Map<String, RouteMetrics> getRoutes() {
+        return routes;
+    }
+
+    /*
+    * All of it in the Prometheus text exposition format (version 0.0.4). The latencies are summaries with the
+    * p50, p95, p99 and p999 as quantiles, in seconds as Prometheus wants it.
+    * */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP courses_http_request_duration_seconds Latency of the requests per route.\n");
+        out.append("# TYPE courses_http_request_duration_seconds summary\n");
+        for (RouteMetrics route : routes.values()){
+            summary(out, "courses_http_request_duration_seconds",
+                    "method=\"" + route.getMethod() + "\",route=\"" + route.getPath() + "\"", route.getLatency());
+        }
+        out.append("# HELP courses_http_errors_total Failed requests per route and status.\n");
+        out.append("# TYPE courses_http_errors_total counter\n");
+        for (RouteMetrics route : routes.values()){
+            for (Map.Entry<Integer, Long> error : route.getErrors().entrySet()){
+                out.append("courses_http_errors_total{method=\"").append(route.getMethod())
+                        .append("\",route=\"").append(route.getPath())
+                        .append("\",status=\"").append(error.getKey()).append("\"} ")
+                        .append(error.getValue()).append('\n');
+            }
+        }
+        out.append("# HELP courses_dao_query_duration_seconds Latency of the dao methods.\n");
+        out.append("# TYPE courses_dao_query_duration_seconds summary\n");
+        for (Map.Entry<String, LatencyHistogram> query : queries.entrySet()){
+            String[] name = query.getKey().split("\\.", 2);
+            summary(out, "courses_dao_query_duration_seconds",
+                    "dao=\"" + name[0] + "\",method=\"" + name[1] + "\"", query.getValue());
+        }
+        for (Map.Entry<String, Value> value : values.entrySet()){
+            header(out, value.getKey(), value.getValue());
+            out.append(value.getKey()).append(' ').append(value.getValue().supplier.getAsLong()).append('\n');
+        }
+        for (Map.Entry<String, Value> size : sizes.entrySet()){
+            String name = size.getKey();
+            LatencyHistogram histogram = size.getValue().histogram;
+            header(out, name, size.getValue());
+            for (double quantile : QUANTILES){
+                out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(histogram.percentileMicros(quantile)).append('\n');
+            }
+            out.append(name).append("_sum ").append(histogram.getSumMicros()).append('\n');
+            out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, Value value) {
+        out.append("# HELP ").append(name).append(' ').append(value.help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(value.type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES){
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.percentileMicros(quantile))).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ")
+                .append(seconds(histogram.getSumMicros())).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ")
+                .append(histogram.getCount()).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / (double) TimeUnit.SECONDS.toMicros(1));
+    }
+
+    /*
+    * a registered gauge, counter or size summary with what we need to write it out
+    * */
+    private static class Value {
+        private final String type;
+        private final String help;
+        private final LongSupplier supplier;
+        private final LatencyHistogram histogram;
+
+        Value(String type, String help, LongSupplier supplier, LatencyHistogram histogram) {
+            this.type = type;
+            this.help = help;
+            this.supplier = supplier;
+            this.histogram = histogram;
+        }
+    }
+}
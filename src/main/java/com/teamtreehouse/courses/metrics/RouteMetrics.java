@@ -0,0 +1,52 @@
+package com.teamtreehouse.courses.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What we measure for one route: the latency of all of its requests and how many of them failed, by status.
+ * */
+public class RouteMetrics {
+    private final String method;
+    private final String path;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ConcurrentMap<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+
+    RouteMetrics(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    void record(long nanos, int status) {
+        latency.recordNanos(nanos);
+        if (status >= 400){
+            errors.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /*
+    * the error counts by status, sorted by status
+    * */
+    public Map<Integer, Long> getErrors() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> error : errors.entrySet()){
+            counts.put(error.getKey(), error.getValue().sum());
+        }
+        return counts;
+    }
+}
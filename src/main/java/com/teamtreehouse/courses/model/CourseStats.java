@@ -0,0 +1,89 @@
+package com.teamtreehouse.courses.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The rating aggregates of one course: how many reviews it has, the sum, lowest and highest rating and how many
+ * reviews gave each rating from 1 to 5 (the histogram).
+ *
+ * These are kept up to date in the course_stats table every time a review is added, so a client that wants the
+ * average rating of a course no longer needs to fetch all of its reviews.
+ * */
+public class CourseStats {
+    private int courseId;
+    private int reviewCount;
+    private long ratingSum;
+    private Integer minRating;
+    private Integer maxRating;
+    private double averageRating;
+    private Map<Integer, Integer> histogram;
+
+    public CourseStats(int courseId, int reviewCount, long ratingSum, Integer minRating, Integer maxRating,
+                       int[] ratingCounts) {
+        this.courseId = courseId;
+        this.reviewCount = reviewCount;
+        this.ratingSum = ratingSum;
+        this.minRating = minRating;
+        this.maxRating = maxRating;
+        this.averageRating = reviewCount == 0 ? 0 : (double) ratingSum / reviewCount;
+        this.histogram = new LinkedHashMap<>();
+        for (int rating = Review.MIN_RATING; rating <= Review.MAX_RATING; rating++){
+            histogram.put(rating, ratingCounts[rating - Review.MIN_RATING]);
+        }
+    }
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
+    public Integer getMinRating() {
+        return minRating;
+    }
+
+    public Integer getMaxRating() {
+        return maxRating;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public Map<Integer, Integer> getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CourseStats that = (CourseStats) o;
+
+        if (courseId != that.courseId) return false;
+        if (reviewCount != that.reviewCount) return false;
+        if (ratingSum != that.ratingSum) return false;
+        if (minRating != null ? !minRating.equals(that.minRating) : that.minRating != null) return false;
+        if (maxRating != null ? !maxRating.equals(that.maxRating) : that.maxRating != null) return false;
+        return histogram.equals(that.histogram);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = courseId;
+        result = 31 * result + reviewCount;
+        result = 31 * result + (int) (ratingSum ^ (ratingSum >>> 32));
+        result = 31 * result + (minRating != null ? minRating.hashCode() : 0);
+        result = 31 * result + (maxRating != null ? maxRating.hashCode() : 0);
+        result = 31 * result + histogram.hashCode();
+        return result;
+    }
+}
@@ -15,6 +15,12 @@ import java.util.Objects;
  * we also need constructors, getters and setters, and also equals and hash codes (use the IntelliJ default not Java 7)
  * */
 public class Review {
+    /*
+    * the range of a valid rating, used when we check the reviews that come in
+    * */
+    public static final int MIN_RATING = 1;
+    public static final int MAX_RATING = 5;
+
     private int id;
     private int courseId;
     private int rating;
@@ -0,0 +1,159 @@
+package com.teamtreehouse.courses.ranking;
+
+import com.teamtreehouse.courses.dao.ReviewDao;
+import com.teamtreehouse.courses.model.Review;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The reviewed courses kept in order of their average rating and in order of their number of reviews, for
+ * GET /courses/top.
+ *
+ * Every course has one Score (its review count and rating sum) which sits in two ConcurrentSkipListSets, one for each
+ * order. A new review replaces the Score of its course in both sets, thus the leaderboard is always up to date and
+ * reading the top N is walking the first N entries of a set: no matter how many courses or reviews there are.
+ *
+ * Ties are broken the same way every time: on the same average the course with more reviews comes first, on the same
+ * number of reviews the better average, and when both are the same the older course (the lower id).
+ * */
+public class CourseLeaderboard {
+
+    public enum Order {
+        AVERAGE_RATING, REVIEW_COUNT
+    }
+
+    private static final Comparator<Score> BY_AVERAGE_RATING = (a, b) -> {
+        /*
+        * a.sum / a.count against b.sum / b.count without dividing, so two equal averages are exactly equal
+        * */
+        int byAverage = Long.compare(b.ratingSum * a.reviewCount, a.ratingSum * b.reviewCount);
+        if (byAverage != 0){
+            return byAverage;
+        }
+        int byCount = Integer.compare(b.reviewCount, a.reviewCount);
+        return byCount != 0 ? byCount : Integer.compare(a.courseId, b.courseId);
+    };
+
+    private static final Comparator<Score> BY_REVIEW_COUNT = (a, b) -> {
+        int byCount = Integer.compare(b.reviewCount, a.reviewCount);
+        if (byCount != 0){
+            return byCount;
+        }
+        int byAverage = Long.compare(b.ratingSum * a.reviewCount, a.ratingSum * b.reviewCount);
+        return byAverage != 0 ? byAverage : Integer.compare(a.courseId, b.courseId);
+    };
+
+    private final ConcurrentHashMap<Integer, Score> scores = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Score> byAverageRating = new ConcurrentSkipListSet<>(BY_AVERAGE_RATING);
+    private final ConcurrentSkipListSet<Score> byReviewCount = new ConcurrentSkipListSet<>(BY_REVIEW_COUNT);
+
+    public void add(Review review) {
+        addAll(Collections.singletonList(review));
+    }
+
+    /*
+    * the reviews are summed up per course first, so a batch moves every course only once
+    * */
+    public void addAll(List<Review> reviews) {
+        Map<Integer, long[]> deltas = new LinkedHashMap<>();
+        for (Review review : reviews){
+            long[] delta = deltas.computeIfAbsent(review.getCourseId(), courseId -> new long[2]);
+            delta[0]++;
+            delta[1] += review.getRating();
+        }
+        for (Map.Entry<Integer, long[]> entry : deltas.entrySet()){
+            long[] delta = entry.getValue();
+            move(entry.getKey(), (int) delta[0], delta[1]);
+        }
+    }
+
+    /*
+    * Forgets every course and ranks all reviews of the dao again, gives back how many courses are ranked. Meant for
+    * startup, before any review is added.
+    * */
+    public int rebuild(ReviewDao reviewDao) {
+        scores.clear();
+        byAverageRating.clear();
+        byReviewCount.clear();
+        List<Review> batch = new ArrayList<>();
+        reviewDao.streamAll(review -> {
+            batch.add(review);
+            if (batch.size() == 1000){
+                addAll(batch);
+                batch.clear();
+            }
+        });
+        addAll(batch);
+        return scores.size();
+    }
+
+    /*
+    * The first `limit` courses with at least minReviews reviews. With a high minReviews we walk past the courses with
+    * too few reviews, for the average rating those are usually the ones at the very top (a single 5 star review).
+    * */
+    public List<RankedCourse> top(Order order, int limit, int minReviews) {
+        ConcurrentSkipListSet<Score> ranking = order == Order.REVIEW_COUNT ? byReviewCount : byAverageRating;
+        List<RankedCourse> top = new ArrayList<>(Math.min(limit, 100));
+        /*
+        * while a course moves it is in the set twice for a moment (see move()), we only count it once
+        * */
+        Set<Integer> seen = new HashSet<>();
+        for (Score score : ranking){
+            if (top.size() == limit){
+                break;
+            }
+            if (score.reviewCount < minReviews || !seen.add(score.courseId)){
+                continue;
+            }
+            top.add(new RankedCourse(top.size() + 1, score.courseId, score.reviewCount,
+                    (double) score.ratingSum / score.reviewCount));
+        }
+        return top;
+    }
+
+    public int getCourses() {
+        return scores.size();
+    }
+
+    /*
+    * compute() runs one course at a time, so the reviews of the same course never overwrite each other's Score. The new
+    * Score goes into the sets before the old one leaves, so a reader never misses the course.
+    * */
+    private void move(int courseId, int reviewCount, long ratingSum) {
+        scores.compute(courseId, (id, old) -> {
+            Score moved = old == null ? new Score(courseId, reviewCount, ratingSum) :
+                    new Score(courseId, old.reviewCount + reviewCount, old.ratingSum + ratingSum);
+            byAverageRating.add(moved);
+            byReviewCount.add(moved);
+            if (old != null){
+                byAverageRating.remove(old);
+                byReviewCount.remove(old);
+            }
+            return moved;
+        });
+    }
+
+    /*
+    * what a course is ranked by, never changed once it is in the sets
+    * */
+    private static class Score {
+        private final int courseId;
+        private final int reviewCount;
+        private final long ratingSum;
+
+        Score(int courseId, int reviewCount, long ratingSum) {
+            this.courseId = courseId;
+            this.reviewCount = reviewCount;
+            this.ratingSum = ratingSum;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.teamtreehouse.courses.ranking;
+
+/**
+ * One place of the course leaderboard: the rank (1 is the best), the course and the numbers it was ranked by.
+ * */
+public class RankedCourse {
+    private final int rank;
+    private final int courseId;
+    private final int reviewCount;
+    private final double averageRating;
+
+    public RankedCourse(int rank, int courseId, int reviewCount, double averageRating) {
+        this.rank = rank;
+        this.courseId = courseId;
+        this.reviewCount = reviewCount;
+        this.averageRating = averageRating;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+}
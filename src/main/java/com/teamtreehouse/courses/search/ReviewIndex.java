@@ -0,0 +1,453 @@
+package com.teamtreehouse.courses.search;
+
+import com.teamtreehouse.courses.dao.ReviewDao;
+import com.teamtreehouse.courses.model.Review;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index over the comments of the reviews, for GET /reviews/search.
+ *
+ * A comment is split into lower case words (runs of letters and digits, see tokenize()). Every indexed review gets the
+ * next document number of the index and every word keeps the list of documents it appears in (its postings) together
+ * with how often it appears there. The postings are only ever appended to, so they are sorted by document number and
+ * we store them compressed: the gap to the previous document and the frequency, both as variable length ints. Most
+ * postings take 2 bytes that way.
+ *
+ * Searching walks the postings of the query words side by side (document at a time), scores every document that has
+ * at least one of them with BM25 and keeps the best `limit` ones in a heap, thus a search needs no memory per matching
+ * document. Words are not stemmed and there are no stop words: BM25 already gives very common words almost no weight.
+ *
+ * Every SKIP_INTERVAL postings we also note where the next one starts. A search within one course walks the documents
+ * of that course instead (when they are fewer than the postings) and uses these to jump over the postings of the other
+ * courses.
+ *
+ * Many searches run at once under the read lock, adding reviews takes the write lock for as long as it takes to
+ * append their postings.
+ * */
+public class ReviewIndex {
+    /*
+    * the usual BM25 parameters: how fast repeating a word stops adding to the score and how much longer comments are
+    * penalized
+    * */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_WORD_LENGTH = 64;
+    private static final int REBUILD_BATCH = 1000;
+    private static final int SKIP_INTERVAL = 64;
+
+    /*
+    * the head of the heap is the hit we drop first: the lowest score and, between equal scores, the newer review
+    * */
+    private static final Comparator<Scored> WORST_FIRST = Comparator.<Scored>comparingDouble(scored -> scored.score)
+            .thenComparing(Comparator.<Scored>comparingInt(scored -> scored.document).reversed());
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, CourseDocuments> courses = new HashMap<>();
+
+    /*
+    * what we know of every document, indexed by document number
+    * */
+    private int[] reviewIds = new int[1024];
+    private int[] courseIds = new int[1024];
+    private int[] ratings = new int[1024];
+    private String[] comments = new String[1024];
+    private int[] lengths = new int[1024];
+
+    private volatile int documents;
+    private volatile long postingBytes;
+    private long totalLength;
+
+    public void add(Review review) {
+        addAll(Collections.singletonList(review));
+    }
+
+    /*
+    * the reviews must already have their ids, i.e. be added to the dao. Reviews without words in their comment can
+    * not be found by any search thus we do not index them.
+    * */
+    public void addAll(List<Review> reviews) {
+        List<Review> indexed = new ArrayList<>(reviews.size());
+        List<Map<String, Integer>> frequencies = new ArrayList<>(reviews.size());
+        for (Review review : reviews){
+            Map<String, Integer> words = count(tokenize(review.getComment()));
+            if (!words.isEmpty()){
+                indexed.add(review);
+                frequencies.add(words);
+            }
+        }
+        if (indexed.isEmpty()){
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < indexed.size(); i++){
+                append(indexed.get(i), frequencies.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+    * Throws away what the index holds and indexes every review of the dao again, gives back how many reviews are
+    * indexed. Searches that run in the meantime see the index half built, we do this on startup before the routes are
+    * up.
+    * */
+    public int rebuild(ReviewDao reviewDao) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            courses.clear();
+            Arrays.fill(comments, null);
+            documents = 0;
+            postingBytes = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<Review> batch = new ArrayList<>(REBUILD_BATCH);
+        reviewDao.streamAll(review -> {
+            batch.add(review);
+            if (batch.size() == REBUILD_BATCH){
+                addAll(batch);
+                batch.clear();
+            }
+        });
+        addAll(batch);
+        return documents;
+    }
+
+    /*
+    * The best `limit` reviews for the words of the query, best first. With a courseId above 0 only the reviews of that
+    * course count.
+    * */
+    public List<SearchHit> search(String query, int courseId, int limit) {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (words.isEmpty() || limit < 1){
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            List<Cursor> cursors = new ArrayList<>(words.size());
+            long wordPostings = 0;
+            for (String word : words){
+                Postings postingsOfWord = postings.get(word);
+                if (postingsOfWord != null){
+                    cursors.add(new Cursor(postingsOfWord, idf(postingsOfWord.documents)));
+                    wordPostings += postingsOfWord.documents;
+                }
+            }
+            CourseDocuments course = courseId > 0 ? courses.get(courseId) : null;
+            if (cursors.isEmpty() || (courseId > 0 && course == null)){
+                return Collections.emptyList();
+            }
+            double averageLength = (double) totalLength / documents;
+            PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+            if (course != null && course.count < wordPostings){
+                for (int i = 0; i < course.count; i++){
+                    int document = course.documents[i];
+                    boolean found = false;
+                    for (Cursor cursor : cursors){
+                        cursor.advance(document);
+                        found |= cursor.document == document;
+                    }
+                    if (found){
+                        offer(best, limit, document, score(document, cursors, averageLength));
+                    }
+                }
+            } else {
+                for (Cursor cursor : cursors){
+                    cursor.next();
+                }
+                while (true){
+                    int document = Integer.MAX_VALUE;
+                    for (Cursor cursor : cursors){
+                        document = Math.min(document, cursor.document);
+                    }
+                    if (document == Integer.MAX_VALUE){
+                        break;
+                    }
+                    double score = score(document, cursors, averageLength);
+                    if (courseId <= 0 || courseIds[document] == courseId){
+                        offer(best, limit, document, score);
+                    }
+                }
+            }
+            SearchHit[] hits = new SearchHit[best.size()];
+            for (int i = hits.length - 1; i >= 0; i--){
+                Scored scored = best.poll();
+                hits[i] = new SearchHit(reviewOf(scored.document), scored.score);
+            }
+            return Arrays.asList(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getDocuments() {
+        return documents;
+    }
+
+    public int getWords() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getPostingBytes() {
+        return postingBytes;
+    }
+
+    /*
+    * lower case runs of letters and digits, "Great course! 10/10" is great, course, 10 and 10. Words longer than
+    * MAX_WORD_LENGTH are no words people search for, we skip them.
+    * */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null){
+            return words;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++){
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)){
+                word.append(Character.toLowerCase(c));
+                continue;
+            }
+            if (word.length() > 0 && word.length() <= MAX_WORD_LENGTH){
+                words.add(word.toString());
+            }
+            word.setLength(0);
+        }
+        return words;
+    }
+
+    private static Map<String, Integer> count(List<String> words) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String word : words){
+            frequencies.merge(word, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    /*
+    * the BM25 score of the document for the words whose cursors are on it, those cursors move on to their next
+    * document
+    * */
+    private double score(int document, List<Cursor> cursors, double averageLength) {
+        double lengthNorm = K1 * (1 - B + B * lengths[document] / averageLength);
+        double score = 0;
+        for (Cursor cursor : cursors){
+            if (cursor.document == document){
+                score += cursor.idf * cursor.frequency * (K1 + 1) / (cursor.frequency + lengthNorm);
+                cursor.next();
+            }
+        }
+        return score;
+    }
+
+    private static void offer(PriorityQueue<Scored> best, int limit, int document, double score) {
+        if (best.size() < limit || score > best.peek().score){
+            best.add(new Scored(document, score));
+            if (best.size() > limit){
+                best.poll();
+            }
+        }
+    }
+
+    private double idf(int documentsWithWord) {
+        return Math.log(1 + (documents - documentsWithWord + 0.5) / (documentsWithWord + 0.5));
+    }
+
+    /*
+    * under the write lock
+    * */
+    private void append(Review review, Map<String, Integer> frequencies) {
+        int document = documents;
+        if (document == reviewIds.length){
+            int capacity = document * 2;
+            reviewIds = Arrays.copyOf(reviewIds, capacity);
+            courseIds = Arrays.copyOf(courseIds, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+            comments = Arrays.copyOf(comments, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        int length = 0;
+        long bytes = postingBytes;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()){
+            Postings wordPostings = postings.computeIfAbsent(entry.getKey(), word -> new Postings());
+            bytes -= wordPostings.size;
+            wordPostings.add(document, entry.getValue());
+            bytes += wordPostings.size;
+            length += entry.getValue();
+        }
+        courses.computeIfAbsent(review.getCourseId(), courseId -> new CourseDocuments()).add(document);
+        reviewIds[document] = review.getId();
+        courseIds[document] = review.getCourseId();
+        ratings[document] = review.getRating();
+        comments[document] = review.getComment();
+        lengths[document] = length;
+        totalLength += length;
+        postingBytes = bytes;
+        documents = document + 1;
+    }
+
+    /*
+    * a new Review for every hit, the caller may change it
+    * */
+    private Review reviewOf(int document) {
+        Review review = new Review(courseIds[document], ratings[document], comments[document]);
+        review.setId(reviewIds[document]);
+        return review;
+    }
+
+    /*
+    * The postings of one word: (gap to the previous document, frequency) pairs as variable length ints, 7 bits a byte
+    * with the high bit set on all but the last byte.
+    *
+    * Skip i is for posting (i + 1) * SKIP_INTERVAL: skipOffsets[i] is where it starts and skipDocuments[i] the document
+    * of the posting before it, which is what its gap counts from.
+    * */
+    private static class Postings {
+        private byte[] bytes = new byte[8];
+        private int size;
+        private int documents;
+        private int lastDocument = -1;
+        private int[] skipDocuments = new int[0];
+        private int[] skipOffsets = new int[0];
+        private int skips;
+
+        void add(int document, int frequency) {
+            if (bytes.length - size < 10){
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            if (documents > 0 && documents % SKIP_INTERVAL == 0){
+                if (skips == skipOffsets.length){
+                    skipDocuments = Arrays.copyOf(skipDocuments, Math.max(4, skips * 2));
+                    skipOffsets = Arrays.copyOf(skipOffsets, Math.max(4, skips * 2));
+                }
+                skipDocuments[skips] = lastDocument;
+                skipOffsets[skips] = size;
+                skips++;
+            }
+            write(document - lastDocument);
+            write(frequency);
+            lastDocument = document;
+            documents++;
+        }
+
+        private void write(int value) {
+            while ((value & ~0x7F) != 0){
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+
+    /*
+    * the documents of one course, in the order they were indexed
+    * */
+    private static class CourseDocuments {
+        private int[] documents = new int[4];
+        private int count;
+
+        void add(int document) {
+            if (count == documents.length){
+                documents = Arrays.copyOf(documents, count * 2);
+            }
+            documents[count++] = document;
+        }
+    }
+
+    /*
+    * where a search is in the postings of one of its words
+    * */
+    private static class Cursor {
+        private final byte[] bytes;
+        private final int size;
+        private final int[] skipDocuments;
+        private final int[] skipOffsets;
+        private final int skips;
+        private final double idf;
+        private int position;
+        private int skip;
+        private int document = -1;
+        private int frequency;
+
+        Cursor(Postings postings, double idf) {
+            this.bytes = postings.bytes;
+            this.size = postings.size;
+            this.skipDocuments = postings.skipDocuments;
+            this.skipOffsets = postings.skipOffsets;
+            this.skips = postings.skips;
+            this.idf = idf;
+        }
+
+        /*
+        * moves on to the first posting of the target document or a later one, over the skips that still come before
+        * the target
+        * */
+        void advance(int target) {
+            if (document >= target){
+                return;
+            }
+            int jump = -1;
+            while (skip < skips && skipDocuments[skip] < target){
+                jump = skip++;
+            }
+            if (jump >= 0 && skipOffsets[jump] > position){
+                position = skipOffsets[jump];
+                document = skipDocuments[jump];
+            }
+            while (document < target){
+                next();
+            }
+        }
+
+        void next() {
+            if (position >= size){
+                document = Integer.MAX_VALUE;
+                return;
+            }
+            document += read();
+            frequency = read();
+        }
+
+        private int read() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7){
+                byte b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0){
+                    return value;
+                }
+            }
+        }
+    }
+
+    private static class Scored {
+        private final int document;
+        private final double score;
+
+        Scored(int document, double score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+}
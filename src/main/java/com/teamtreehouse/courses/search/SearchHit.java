@@ -0,0 +1,24 @@
+package com.teamtreehouse.courses.search;
+
+import com.teamtreehouse.courses.model.Review;
+
+/**
+ * One result of a review search: the review and its BM25 score, a higher score is a better match.
+ * */
+public class SearchHit {
+    private final Review review;
+    private final double score;
+
+    public SearchHit(Review review, double score) {
+        this.review = review;
+        this.score = score;
+    }
+
+    public Review getReview() {
+        return review;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -1,3 +1,4 @@
+-- create the courses and reviews tables
 CREATE TABLE IF NOT EXISTS courses (
    id int PRIMARY KEY auto_increment,
    name VARCHAR,
@@ -0,0 +1,2 @@
+-- index the reviews of a course in id order for keyset pagination
+CREATE INDEX IF NOT EXISTS reviews_course_id_id ON reviews(course_id, id);
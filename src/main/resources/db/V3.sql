@@ -0,0 +1,26 @@
+-- per course rating aggregates kept up to date on every review insert
+CREATE TABLE IF NOT EXISTS course_stats (
+   course_id INTEGER PRIMARY KEY,
+   review_count INTEGER NOT NULL DEFAULT 0,
+   rating_sum BIGINT NOT NULL DEFAULT 0,
+   rating_min INTEGER,
+   rating_max INTEGER,
+   rating_1 INTEGER NOT NULL DEFAULT 0,
+   rating_2 INTEGER NOT NULL DEFAULT 0,
+   rating_3 INTEGER NOT NULL DEFAULT 0,
+   rating_4 INTEGER NOT NULL DEFAULT 0,
+   rating_5 INTEGER NOT NULL DEFAULT 0,
+   FOREIGN KEY(course_id) REFERENCES public.courses(id)
+);
+
+INSERT INTO course_stats(course_id, review_count, rating_sum, rating_min, rating_max,
+      rating_1, rating_2, rating_3, rating_4, rating_5)
+   SELECT course_id, COUNT(*), SUM(rating), MIN(rating), MAX(rating),
+      SUM(CASE WHEN rating = 1 THEN 1 ELSE 0 END),
+      SUM(CASE WHEN rating = 2 THEN 1 ELSE 0 END),
+      SUM(CASE WHEN rating = 3 THEN 1 ELSE 0 END),
+      SUM(CASE WHEN rating = 4 THEN 1 ELSE 0 END),
+      SUM(CASE WHEN rating = 5 THEN 1 ELSE 0 END)
+   FROM reviews
+   WHERE course_id NOT IN (SELECT course_id FROM course_stats)
+   GROUP BY course_id;
@@ -1,8 +1,12 @@
 package com.teamtreehouse.courses;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.teamtreehouse.courses.dao.Sql2oCourseDao;
 import com.teamtreehouse.courses.dao.Sql2oReviewDao;
+import com.teamtreehouse.courses.db.SchemaMigrator;
 import com.teamtreehouse.courses.model.Course;
 import com.teamtreehouse.courses.model.Review;
 import com.teamtreehouse.testing.ApiClient;
@@ -10,10 +14,19 @@ import com.teamtreehouse.testing.ApiResponse;
 import org.junit.*;
 import org.sql2o.Connection;
 import org.sql2o.Sql2o;
-import spark.Spark;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import static org.junit.Assert.*;
 
@@ -59,9 +72,10 @@ public class ApiTest {
     @AfterClass
     public static void stopServer(){
         /*
-        * to stop server Spark has a static method called stop
+        * to stop server Spark has a static method called stop, Api.stop() calls it and also closes the connection pool
+        * of the Api (otherwise the pooled connections would keep our in memory database alive)
         * */
-        Spark.stop();
+        Api.stop();
     }
 
     /*
@@ -81,11 +95,11 @@ public class ApiTest {
     * */
     @Before
     public void setUp() throws Exception {
-        Sql2o sql2o = new Sql2o(TEST_DATA_SOURCE + ";INIT=RUNSCRIPT from 'classpath:db/init.sql'",
-                "", "");
+        Sql2o sql2o = new Sql2o(TEST_DATA_SOURCE, "", "");
         courseDao = new Sql2oCourseDao(sql2o);
         reviewDao = new Sql2oReviewDao(sql2o); //<- adding reviewDao initialization to test review app controller
         conn = sql2o.open();
+        new SchemaMigrator(sql2o).migrate(); // <- the Api already migrated the schema so this should be a no-op
         client = new ApiClient("http://localhost:" + PORT);
         gson = new Gson();
     }
@@ -95,6 +109,13 @@ public class ApiTest {
     * */
     @After
     public void tearDown() throws Exception {
+        /*
+        * The Api keeps its pooled connections open, so the in memory database is not dropped when we close our own
+        * connection. We need to clean up the rows we made so every test starts from empty tables.
+        * */
+        conn.createQuery("DELETE FROM course_stats").executeUpdate();
+        conn.createQuery("DELETE FROM reviews").executeUpdate();
+        conn.createQuery("DELETE FROM courses").executeUpdate();
         conn.close();
     }
 
@@ -352,4 +373,356 @@ public class ApiTest {
         * */
         assertEquals(2, retrieved.length);
     }
-}
\ No newline at end of file
+
+    /*
+    * Testing the keyset pagination of the list endpoints: we walk through 3 reviews 2 at a time following the
+    * X-Next-Cursor header
+    * */
+    @Test
+    public void reviewsCanBePagedWithTheNextCursor() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+        reviewDao.add(newTestReview(course.getId()));
+        reviewDao.add(newTestReview(course.getId()));
+        reviewDao.add(newTestReview(course.getId()));
+
+        ApiResponse first = client.request("GET", "/reviews?limit=2");
+        String cursor = first.getHeader("X-Next-Cursor");
+        ApiResponse second = client.request("GET", "/reviews?limit=2&after=" + cursor);
+
+        assertEquals(2, gson.fromJson(first.getBody(), Review[].class).length);
+        assertEquals(1, gson.fromJson(second.getBody(), Review[].class).length);
+        assertNull("the last page has no next cursor", second.getHeader("X-Next-Cursor"));
+    }
+
+    @Test
+    public void courseReviewsPageOnlyHoldsThatCourse() throws Exception {
+        Course course1 = newTestCourse();
+        courseDao.add(course1);
+        Course course2 = newTestCourse();
+        courseDao.add(course2);
+        reviewDao.add(newTestReview(course1.getId()));
+        reviewDao.add(newTestReview(course2.getId()));
+
+        ApiResponse res = client.request("GET",
+                String.format("/courses/%d/reviews?limit=5", course1.getId()));
+
+        Review[] retrieved = gson.fromJson(res.getBody(), Review[].class);
+        assertEquals(1, retrieved.length);
+        assertEquals(course1.getId(), retrieved[0].getCourseId());
+    }
+
+    @Test
+    public void invalidPageLimitReturnsBadRequestStatus() throws Exception {
+        ApiResponse res = client.request("GET", "/courses?limit=abc");
+
+        assertEquals(400, res.getStatus());
+    }
+
+    /*
+    * GET /reviews without paging is streamed straight from the database, the response has no length upfront thus it
+    * is sent chunked
+    * */
+    @Test
+    public void allReviewsAreStreamedChunked() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+        reviewDao.add(newTestReview(course.getId()));
+
+        ApiResponse res = client.request("GET", "/reviews");
+
+        assertEquals("chunked", res.getHeader("Transfer-Encoding"));
+        assertEquals(1, gson.fromJson(res.getBody(), Review[].class).length);
+    }
+
+    @Test
+    public void streamingWithoutReviewsReturnsEmptyArray() throws Exception {
+        ApiResponse res = client.request("GET", "/reviews");
+
+        assertEquals(0, gson.fromJson(res.getBody(), Review[].class).length);
+    }
+
+    /*
+    * Testing the batch endpoint: the valid reviews are created and the invalid one is reported by its index
+    * */
+    @Test
+    public void batchOfReviewsCreatesTheValidOnesAndReportsTheInvalidOnes() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+        String batch = "[{\"rating\": 5, \"comment\": \"good\"}," +
+                "{\"rating\": 9, \"comment\": \"too good\"}," +
+                "{\"rating\": 3, \"comment\": \"okay\"}]";
+
+        ApiResponse res = client.request("POST", "/courses/" + course.getId() + "/reviews/batch", batch);
+
+        assertEquals(201, res.getStatus());
+        JsonObject result = gson.fromJson(res.getBody(), JsonObject.class);
+        assertEquals(2, result.getAsJsonArray("created").size());
+        assertEquals(1, result.getAsJsonArray("errors").get(0).getAsJsonObject().get("index").getAsInt());
+        assertEquals(2, reviewDao.findByCourseId(course.getId()).size());
+    }
+
+    @Test
+    public void batchReviewWithARatingThatIsNoNumberIsReportedAlone() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+        String batch = "[{\"rating\": \"abc\"}, {\"rating\": 4, \"comment\": \"fine\"}]";
+
+        ApiResponse res = client.request("POST", "/courses/" + course.getId() + "/reviews/batch", batch);
+
+        assertEquals(201, res.getStatus());
+        JsonObject result = gson.fromJson(res.getBody(), JsonObject.class);
+        assertEquals(1, result.getAsJsonArray("created").size());
+        assertEquals(0, result.getAsJsonArray("errors").get(0).getAsJsonObject().get("index").getAsInt());
+    }
+
+    @Test
+    public void reviewWithARatingOutOfRangeIsRejected() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+
+        ApiResponse res = client.request("POST", "/courses/" + course.getId() + "/reviews", "{\"rating\": 9}");
+
+        assertEquals(400, res.getStatus());
+        assertTrue(reviewDao.findByCourseId(course.getId()).isEmpty());
+    }
+
+    @Test
+    public void batchToNonExistingCourseReturnsNotFoundStatus() throws Exception {
+        ApiResponse res = client.request("POST", "/courses/42/reviews/batch", "[{\"rating\": 5}]");
+
+        assertEquals(404, res.getStatus());
+    }
+
+    /*
+    * Testing the NDJSON bulk import: one course and two reviews that point to it by its ref
+    * */
+    @Test
+    public void importAddsCoursesAndReviewsAndReportsTheCounts() throws Exception {
+        String ndjson = "{\"type\": \"course\", \"ref\": \"c1\", \"name\": \"Test\", \"url\": \"http://a.com\"}\n" +
+                "{\"type\": \"review\", \"courseRef\": \"c1\", \"rating\": 5, \"comment\": \"good\"}\n" +
+                "{\"type\": \"review\", \"courseRef\": \"c1\", \"rating\": 4, \"comment\": \"fine\"}\n";
+
+        ApiResponse res = client.request("POST", "/import", ndjson);
+
+        assertEquals(200, res.getStatus());
+        JsonObject report = gson.fromJson(res.getBody(), JsonObject.class);
+        assertEquals(1, report.get("courses").getAsInt());
+        assertEquals(2, report.get("reviews").getAsInt());
+        assertEquals(2, reviewDao.findAll().size());
+    }
+
+    /*
+    * Testing the rating aggregates of a course
+    * */
+    @Test
+    public void statsOfACourseAggregateItsReviews() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+        reviewDao.add(new Review(course.getId(), 5, "great"));
+        reviewDao.add(new Review(course.getId(), 2, "meh"));
+
+        ApiResponse res = client.request("GET", "/courses/" + course.getId() + "/stats");
+
+        JsonObject stats = gson.fromJson(res.getBody(), JsonObject.class);
+        assertEquals(2, stats.get("reviewCount").getAsInt());
+        assertEquals(3.5, stats.get("averageRating").getAsDouble(), 0.001);
+        assertEquals(1, stats.getAsJsonObject("histogram").get("5").getAsInt());
+    }
+
+    @Test
+    public void statsOfNonExistingCourseReturnsNotFoundStatus() throws Exception {
+        ApiResponse res = client.request("GET", "/courses/42/stats");
+
+        assertEquals(404, res.getStatus());
+    }
+
+    /*
+    * Testing the conditional GETs: the ETag of a resource only changes when data is added through the Api
+    * */
+    private ApiResponse requestIfNoneMatch(String uri, String etag) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-None-Match", etag);
+        return client.request("GET", uri, null, headers);
+    }
+
+    @Test
+    public void unchangedCoursesReturnNotModifiedUntilACourseIsAdded() throws Exception {
+        client.request("POST", "/courses", gson.toJson(newTestCourse()));
+        String etag = client.request("GET", "/courses").getHeader("ETag");
+
+        ApiResponse unchanged = requestIfNoneMatch("/courses", etag);
+        client.request("POST", "/courses", gson.toJson(newTestCourse()));
+        ApiResponse changed = requestIfNoneMatch("/courses", etag);
+
+        assertNotNull(etag);
+        assertEquals(304, unchanged.getStatus());
+        assertEquals("", unchanged.getBody());
+        assertEquals(200, changed.getStatus());
+        assertNotEquals(etag, changed.getHeader("ETag"));
+        assertEquals(2, gson.fromJson(changed.getBody(), Course[].class).length);
+    }
+
+    @Test
+    public void reviewsOfOtherCoursesDoNotChangeTheETagOfACourse() throws Exception {
+        Course course = newTestCourse();
+        Course other = newTestCourse();
+        courseDao.add(course);
+        courseDao.add(other);
+        String uri = "/courses/" + course.getId() + "/reviews";
+        String etag = client.request("GET", uri).getHeader("ETag");
+
+        client.request("POST", "/courses/" + other.getId() + "/reviews", gson.toJson(new Review(0, 4, "good")));
+        ApiResponse afterOther = requestIfNoneMatch(uri, etag);
+        client.request("POST", uri, gson.toJson(new Review(0, 5, "great")));
+        ApiResponse afterOwn = requestIfNoneMatch(uri, etag);
+
+        assertEquals(304, afterOther.getStatus());
+        assertEquals(200, afterOwn.getStatus());
+        assertEquals(1, gson.fromJson(afterOwn.getBody(), Review[].class).length);
+    }
+
+    /*
+    * Testing the compression. ApiClient reads the body as text, here we need the raw bytes thus we make the request
+    * ourselves and decompress what we get
+    * */
+    private HttpURLConnection requestEncoded(String uri, String acceptEncoding) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + uri).openConnection();
+        connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+        connection.connect();
+        return connection;
+    }
+
+    private String decode(InputStream in) throws Exception {
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            StringBuilder body = new StringBuilder();
+            char[] buffer = new char[4096];
+            for (int read; (read = reader.read(buffer)) != -1; ) {
+                body.append(buffer, 0, read);
+            }
+            return body.toString();
+        }
+    }
+
+    private void addTestCourses(int count) throws Exception {
+        List<Course> courses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            courses.add(new Course("Test course " + i, "http://what.com/" + i));
+        }
+        courseDao.addAll(courses);
+    }
+
+    @Test
+    public void largeResponsesAreGzippedWhenTheClientAcceptsIt() throws Exception {
+        addTestCourses(50);
+
+        HttpURLConnection res = requestEncoded("/courses", "deflate;q=0.5, gzip");
+
+        assertEquals("gzip", res.getHeaderField("Content-Encoding"));
+        assertEquals("Accept-Encoding", res.getHeaderField("Vary"));
+        assertTrue(res.getHeaderField("ETag").startsWith("W/"));
+        assertEquals(50, gson.fromJson(decode(new GZIPInputStream(res.getInputStream())), Course[].class).length);
+    }
+
+    @Test
+    public void streamedResponsesCanBeDeflated() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+        for (int i = 0; i < 40; i++) {
+            reviewDao.add(newTestReview(course.getId()));
+        }
+
+        HttpURLConnection res = requestEncoded("/reviews", "deflate");
+
+        assertEquals("deflate", res.getHeaderField("Content-Encoding"));
+        assertEquals(40, gson.fromJson(decode(new InflaterInputStream(res.getInputStream())), Review[].class).length);
+    }
+
+    @Test
+    public void smallResponsesAreNotCompressed() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+
+        HttpURLConnection res = requestEncoded("/courses/" + course.getId(), "gzip");
+
+        assertNull(res.getHeaderField("Content-Encoding"));
+        assertEquals(course, gson.fromJson(decode(res.getInputStream()), Course.class));
+    }
+
+    @Test
+    public void postedReviewsCanBeSearchedRightAway() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+        Map<String, Object> values = new HashMap<>();
+        values.put("rating", 4);
+        values.put("comment", "Explains closures really well");
+        client.request("POST", "/courses/" + course.getId() + "/reviews", gson.toJson(values));
+
+        ApiResponse res = client.request("GET", "/reviews/search?q=closures&courseId=" + course.getId());
+
+        assertEquals(200, res.getStatus());
+        JsonArray hits = gson.fromJson(res.getBody(), JsonArray.class);
+        assertEquals(1, hits.size());
+        assertEquals("Explains closures really well",
+                hits.get(0).getAsJsonObject().getAsJsonObject("review").get("comment").getAsString());
+        assertEquals(400, client.request("GET", "/reviews/search").getStatus());
+    }
+
+    @Test
+    public void topCoursesAreRankedByTheirReviews() throws Exception {
+        Course course = newTestCourse();
+        courseDao.add(course);
+        for (int i = 0; i < 3; i++){
+            client.request("POST", "/courses/" + course.getId() + "/reviews", "{\"rating\": 4}");
+        }
+
+        ApiResponse res = client.request("GET", "/courses/top?by=reviewCount&minReviews=3");
+
+        assertEquals(200, res.getStatus());
+        boolean ranked = false;
+        for (JsonElement entry : gson.fromJson(res.getBody(), JsonArray.class)){
+            JsonObject rankedCourse = entry.getAsJsonObject();
+            if (rankedCourse.get("courseId").getAsInt() == course.getId()){
+                ranked = true;
+                assertEquals(3, rankedCourse.get("reviewCount").getAsInt());
+                assertEquals(4.0, rankedCourse.get("averageRating").getAsDouble(), 0.0);
+            }
+        }
+        assertTrue(ranked);
+        assertEquals(400, client.request("GET", "/courses/top?by=name").getStatus());
+    }
+
+    @Test
+    public void metricsShowTheRoutesAndTheirErrors() throws Exception {
+        client.request("GET", "/courses/4242");
+
+        ApiResponse res = client.request("GET", "/metrics");
+
+        assertEquals(200, res.getStatus());
+        assertTrue(res.getHeader("Content-Type").startsWith("text/plain"));
+        assertTrue(res.getBody().contains(
+                "courses_http_errors_total{method=\"GET\",route=\"/courses/:id\",status=\"404\"}"));
+        assertTrue(res.getBody().contains(
+                "courses_dao_query_duration_seconds_count{dao=\"CourseDao\",method=\"findById\"}"));
+    }
+
+    @Test
+    public void manyCoursesCanBeFetchedByTheirIds() throws Exception {
+        Course first = newTestCourse();
+        Course second = newTestCourse();
+        courseDao.add(first);
+        courseDao.add(second);
+
+        ApiResponse res = client.request("GET",
+                String.format("/courses?ids=%d,4242,%d", second.getId(), first.getId()));
+
+        assertEquals(200, res.getStatus());
+        JsonObject result = gson.fromJson(res.getBody(), JsonObject.class);
+        JsonArray courses = result.getAsJsonArray("courses");
+        assertEquals(2, courses.size());
+        assertEquals(second.getId(), courses.get(0).getAsJsonObject().get("id").getAsInt());
+        assertEquals(first.getId(), courses.get(1).getAsJsonObject().get("id").getAsInt());
+        assertEquals(4242, result.getAsJsonArray("missing").get(0).getAsInt());
+        assertEquals(400, client.request("GET", "/courses?ids=1,abc").getStatus());
+    }
+}
@@ -0,0 +1,208 @@
+package com.teamtreehouse.courses;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.teamtreehouse.courses.dao.Sql2oCourseDao;
+import com.teamtreehouse.courses.dao.Sql2oReviewDao;
+import com.teamtreehouse.courses.db.SchemaMigrator;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import com.teamtreehouse.testing.ApiClient;
+import com.teamtreehouse.testing.ApiResponse;
+import org.junit.*;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the Api with -Dcourses.reviews.async=true: a posted review is put on the ReviewWriteQueue (which holds at
+* most QUEUE_CAPACITY reviews) and the client gets 202 with the submission to look up.
+*
+* To keep the writer of the queue from committing we hold the course_stats row of the course in a transaction of our
+* own, every commit of a review of that course waits for it. The LOCK_TIMEOUT in the url gives us the time.
+* */
+public class AsyncReviewsApiTest {
+
+    public static final String PORT = "4569";
+    public static final String TEST_DATA_SOURCE = "jdbc:h2:mem:async-testing;LOCK_TIMEOUT=10000";
+    private static final int QUEUE_CAPACITY = 2;
+
+    private Connection conn;
+    private ApiClient client;
+    private Gson gson;
+    private Sql2o sql2o;
+    private Sql2oCourseDao courseDao;
+    private Sql2oReviewDao reviewDao;
+
+    @BeforeClass
+    public static void startServer(){
+        System.setProperty("courses.reviews.async", "true");
+        System.setProperty("courses.reviews.queueCapacity", String.valueOf(QUEUE_CAPACITY));
+        Api.main(new String[]{PORT, TEST_DATA_SOURCE});
+    }
+
+    @AfterClass
+    public static void stopServer(){
+        Api.stop();
+        System.clearProperty("courses.reviews.async");
+        System.clearProperty("courses.reviews.queueCapacity");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        sql2o = new Sql2o(TEST_DATA_SOURCE, "", "");
+        courseDao = new Sql2oCourseDao(sql2o);
+        reviewDao = new Sql2oReviewDao(sql2o);
+        conn = sql2o.open(); // <- keeps the in memory database alive, even while the Api is stopped
+        new SchemaMigrator(sql2o).migrate();
+        client = new ApiClient("http://localhost:" + PORT);
+        gson = new Gson();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.createQuery("DELETE FROM course_stats").executeUpdate();
+        conn.createQuery("DELETE FROM reviews").executeUpdate();
+        conn.createQuery("DELETE FROM courses").executeUpdate();
+        conn.close();
+    }
+
+    private Course addCourseWithStats() throws Exception {
+        Course course = new Course("Test", "http://what.com");
+        courseDao.add(course);
+        reviewDao.add(new Review(course.getId(), 3, "the first one")); // <- creates the course_stats row
+        return course;
+    }
+
+    /*
+    * the transaction that holds the course_stats row of the course until it is rolled back
+    * */
+    private Connection holdStatsOf(Course course) {
+        Connection holder = sql2o.beginTransaction();
+        holder.createQuery("UPDATE course_stats SET review_count = review_count WHERE course_id = :courseId")
+                .addParameter("courseId", course.getId())
+                .executeUpdate();
+        return holder;
+    }
+
+    private ApiResponse postReview(int courseId, int rating) {
+        return client.request("POST", "/courses/" + courseId + "/reviews",
+                "{\"rating\": " + rating + ", \"comment\": \"async\"}");
+    }
+
+    private JsonObject waitForState(String location, String state) throws Exception {
+        JsonObject submission = null;
+        for (int i = 0; i < 500; i++){
+            submission = gson.fromJson(client.request("GET", location).getBody(), JsonObject.class);
+            if (state.equals(submission.get("state").getAsString())){
+                return submission;
+            }
+            Thread.sleep(10);
+        }
+        fail("submission never got " + state + ": " + submission);
+        return null;
+    }
+
+    private int reviewCount() {
+        return conn.createQuery("SELECT COUNT(*) FROM reviews").executeScalar(Integer.class);
+    }
+
+    @Test
+    public void postedReviewIsAcceptedAndLaterCommitted() throws Exception {
+        Course course = addCourseWithStats();
+        Connection holder = holdStatsOf(course);
+        ApiResponse res;
+        try {
+            res = postReview(course.getId(), 5);
+
+            assertEquals(202, res.getStatus());
+            String location = res.getHeader("Location");
+            assertTrue(location.startsWith("/review-submissions/"));
+            assertEquals("QUEUED", gson.fromJson(client.request("GET", location).getBody(), JsonObject.class)
+                    .get("state").getAsString());
+        } finally {
+            holder.rollback();
+        }
+
+        JsonObject committed = waitForState(res.getHeader("Location"), "COMMITTED");
+        assertEquals(course.getId(), committed.get("courseId").getAsInt());
+        assertEquals(2, reviewDao.findByCourseId(course.getId()).size());
+    }
+
+    @Test
+    public void invalidReviewsAndUnknownCoursesAreRejectedBeforeQueueing() throws Exception {
+        Course course = addCourseWithStats();
+
+        assertEquals(400, postReview(course.getId(), 42).getStatus());
+        assertEquals(404, postReview(4242, 5).getStatus());
+        assertEquals(404, client.request("GET", "/review-submissions/4242").getStatus());
+    }
+
+    @Test
+    public void aFullQueueAnswers503WithRetryAfter() throws Exception {
+        Course course = addCourseWithStats();
+        Connection holder = holdStatsOf(course);
+        List<String> accepted = new ArrayList<>();
+        ApiResponse rejected = null;
+        try {
+            /*
+            * the writer may hold one review while it waits for our row, so it takes up to QUEUE_CAPACITY + 2 posts
+            * */
+            for (int i = 0; i < QUEUE_CAPACITY + 2 && rejected == null; i++){
+                ApiResponse res = postReview(course.getId(), 4);
+                if (res.getStatus() == 202){
+                    accepted.add(res.getHeader("Location"));
+                } else {
+                    rejected = res;
+                }
+            }
+        } finally {
+            holder.rollback();
+        }
+
+        assertNotNull("the queue should have filled up", rejected);
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        for (String location : accepted){
+            waitForState(location, "COMMITTED");
+        }
+        assertEquals(1 + accepted.size(), reviewCount());
+    }
+
+    @Test
+    public void stoppingTheApiCommitsTheQueuedReviews() throws Exception {
+        Course course = addCourseWithStats();
+        Connection holder = holdStatsOf(course);
+        int accepted = 0;
+        try {
+            for (int i = 0; i < QUEUE_CAPACITY; i++){
+                if (postReview(course.getId(), 2).getStatus() == 202){
+                    accepted++;
+                }
+            }
+        } finally {
+            /*
+            * Api.stop() waits for the writer, so we let go of the row from another thread while it waits
+            * */
+            Thread release = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignored){
+                    // release right away then
+                }
+                holder.rollback();
+            });
+            release.start();
+            Api.stop();
+            release.join();
+            Api.main(new String[]{PORT, TEST_DATA_SOURCE}); // <- for the other tests
+        }
+
+        assertEquals(QUEUE_CAPACITY, accepted);
+        assertEquals(1 + accepted, reviewCount());
+    }
+}
@@ -0,0 +1,114 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.db.SchemaMigrator;
+import com.teamtreehouse.courses.model.Course;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the read-through cache wrapped around the real Sql2oCourseDao, the cache holds at most 2 courses
+* */
+public class CachingCourseDaoTest {
+
+    private CachingCourseDao dao;
+    private Sql2oCourseDao sql2oDao;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        Sql2o sql2o = new Sql2o("jdbc:h2:mem:testing", "", "");
+        conn = sql2o.open();
+        new SchemaMigrator(sql2o).migrate();
+        sql2oDao = new Sql2oCourseDao(sql2o);
+        dao = new CachingCourseDao(sql2oDao, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    private Course newTestCourse() {
+        return new Course("Test", "http://what.com");
+    }
+
+    @Test
+    public void addedCoursesAreServedFromTheCache() throws Exception {
+        Course course = newTestCourse();
+        dao.add(course);
+
+        /*
+        * the course is put in the cache when it is added thus the lookup is a hit even after the row is gone
+        * */
+        conn.createQuery("DELETE FROM courses").executeUpdate();
+
+        assertEquals(course, dao.findById(course.getId()));
+        assertEquals(1, dao.getStats().getHits());
+    }
+
+    @Test
+    public void firstLookupIsAMissAndTheNextOneIsAHit() throws Exception {
+        Course course = newTestCourse();
+        sql2oDao.add(course); // <- added behind the back of the cache
+
+        dao.findById(course.getId());
+        dao.findById(course.getId());
+
+        assertEquals(1, dao.getStats().getMisses());
+        assertEquals(1, dao.getStats().getHits());
+    }
+
+    @Test
+    public void missingCoursesAreNotCached() throws Exception {
+        assertNull(dao.findById(42));
+        assertEquals(0, dao.getStats().getSize());
+    }
+
+    @Test
+    public void leastRecentlyUsedCourseIsEvictedWhenFull() throws Exception {
+        Course first = newTestCourse();
+        Course second = newTestCourse();
+        Course third = newTestCourse();
+        dao.add(first);
+        dao.add(second);
+        dao.findById(first.getId()); // <- makes the second course the least recently used one
+
+        dao.add(third);
+
+        assertEquals(2, dao.getStats().getSize());
+        assertEquals(1, dao.getStats().getEvictions());
+        dao.findById(first.getId());
+        assertEquals("first course should still be cached", 2, dao.getStats().getHits());
+        dao.findById(second.getId());
+        assertEquals("second course should have been evicted", 1, dao.getStats().getMisses());
+    }
+
+    @Test
+    public void onlyTheUncachedIdsAreLoaded() throws Exception {
+        Course cached = newTestCourse();
+        Course uncached = newTestCourse();
+        dao.add(cached);
+        sql2oDao.add(uncached); // <- added behind the back of the cache
+
+        Map<Integer, Course> found = dao.findByIds(Arrays.asList(uncached.getId(), 42, cached.getId()));
+
+        assertEquals(Arrays.asList(uncached.getId(), cached.getId()), new ArrayList<>(found.keySet()));
+        assertEquals(1, dao.getStats().getHits());
+        assertEquals(2, dao.getStats().getMisses());
+        /*
+        * the loaded course is cached now, the missing one is not
+        * */
+        dao.findById(uncached.getId());
+        assertEquals(2, dao.getStats().getHits());
+        assertEquals(2, dao.getStats().getSize());
+    }
+}
@@ -0,0 +1,14 @@
+package com.teamtreehouse.courses.dao;
+
+import org.sql2o.Sql2o;
+
+/*
+* All of the tests of Sql2oCourseDaoTest against the InMemoryCourseDao, it has to behave the same
+* */
+public class InMemoryCourseDaoTest extends Sql2oCourseDaoTest {
+
+    @Override
+    protected CourseDao newDao(Sql2o sql2o) {
+        return new InMemoryCourseDao();
+    }
+}
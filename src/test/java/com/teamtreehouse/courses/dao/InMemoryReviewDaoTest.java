@@ -0,0 +1,19 @@
+package com.teamtreehouse.courses.dao;
+
+import org.sql2o.Sql2o;
+
+/*
+* All of the tests of Sql2oReviewDaoTest against the InMemoryReviewDao, it has to behave the same
+* */
+public class InMemoryReviewDaoTest extends Sql2oReviewDaoTest {
+
+    @Override
+    protected CourseDao newCourseDao(Sql2o sql2o) {
+        return new InMemoryCourseDao();
+    }
+
+    @Override
+    protected ReviewDao newReviewDao(Sql2o sql2o, CourseDao courseDao) {
+        return new InMemoryReviewDao((InMemoryCourseDao) courseDao);
+    }
+}
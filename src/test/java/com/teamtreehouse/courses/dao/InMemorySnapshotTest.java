@@ -0,0 +1,68 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.CourseStats;
+import com.teamtreehouse.courses.model.Review;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class InMemorySnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private InMemoryCourseDao courseDao;
+    private InMemoryReviewDao reviewDao;
+
+    @Before
+    public void setUp() throws Exception {
+        file = folder.getRoot().toPath().resolve("courses.snapshot");
+        courseDao = new InMemoryCourseDao();
+        reviewDao = new InMemoryReviewDao(courseDao);
+    }
+
+    @Test
+    public void restoredDaosHoldWhatWasSaved() throws Exception {
+        Course java = new Course("Java", "http://java.com");
+        Course python = new Course("Python", "http://python.org");
+        courseDao.addAll(Arrays.asList(java, python));
+        reviewDao.add(new Review(java.getId(), 5, "great"));
+        reviewDao.add(new Review(java.getId(), 2, null));
+        assertTrue(new InMemorySnapshot(courseDao, reviewDao, file).save());
+
+        InMemoryCourseDao restoredCourses = new InMemoryCourseDao();
+        InMemoryReviewDao restoredReviews = new InMemoryReviewDao(restoredCourses);
+        assertTrue(new InMemorySnapshot(restoredCourses, restoredReviews, file).restore());
+
+        assertEquals(courseDao.findAll(), restoredCourses.findAll());
+        assertEquals(reviewDao.findByCourseId(java.getId()), restoredReviews.findByCourseId(java.getId()));
+        CourseStats stats = new ComputedCourseStatsDao(restoredReviews).findByCourseId(java.getId());
+        assertEquals(2, stats.getReviewCount());
+        assertEquals(3.5, stats.getAverageRating(), 0.001);
+
+        /*
+        * the ids go on after the restored ones
+        * */
+        Course next = new Course("Next", "http://next.com");
+        restoredCourses.add(next);
+        assertEquals(python.getId() + 1, next.getId());
+    }
+
+    @Test
+    public void nothingToRestoreWithoutASnapshotAndNothingToSaveWithoutChanges() throws Exception {
+        InMemorySnapshot snapshot = new InMemorySnapshot(courseDao, reviewDao, file);
+
+        assertFalse(snapshot.restore());
+        courseDao.add(new Course("Java", "http://java.com"));
+        assertTrue(snapshot.save());
+        assertFalse(snapshot.save());
+    }
+}
@@ -0,0 +1,124 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sql2o.Sql2o;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+* All of the tests of Sql2oReviewDaoTest against the MappedLogReviewDao (with the courses in H2), and then what only
+* a log has: reopening it, a torn write at its end and rolling over to new segments
+* */
+public class MappedLogReviewDaoTest extends Sql2oReviewDaoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CourseDao courses;
+    private List<MappedLogReviewDao> opened = new ArrayList<>();
+
+    @Override
+    protected ReviewDao newReviewDao(Sql2o sql2o, CourseDao courseDao) {
+        courses = courseDao;
+        return open("setUp", 1 << 20);
+    }
+
+    @After
+    public void closeLogs() throws Exception {
+        for (MappedLogReviewDao log : opened){
+            log.close();
+        }
+    }
+
+    private MappedLogReviewDao open(String directory, int segmentBytes) {
+        try {
+            MappedLogReviewDao log = new MappedLogReviewDao(courses, folder.getRoot().toPath().resolve(directory),
+                    segmentBytes, false);
+            opened.add(log);
+            return log;
+        } catch (Exception ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private Course newCourse() throws Exception {
+        Course course = new Course("Log", "http://log.com");
+        courses.add(course);
+        return course;
+    }
+
+    @Test
+    public void reopenedLogHoldsEveryReview() throws Exception {
+        MappedLogReviewDao log = open("log", 1 << 20);
+        Course course = newCourse();
+        List<Review> reviews = Arrays.asList(new Review(course.getId(), 4, "first"),
+                new Review(course.getId(), 2, null), new Review(course.getId(), 5, "drittes \u00dc"));
+        log.addAll(reviews);
+        log.close();
+
+        MappedLogReviewDao reopened = open("log", 1 << 20);
+
+        assertEquals(reviews, reopened.findByCourseId(course.getId()));
+        Review next = new Review(course.getId(), 3, "after the restart");
+        reopened.add(next);
+        assertEquals(reviews.get(2).getId() + 1, next.getId());
+    }
+
+    @Test
+    public void aTornBatchAtTheEndIsDroppedOnRecovery() throws Exception {
+        MappedLogReviewDao log = open("log", 1 << 20);
+        Course course = newCourse();
+        Review kept = new Review(course.getId(), 5, "kept");
+        log.add(kept);
+        log.addAll(Arrays.asList(new Review(course.getId(), 1, "torn"), new Review(course.getId(), 1, "torn")));
+        log.close();
+
+        /*
+        * we break the checksum of the last record, as if the process died while writing the second batch: its first
+        * record is fine but without the COMMIT of the last one the whole batch must go
+        * */
+        Path segment = folder.getRoot().toPath().resolve("log").resolve("reviews-000001.log");
+        int lastRecord = 2 * (8 + 17 + 4);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")){
+            file.seek(lastRecord + 4);
+            file.writeInt(12345);
+        }
+
+        MappedLogReviewDao recovered = open("log", 1 << 20);
+
+        assertEquals(Arrays.asList(kept), recovered.findAll());
+        Review next = new Review(course.getId(), 3, "next");
+        recovered.add(next);
+        assertEquals(Arrays.asList(kept, next), open("log", 1 << 20).findAll());
+    }
+
+    @Test
+    public void fullSegmentsRollOverToNewOnes() throws Exception {
+        MappedLogReviewDao log = open("log", 256);
+        Course course = newCourse();
+        List<Review> added = new ArrayList<>();
+        for (int i = 0; i < 40; i++){
+            Review review = new Review(course.getId(), 1 + i % 5, "review number " + i);
+            log.add(review);
+            added.add(review);
+        }
+
+        assertTrue(Files.list(folder.getRoot().toPath().resolve("log")).count() > 1);
+        assertEquals(added, log.findByCourseId(course.getId()));
+        assertEquals(added.subList(10, 15), log.findByCourseId(course.getId(), added.get(9).getId(), 5));
+        log.close();
+        assertEquals(added, open("log", 256).findAll());
+    }
+}
@@ -1,5 +1,6 @@
 package com.teamtreehouse.courses.dao;
 
+import com.teamtreehouse.courses.db.SchemaMigrator;
 import com.teamtreehouse.courses.model.Course;
 import org.junit.After;
 import org.junit.Before;
@@ -7,17 +8,23 @@ import org.junit.Test;
 import org.sql2o.Connection;
 import org.sql2o.Sql2o;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 /**
  * This is the test code for DAO implementation
- * we will set up the database (H2 database) using in-memory database version thus we put in it the script we made in
- * db/init.sql
+ * we will set up the database (H2 database) using in-memory database version thus we put in it the scripts we made in
+ * db/ using the SchemaMigrator
  *
  * */
 public class Sql2oCourseDaoTest {
 
-    private Sql2oCourseDao dao;
+    private CourseDao dao;
     private Connection conn;
 
     @Before
@@ -27,10 +34,10 @@ public class Sql2oCourseDaoTest {
         * we call JDBC and declare H2 database as the database version which we use the in memory version of it (mem)
         * and we called that database "testing"
         *
-        * next part during the initialization (INIT) we want JDBC to run a script written in db/init.sql (the
-        * resources folder is a classpath)
+        * the tables are created by the SchemaMigrator below which runs the numbered scripts in db/ (the resources
+        * folder is a classpath)
         * */
-        String connectionString = "jdbc:h2:mem:testing;INIT=RUNSCRIPT from 'classpath:db/init.sql'";
+        String connectionString = "jdbc:h2:mem:testing";
 
         /*
         * we make a new Sql2o object and passed in the connectionString which by default will asks for username and
@@ -42,7 +49,7 @@ public class Sql2oCourseDaoTest {
         * Now we make our DAO by passing the sql2o object (remember the constructor demands the Sql2o object to be
         * passed in)
         * */
-        dao = new Sql2oCourseDao(sql2o);
+        dao = newDao(sql2o);
 
         /*
         * WARNING: one thing about in memory version of a database is that the data will be erased when the connection
@@ -51,6 +58,18 @@ public class Sql2oCourseDaoTest {
         * In order to avoid this we need to keep the connection alive through entire test so that's not being wiped out
         * */
         conn = sql2o.open();
+
+        /*
+        * with the connection kept open we can now create the tables, the same way the Api does on startup
+        * */
+        new SchemaMigrator(sql2o).migrate();
+    }
+
+    /*
+    * InMemoryCourseDaoTest runs all of these tests once more against the in memory dao, by giving back that one here
+    * */
+    protected CourseDao newDao(Sql2o sql2o) {
+        return new Sql2oCourseDao(sql2o);
     }
 
     @After
@@ -149,6 +168,35 @@ public class Sql2oCourseDaoTest {
         assertEquals(course, foundCourse);
     }
 
+    @Test
+    public void pagesContinueAfterTheGivenId() throws Exception {
+        /*
+        * Arrange: three courses, we page through them two at a time
+        * */
+        Course first = newTestCourse();
+        Course second = newTestCourse();
+        Course third = newTestCourse();
+        dao.add(first);
+        dao.add(second);
+        dao.add(third);
+
+        List<Course> firstPage = dao.findAll(0, 2);
+        List<Course> secondPage = dao.findAll(firstPage.get(1).getId(), 2);
+
+        assertEquals(Arrays.asList(first, second), firstPage);
+        assertEquals(Arrays.asList(third), secondPage);
+    }
+
+    @Test
+    public void addAllSetsTheIdOfEveryCourse() throws Exception {
+        List<Course> courses = Arrays.asList(new Course("First", "http://first.com"),
+                new Course("Second", "http://second.com"));
+
+        dao.addAll(courses);
+
+        assertEquals(courses, dao.findAll());
+    }
+
     /**
      * This new private method is the result of a Refactor that code new Course initialization as the arrangement
      * prior to some tests here.
@@ -158,4 +206,21 @@ public class Sql2oCourseDaoTest {
     private Course newTestCourse() {
         return new Course("Test", "http://what.com");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void coursesFoundByIdsKeepTheOrderOfTheIds() throws Exception {
+        Course first = newTestCourse();
+        Course second = newTestCourse();
+        dao.add(first);
+        dao.add(second);
+
+        Map<Integer, Course> found = dao.findByIds(Arrays.asList(second.getId(), 42, first.getId()));
+
+        /*
+        * 42 does not exist so it is left out, the others come in the order we asked for them
+        * */
+        assertEquals(Arrays.asList(second.getId(), first.getId()), new ArrayList<>(found.keySet()));
+        assertEquals(first, found.get(first.getId()));
+        assertTrue(dao.findByIds(Collections.emptyList()).isEmpty());
+    }
+}
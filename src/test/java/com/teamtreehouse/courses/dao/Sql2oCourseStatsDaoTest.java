@@ -0,0 +1,123 @@
+package com.teamtreehouse.courses.dao;
+
+import com.teamtreehouse.courses.db.SchemaMigrator;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.CourseStats;
+import com.teamtreehouse.courses.model.Review;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing that the course_stats rows follow every review we add through the Sql2oReviewDao
+* */
+public class Sql2oCourseStatsDaoTest {
+
+    private Sql2oCourseStatsDao statsDao;
+    private Sql2oReviewDao reviewDao;
+    private Connection conn;
+    private Course course;
+
+    @Before
+    public void setUp() throws Exception {
+        Sql2o sql2o = new Sql2o("jdbc:h2:mem:testing", "", "");
+        conn = sql2o.open();
+        new SchemaMigrator(sql2o).migrate();
+        statsDao = new Sql2oCourseStatsDao(sql2o);
+        reviewDao = new Sql2oReviewDao(sql2o);
+        course = new Course("Test", "http://test.com");
+        new Sql2oCourseDao(sql2o).add(course);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void addedReviewsAreCountedInTheStats() throws Exception {
+        reviewDao.add(new Review(course.getId(), 5, "great"));
+        reviewDao.addAll(Arrays.asList(
+                new Review(course.getId(), 2, "meh"),
+                new Review(course.getId(), 5, "awesome")));
+
+        CourseStats stats = statsDao.findByCourseId(course.getId());
+
+        assertEquals(3, stats.getReviewCount());
+        assertEquals(12, stats.getRatingSum());
+        assertEquals(Integer.valueOf(2), stats.getMinRating());
+        assertEquals(Integer.valueOf(5), stats.getMaxRating());
+        assertEquals(4.0, stats.getAverageRating(), 0.001);
+        assertEquals(Integer.valueOf(1), stats.getHistogram().get(2));
+        assertEquals(Integer.valueOf(2), stats.getHistogram().get(5));
+    }
+
+    @Test
+    public void courseWithoutReviewsHasEmptyStats() throws Exception {
+        CourseStats stats = statsDao.findByCourseId(course.getId());
+
+        assertEquals(0, stats.getReviewCount());
+        assertEquals(0.0, stats.getAverageRating(), 0.001);
+        assertNull(stats.getMinRating());
+        assertNull(stats.getMaxRating());
+    }
+
+    @Test
+    public void nonExistingCourseHasNoStats() throws Exception {
+        assertNull(statsDao.findByCourseId(4242));
+    }
+
+    @Test
+    public void rebuildRestoresStatsThatDrifted() throws Exception {
+        reviewDao.add(new Review(course.getId(), 4, "good"));
+        reviewDao.add(new Review(course.getId(), 3, "ok"));
+        CourseStats expected = statsDao.findByCourseId(course.getId());
+        conn.createQuery("UPDATE course_stats SET review_count = 42, rating_1 = 7").executeUpdate();
+
+        int rebuilt = statsDao.rebuild();
+
+        assertEquals(1, rebuilt);
+        assertEquals(expected, statsDao.findByCourseId(course.getId()));
+    }
+
+    @Test
+    public void concurrentInsertsKeepExactTotals() throws Exception {
+        /*
+        * 4 threads add 25 reviews each to the same course at the same time, the first of them race to insert the
+        * stats row and then all of them update it
+        * */
+        int threads = 4;
+        int reviewsPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++){
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < reviewsPerThread; i++){
+                    reviewDao.add(new Review(course.getId(), i % 5 + 1, "review"));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures){
+            future.get();
+        }
+        executor.shutdown();
+
+        CourseStats stats = statsDao.findByCourseId(course.getId());
+
+        assertEquals(threads * reviewsPerThread, stats.getReviewCount());
+        assertEquals(threads * 75, stats.getRatingSum());
+        assertEquals(Integer.valueOf(threads * 5), stats.getHistogram().get(3));
+    }
+}
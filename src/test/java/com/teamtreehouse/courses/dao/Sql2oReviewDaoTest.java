@@ -1,5 +1,7 @@
 package com.teamtreehouse.courses.dao;
 
+import com.teamtreehouse.courses.db.SchemaMigrator;
+import com.teamtreehouse.courses.exc.CourseNotFoundException;
 import com.teamtreehouse.courses.exc.DaoException;
 import com.teamtreehouse.courses.model.Course;
 import com.teamtreehouse.courses.model.Review;
@@ -9,6 +11,10 @@ import org.junit.Test;
 import org.sql2o.Connection;
 import org.sql2o.Sql2o;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 /*
@@ -19,7 +25,8 @@ import static org.junit.Assert.*;
 * */
 public class Sql2oReviewDaoTest {
 
-    private Sql2oReviewDao reviewDao;
+    private ReviewDao reviewDao;
+    private CourseDao courseDao;
     private Connection conn;
     private Course course;
 
@@ -28,7 +35,7 @@ public class Sql2oReviewDaoTest {
         /*
         * let's start by configuring the database in use
         * */
-        String connString = "jdbc:h2:mem:testing;INIT=RUNSCRIPT from 'classpath:db/init.sql'";
+        String connString = "jdbc:h2:mem:testing";
 
         /*
         * NEXT we initialize Sql2o
@@ -38,14 +45,15 @@ public class Sql2oReviewDaoTest {
         /*
         * Initializing Dao WARNING remeber we need two kinds of dao one for the Course to add and another for the review
         * */
-        Sql2oCourseDao courseDao = new Sql2oCourseDao(sql2o); //this is only needed here so it does not have to be field
-        reviewDao = new Sql2oReviewDao(sql2o);
+        courseDao = newCourseDao(sql2o);
+        reviewDao = newReviewDao(sql2o, courseDao);
 
         /*
         * Open connection to Sql2o
         * and add the new course where we can test our reviews in action
         * */
         conn = sql2o.open();
+        new SchemaMigrator(sql2o).migrate(); // <- creating the tables while our connection keeps the database alive
 
         /*
         * Creating and Adding ne course to the data base
@@ -55,6 +63,17 @@ public class Sql2oReviewDaoTest {
         courseDao.add(course);
     }
 
+    /*
+    * InMemoryReviewDaoTest runs all of these tests once more against the in memory daos, by giving back those here
+    * */
+    protected CourseDao newCourseDao(Sql2o sql2o) {
+        return new Sql2oCourseDao(sql2o);
+    }
+
+    protected ReviewDao newReviewDao(Sql2o sql2o, CourseDao courseDao) {
+        return new Sql2oReviewDao(sql2o);
+    }
+
     @After
     public void tearDown() throws Exception {
         /*
@@ -134,6 +153,78 @@ public class Sql2oReviewDaoTest {
                 reviewDao.findByCourseId(course.getId()).size());
     }
 
+    @Test
+    public void pagesOfAllReviewsContinueAfterTheGivenId() throws Exception {
+        Review first = newTestreview();
+        Review second = newTestreview();
+        Review third = newTestreview();
+        reviewDao.add(first);
+        reviewDao.add(second);
+        reviewDao.add(third);
+
+        assertEquals(Arrays.asList(first, second), reviewDao.findAll(0, 2));
+        assertEquals(Arrays.asList(third), reviewDao.findAll(second.getId(), 2));
+    }
+
+    @Test
+    public void pagesOfCourseReviewsOnlyHoldThatCourse() throws Exception {
+        /*
+        * Arrange: a second course with its own review, it must never show up in the pages of our course
+        * */
+        Course other = new Course("Other", "http://othercourse.com");
+        courseDao.add(other);
+        reviewDao.add(new Review(other.getId(), 3, "other review"));
+        Review first = newTestreview();
+        Review second = newTestreview();
+        reviewDao.add(first);
+        reviewDao.add(second);
+
+        assertEquals(Arrays.asList(first), reviewDao.findByCourseId(course.getId(), 0, 1));
+        assertEquals(Arrays.asList(second), reviewDao.findByCourseId(course.getId(), first.getId(), 1));
+        assertEquals(0, reviewDao.findByCourseId(course.getId(), second.getId(), 1).size());
+    }
+
+    @Test
+    public void streamAllVisitsEveryReviewInIdOrder() throws Exception {
+        Review first = newTestreview();
+        Review second = newTestreview();
+        reviewDao.add(first);
+        reviewDao.add(second);
+        List<Review> visited = new ArrayList<>();
+
+        reviewDao.streamAll(visited::add);
+
+        assertEquals(Arrays.asList(first, second), visited);
+    }
+
+    @Test
+    public void addAllSetsTheIdOfEveryReview() throws Exception {
+        List<Review> reviews = Arrays.asList(new Review(course.getId(), 1, "first"),
+                new Review(course.getId(), 3, "second"),
+                new Review(course.getId(), 5, "third"));
+
+        reviewDao.addAll(reviews);
+
+        assertEquals(reviews, reviewDao.findByCourseId(course.getId()));
+        assertNotEquals(reviews.get(0).getId(), reviews.get(1).getId());
+    }
+
+    @Test
+    public void addAllAddsNothingWhenOneReviewFails() throws Exception {
+        /*
+        * the second review points to a course that does not exist, the whole batch must be rolled back
+        * */
+        List<Review> reviews = Arrays.asList(newTestreview(), new Review(46, 5, "Test comment"));
+
+        try {
+            reviewDao.addAll(reviews);
+            fail("adding a review to a non existing course should fail");
+        } catch (DaoException expected) {
+            assertEquals(0, reviewDao.findAll().size());
+            assertEquals(0, reviews.get(0).getId());
+        }
+    }
+
     @Test(expected = DaoException.class) //this is the assertion for this method
     public void addingReviewsToNonExistingCourseWillInvokeException() throws Exception {
         /*
@@ -148,4 +239,31 @@ public class Sql2oReviewDaoTest {
         * */
         reviewDao.add(review);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void addingReviewToNonExistingCourseThrowsCourseNotFound() throws Exception {
+        try {
+            reviewDao.add(new Review(46, 5, "Test comment"));
+            fail("adding a review to a non existing course should fail");
+        } catch (CourseNotFoundException expected) {
+            assertEquals(46, expected.getCourseId());
+        }
+    }
+
+    @Test
+    public void reviewsOfNonExistingCourseAreNull() throws Exception {
+        /*
+        * null tells a course that does not exist apart from a course without reviews (an empty list, see above)
+        * */
+        assertNull(reviewDao.findByCourseId(46));
+        assertNull(reviewDao.findByCourseId(46, 0, 10));
+    }
+
+    @Test
+    public void pageAfterTheLastReviewOfACourseIsEmpty() throws Exception {
+        Review review = newTestreview();
+        reviewDao.add(review);
+
+        assertEquals(0, reviewDao.findByCourseId(course.getId(), review.getId(), 10).size());
+    }
+}
@@ -0,0 +1,172 @@
+package com.teamtreehouse.courses.db;
+
+import com.teamtreehouse.courses.dao.Sql2oCourseDao;
+import com.teamtreehouse.courses.model.Course;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Sql2o;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the ConnectionPool on its own against an in memory H2 database
+* */
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        /*
+        * min 1, max 2 connections, waiting at most 100ms for a connection, no idle eviction
+        * */
+        pool = new ConnectionPool("jdbc:h2:mem:pooltesting", "", "", 1, 2, 100, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.close();
+    }
+
+    @Test
+    public void closedConnectionsAreReusedInsteadOfReopened() throws Exception {
+        Connection first = pool.getConnection();
+        String physical = first.unwrap(Connection.class).toString();
+        first.close();
+
+        Connection second = pool.getConnection();
+
+        /*
+        * the borrower gets a new proxy but the physical connection below it must be the same one
+        * */
+        assertEquals(physical, second.unwrap(Connection.class).toString());
+        assertEquals(1, pool.getStats().getTotal());
+        second.close();
+    }
+
+    @Test
+    public void closingMarksOnlyTheBorrowedConnectionClosed() throws Exception {
+        Connection conn = pool.getConnection();
+        conn.close();
+
+        assertTrue(conn.isClosed());
+        assertEquals(0, pool.getStats().getActive());
+        assertEquals(1, pool.getStats().getIdle());
+    }
+
+    @Test(expected = SQLTimeoutException.class)
+    public void acquireTimesOutWhenThePoolIsExhausted() throws Exception {
+        pool.getConnection();
+        pool.getConnection();
+
+        /*
+        * max is 2 thus the third call has to wait and give up after the acquire timeout
+        * */
+        pool.getConnection();
+    }
+
+    @Test
+    public void statsCountActiveAndAcquiredConnections() throws Exception {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+
+        PoolStats stats = pool.getStats();
+
+        assertEquals(2, stats.getActive());
+        assertEquals(0, stats.getIdle());
+        assertEquals(2, stats.getAcquired());
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void openTransactionIsRolledBackWhenReturned() throws Exception {
+        Connection conn = pool.getConnection();
+        conn.createStatement().execute("CREATE TABLE IF NOT EXISTS items(id INT)");
+        conn.setAutoCommit(false);
+        conn.createStatement().execute("INSERT INTO items VALUES (1)");
+        conn.close();
+
+        Connection next = pool.getConnection();
+
+        assertTrue(next.getAutoCommit());
+        try (java.sql.ResultSet rs = next.createStatement().executeQuery("SELECT COUNT(*) FROM items")) {
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+        next.close();
+    }
+
+    @Test
+    public void idleConnectionsAboveMinimumAreEvicted() throws Exception {
+        try (ConnectionPool evicting = new ConnectionPool("jdbc:h2:mem:pooltesting", "", "", 0, 2, 100, 100)) {
+            evicting.getConnection().close();
+
+            Thread.sleep(400);
+
+            assertEquals(0, evicting.getStats().getTotal());
+            assertEquals(1, evicting.getStats().getEvicted());
+        }
+    }
+
+    @Test
+    public void preparedStatementsAreReusedWithTheirConnection() throws Exception {
+        try (ConnectionPool caching = new ConnectionPool("jdbc:h2:mem:pooltesting", "", "", 1, 1, 100, 0, 8)) {
+            String sql = "SELECT ? + 1";
+            Connection conn = caching.getConnection();
+            PreparedStatement first = conn.prepareStatement(sql);
+            first.setInt(1, 1);
+            try (ResultSet rs = first.executeQuery()){
+                rs.next();
+                assertEquals(2, rs.getInt(1));
+            }
+            PreparedStatement physical = first.unwrap(PreparedStatement.class);
+            first.close();
+            conn.close();
+
+            conn = caching.getConnection();
+            PreparedStatement second = conn.prepareStatement(sql);
+            /*
+            * the same statement again, with the parameters of the first borrower cleared
+            * */
+            assertSame(physical, second.unwrap(PreparedStatement.class));
+            assertFalse(second.isClosed());
+            second.setInt(1, 41);
+            try (ResultSet rs = second.executeQuery()){
+                rs.next();
+                assertEquals(42, rs.getInt(1));
+            }
+            second.close();
+            conn.close();
+
+            assertEquals(1, caching.getStats().getStatementHits());
+            assertEquals(1, caching.getStats().getStatementMisses());
+        }
+    }
+
+    @Test
+    public void theQueriesOfTheSql2oDaosComeFromTheStatementCache() throws Exception {
+        /*
+        * Sql2o prepares its queries with prepareStatement(sql, RETURN_GENERATED_KEYS), not with the plain form above
+        * */
+        try (ConnectionPool caching = new ConnectionPool("jdbc:h2:mem:pooltesting", "", "", 1, 1, 100, 0, 8)) {
+            Sql2o sql2o = new Sql2o(caching);
+            new SchemaMigrator(sql2o).migrate();
+            Sql2oCourseDao courseDao = new Sql2oCourseDao(sql2o);
+            Course course = new Course("Test", "http://test.com");
+            courseDao.add(course);
+
+            assertEquals(course, courseDao.findById(course.getId()));
+            long hits = caching.getStats().getStatementHits();
+            assertEquals(course, courseDao.findById(course.getId()));
+
+            assertEquals(hits + 1, caching.getStats().getStatementHits());
+        }
+    }
+}
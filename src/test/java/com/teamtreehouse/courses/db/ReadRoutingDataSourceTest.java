@@ -0,0 +1,90 @@
+package com.teamtreehouse.courses.db;
+
+import com.teamtreehouse.courses.dao.Sql2oCourseDao;
+import com.teamtreehouse.courses.dao.Sql2oReviewDao;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import com.teamtreehouse.courses.search.ReviewIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Sql2o;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the read routing with two separate in memory databases as the primary and the replica, nothing copies the
+* rows from one to the other so we can tell where a find went by what it finds
+* */
+public class ReadRoutingDataSourceTest {
+
+    private ConnectionPool primary;
+    private ConnectionPool replica;
+    private ReadRoutingDataSource routing;
+    private Sql2oCourseDao courseDao;
+
+    @Before
+    public void setUp() throws Exception {
+        primary = new ConnectionPool("jdbc:h2:mem:routing-primary", "", "", 1, 2, 1000, 0);
+        replica = new ConnectionPool("jdbc:h2:mem:routing-replica", "", "", 1, 2, 1000, 0);
+        new SchemaMigrator(new Sql2o(primary)).migrate();
+        new SchemaMigrator(new Sql2o(replica)).migrate();
+        routing = new ReadRoutingDataSource(primary, replica);
+        courseDao = new Sql2oCourseDao(new Sql2o(primary), new Sql2o(routing));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        routing.usePrimary(false);
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    public void addsGoToThePrimaryAndFindsToTheReplica() throws Exception {
+        Course course = new Course("Test", "http://test.com");
+        courseDao.add(course);
+
+        assertTrue(courseDao.findAll().isEmpty());
+        assertNull(courseDao.findById(course.getId()));
+        assertEquals(2, routing.getReplicaReads());
+        assertEquals(0, routing.getPrimaryReads());
+        assertFalse(routing.readsFromPrimary());
+    }
+
+    @Test
+    public void aThreadToldToUseThePrimaryFindsWhatWasAdded() throws Exception {
+        Course course = new Course("Test", "http://test.com");
+        courseDao.add(course);
+
+        routing.usePrimary(true);
+
+        assertTrue(routing.readsFromPrimary());
+        assertEquals(course, courseDao.findById(course.getId()));
+        assertEquals(1, routing.getPrimaryReads());
+    }
+
+    @Test
+    public void whatIsLoadedOnThePrimaryHasTheRowsTheReplicaLacks() throws Exception {
+        /*
+        * the replica lags behind: it has neither the course nor its review
+        * */
+        Course course = new Course("Test", "http://test.com");
+        courseDao.add(course);
+        Sql2oReviewDao reviewDao = new Sql2oReviewDao(new Sql2o(primary), new Sql2o(routing));
+        reviewDao.add(new Review(course.getId(), 5, "lagging"));
+
+        ReviewIndex fromReplica = new ReviewIndex();
+        fromReplica.rebuild(reviewDao);
+        ReviewIndex fromPrimary = new ReviewIndex();
+        routing.onPrimary(() -> fromPrimary.rebuild(reviewDao));
+
+        assertEquals(0, fromReplica.getDocuments());
+        assertEquals(1, fromPrimary.getDocuments());
+        assertEquals(1, fromPrimary.search("lagging", 0, 10).size());
+        /*
+        * and the thread is back on the replica afterwards
+        * */
+        assertNull(courseDao.findById(course.getId()));
+    }
+}
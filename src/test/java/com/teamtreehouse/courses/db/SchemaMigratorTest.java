@@ -0,0 +1,61 @@
+package com.teamtreehouse.courses.db;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the schema migration against a fresh in memory database
+* */
+public class SchemaMigratorTest {
+
+    private Sql2o sql2o;
+    private Connection conn;
+    private SchemaMigrator migrator;
+
+    @Before
+    public void setUp() throws Exception {
+        sql2o = new Sql2o("jdbc:h2:mem:migrationtesting", "", "");
+
+        /*
+        * keep one connection open so the in memory database survives between migrate() calls
+        * */
+        conn = sql2o.open();
+        migrator = new SchemaMigrator(sql2o);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void migrateCreatesTheTablesAndRecordsTheVersions() throws Exception {
+        int applied = migrator.migrate();
+
+        assertTrue(applied > 0);
+        assertEquals(applied, migrator.currentVersion());
+        assertEquals(0, (int) conn.createQuery("SELECT COUNT(*) FROM courses").executeScalar(Integer.class));
+        assertEquals("create the courses and reviews tables",
+                conn.createQuery("SELECT description FROM schema_history WHERE version = 1")
+                        .executeScalar(String.class));
+    }
+
+    @Test
+    public void scriptsAreAppliedOnlyOnce() throws Exception {
+        int version = migrator.currentVersion();
+        migrator.migrate();
+
+        /*
+        * the second run has nothing left to do and the history keeps one row per version
+        * */
+        assertEquals(0, migrator.migrate());
+        assertEquals(migrator.currentVersion(),
+                (int) conn.createQuery("SELECT COUNT(*) FROM schema_history").executeScalar(Integer.class));
+        assertEquals(0, version);
+    }
+}
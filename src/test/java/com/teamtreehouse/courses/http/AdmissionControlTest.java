@@ -0,0 +1,63 @@
+package com.teamtreehouse.courses.http;
+
+import com.teamtreehouse.courses.exc.ApiError;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControlTest {
+
+    @Test
+    public void requestsBeyondTheTurnsAndTheQueueAreRejected() throws Exception {
+        AdmissionControl admission = new AdmissionControl(2, 0, 0, 1);
+
+        assertTrue(admission.enter());
+        assertTrue(admission.enter());
+        assertFalse(admission.enter());
+
+        assertEquals(2, admission.getRunning());
+        assertEquals(2, admission.getAdmitted());
+        assertEquals(1, admission.getRejected());
+    }
+
+    @Test
+    public void aQueuedRequestGetsTheNextFreeTurn() throws Exception {
+        AdmissionControl admission = new AdmissionControl(1, 1, 5000, 1);
+        assertTrue(admission.enter());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> waiting = executor.submit(admission::enter);
+            while (admission.getQueued() == 0){
+                Thread.sleep(1);
+            }
+            admission.exit();
+
+            assertTrue(waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(0, admission.getQueued());
+            assertEquals(1, admission.getRunning());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void theTurnIsGivenBackWhenTheRouteThrows() throws Exception {
+        AdmissionControl admission = new AdmissionControl(1, 0, 0, 1);
+
+        try {
+            admission.admit((req, res) -> {
+                throw new ApiError(404, "Not here");
+            }).handle(null, null);
+            fail("the ApiError must be thrown on");
+        } catch (ApiError expected) {
+            assertEquals(0, admission.getRunning());
+            assertTrue(admission.enter());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.teamtreehouse.courses.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompressionTest {
+
+    @Test
+    public void gzipIsPreferredOnATie() throws Exception {
+        assertEquals("gzip", Compression.negotiate("deflate, gzip"));
+        assertEquals("gzip", Compression.negotiate("*"));
+    }
+
+    @Test
+    public void higherQualityWins() throws Exception {
+        assertEquals("deflate", Compression.negotiate("gzip;q=0.5, deflate"));
+        assertEquals("deflate", Compression.negotiate("gzip;q=0, *;q=0.1"));
+    }
+
+    @Test
+    public void nothingAcceptableMeansNoCompression() throws Exception {
+        assertNull(Compression.negotiate(null));
+        assertNull(Compression.negotiate("identity, br"));
+        assertNull(Compression.negotiate("gzip;q=0, deflate;q=0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void levelMustBeBetweenZeroAndNine() throws Exception {
+        new Compression(true, 1024, 10);
+    }
+}
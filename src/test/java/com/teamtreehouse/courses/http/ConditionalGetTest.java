@@ -0,0 +1,43 @@
+package com.teamtreehouse.courses.http;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConditionalGetTest {
+
+    private static final String ETAG = "\"abc-courses-3\"";
+
+    private ConditionalGet conditionalGet;
+
+    @Before
+    public void setUp() throws Exception {
+        conditionalGet = new ConditionalGet();
+    }
+
+    @Test
+    public void matchingETagIsNotModified() throws Exception {
+        assertTrue(conditionalGet.isNotModified(ETAG, ETAG));
+        assertTrue(conditionalGet.isNotModified("\"old\", W/" + ETAG, ETAG));
+        assertTrue(conditionalGet.isNotModified("*", ETAG));
+    }
+
+    @Test
+    public void otherOrMissingETagIsModified() throws Exception {
+        assertFalse(conditionalGet.isNotModified(null, ETAG));
+        assertFalse(conditionalGet.isNotModified("\"abc-courses-2\"", ETAG));
+    }
+
+    @Test
+    public void statsCountCheckedAndNotModifiedRequests() throws Exception {
+        conditionalGet.isNotModified(ETAG, ETAG);
+        conditionalGet.isNotModified(null, ETAG);
+
+        ConditionalGetStats stats = conditionalGet.getStats();
+
+        assertEquals(2, stats.getChecked());
+        assertEquals(1, stats.getNotModified());
+        assertEquals(0.5, stats.getNotModifiedRatio(), 0.001);
+    }
+}
@@ -0,0 +1,83 @@
+package com.teamtreehouse.courses.http;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the rate limiter with a clock we move by hand: 10 reads per second with a burst of 3 and 1 write per second
+* with a burst of 1
+* */
+public class RateLimiterTest {
+
+    private long now;
+    private RateLimiter limiter;
+
+    @Before
+    public void setUp() throws Exception {
+        now = TimeUnit.HOURS.toNanos(1);
+        limiter = new RateLimiter(10, 3, 1, 1, "X-Api-Key", 1000, () -> now);
+    }
+
+    @Test
+    public void aClientGetsItsBurstAndThenHasToWait() throws Exception {
+        for (int i = 0; i < 3; i++){
+            assertEquals(0, limiter.tryAcquire("1.2.3.4", true));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), limiter.tryAcquire("1.2.3.4", true));
+
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(0, limiter.tryAcquire("1.2.3.4", true));
+        assertEquals(4, limiter.getAllowed());
+        assertEquals(1, limiter.getLimited());
+    }
+
+    @Test
+    public void clientsAndReadsAndWritesHaveTheirOwnBuckets() throws Exception {
+        assertEquals(0, limiter.tryAcquire("1.2.3.4", false));
+        assertTrue(limiter.tryAcquire("1.2.3.4", false) > 0);
+
+        assertEquals(0, limiter.tryAcquire("1.2.3.4", true));
+        assertEquals(0, limiter.tryAcquire("5.6.7.8", false));
+    }
+
+    @Test
+    public void fullBucketsOfIdleClientsAreSweptAway() throws Exception {
+        limiter.tryAcquire("1.2.3.4", true);
+        limiter.tryAcquire("5.6.7.8", false);
+        assertEquals(2, limiter.getClients());
+
+        now += TimeUnit.SECONDS.toNanos(2);
+        limiter.tryAcquire("9.9.9.9", true);
+
+        assertEquals(1, limiter.getClients());
+    }
+
+    @Test
+    public void aRequestSweepsOnlyOneChunkOfTheClients() throws Exception {
+        for (int i = 0; i < RateLimiter.SWEEP_CHUNK + 10; i++){
+            limiter.tryAcquire("client-" + i, true);
+        }
+
+        now += TimeUnit.SECONDS.toNanos(2);
+        limiter.tryAcquire("9.9.9.9", true);
+
+        /*
+        * the 10 idle clients left over are swept by the next request, 9.9.9.9 just took a token so it stays
+        * */
+        assertEquals(10 + 1, limiter.getClients());
+        limiter.tryAcquire("9.9.9.9", true);
+        assertEquals(1, limiter.getClients());
+    }
+
+    @Test
+    public void withoutARateThereIsNoLimit() throws Exception {
+        RateLimiter readsOnly = new RateLimiter(10, 1, 0, 0, null, 1000, () -> now);
+        for (int i = 0; i < 100; i++){
+            assertEquals(0, readsOnly.tryAcquire("1.2.3.4", false));
+        }
+    }
+}
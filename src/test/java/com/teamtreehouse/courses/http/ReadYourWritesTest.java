@@ -0,0 +1,58 @@
+package com.teamtreehouse.courses.http;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the pins with a clock we move by hand, a client that writes reads from the primary for 1 second
+* */
+public class ReadYourWritesTest {
+
+    private long now;
+    private ReadYourWrites readYourWrites;
+
+    @Before
+    public void setUp() throws Exception {
+        now = TimeUnit.HOURS.toNanos(1);
+        readYourWrites = new ReadYourWrites(null, 1000, "X-Api-Key", () -> now);
+    }
+
+    @Test
+    public void aClientReadsFromThePrimaryForAWhileAfterItWrote() throws Exception {
+        assertFalse(readYourWrites.readsFromPrimary("1.2.3.4", false));
+
+        assertTrue(readYourWrites.readsFromPrimary("1.2.3.4", true));
+        now += TimeUnit.MILLISECONDS.toNanos(999);
+        assertTrue(readYourWrites.readsFromPrimary("1.2.3.4", false));
+        assertFalse(readYourWrites.readsFromPrimary("5.6.7.8", false));
+
+        now += TimeUnit.MILLISECONDS.toNanos(1);
+        assertFalse(readYourWrites.readsFromPrimary("1.2.3.4", false));
+        assertEquals(0, readYourWrites.getPinnedClients());
+    }
+
+    @Test
+    public void pinsOfClientsThatDoNotComeBackAreSweptAway() throws Exception {
+        readYourWrites.readsFromPrimary("1.2.3.4", true);
+        readYourWrites.readsFromPrimary("5.6.7.8", true);
+        assertEquals(2, readYourWrites.getPinnedClients());
+
+        now += TimeUnit.SECONDS.toNanos(2);
+        readYourWrites.readsFromPrimary("9.9.9.9", false);
+
+        assertEquals(0, readYourWrites.getPinnedClients());
+    }
+
+    @Test
+    public void withoutAPinTimeOnlyTheWritesThemselvesReadFromThePrimary() throws Exception {
+        ReadYourWrites off = new ReadYourWrites(null, 0, "X-Api-Key", () -> now);
+
+        assertTrue(off.readsFromPrimary("1.2.3.4", true));
+        assertFalse(off.readsFromPrimary("1.2.3.4", false));
+        assertEquals(0, off.getPinnedClients());
+    }
+}
@@ -0,0 +1,125 @@
+package com.teamtreehouse.courses.ingest;
+
+import com.google.gson.Gson;
+import com.teamtreehouse.courses.dao.Sql2oCourseDao;
+import com.teamtreehouse.courses.dao.Sql2oReviewDao;
+import com.teamtreehouse.courses.db.SchemaMigrator;
+import com.teamtreehouse.courses.model.Course;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the NDJSON import against the real DAOs on an in memory database, with a batch size of 2 so the inputs below
+* are written in several batches
+* */
+public class NdjsonImporterTest {
+
+    private Sql2oCourseDao courseDao;
+    private Sql2oReviewDao reviewDao;
+    private NdjsonImporter importer;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        Sql2o sql2o = new Sql2o("jdbc:h2:mem:testing", "", "");
+        conn = sql2o.open();
+        new SchemaMigrator(sql2o).migrate();
+        courseDao = new Sql2oCourseDao(sql2o);
+        reviewDao = new Sql2oReviewDao(sql2o);
+        importer = new NdjsonImporter(courseDao, reviewDao, new Gson(), 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    private ImportReport importLines(String... lines) throws Exception {
+        return importer.importFrom(new StringReader(String.join("\n", lines)));
+    }
+
+    @Test
+    public void coursesAndReviewsAreImportedAndLinkedByRef() throws Exception {
+        ImportReport report = importLines(
+                "{\"type\": \"course\", \"ref\": \"java\", \"name\": \"Java\", \"url\": \"http://java.com\"}",
+                "{\"type\": \"review\", \"courseRef\": \"java\", \"rating\": 5, \"comment\": \"great\"}",
+                "{\"type\": \"review\", \"courseRef\": \"java\", \"rating\": 4, \"comment\": \"good\"}");
+
+        assertEquals(3, report.getRecords());
+        assertEquals(1, report.getCourses());
+        assertEquals(2, report.getReviews());
+        assertEquals(0, report.getFailed());
+        Course java = courseDao.findAll().get(0);
+        assertEquals(2, reviewDao.findByCourseId(java.getId()).size());
+    }
+
+    @Test
+    public void reviewsCanPointToExistingCoursesById() throws Exception {
+        Course course = new Course("Test", "http://test.com");
+        courseDao.add(course);
+
+        ImportReport report = importLines(
+                "{\"type\": \"review\", \"courseId\": " + course.getId() + ", \"rating\": 3}");
+
+        assertEquals(1, report.getReviews());
+        assertEquals(1, reviewDao.findByCourseId(course.getId()).size());
+    }
+
+    @Test
+    public void badRecordsAreReportedWithoutFailingTheirBatch() throws Exception {
+        /*
+        * record 2 has an invalid rating and record 3 points to a course that does not exist, record 3 and 4 are in
+        * the same batch thus the importer has to find the bad one by adding them one by one
+        * */
+        Course course = new Course("Test", "http://test.com");
+        courseDao.add(course);
+
+        ImportReport report = importLines(
+                "{\"type\": \"review\", \"courseId\": " + course.getId() + ", \"rating\": 5}",
+                "{\"type\": \"review\", \"courseId\": " + course.getId() + ", \"rating\": 7}",
+                "{\"type\": \"review\", \"courseId\": 4242, \"rating\": 5}",
+                "{\"type\": \"review\", \"courseId\": " + course.getId() + ", \"rating\": 1}",
+                "{\"type\": \"teacher\"}");
+
+        assertEquals(5, report.getRecords());
+        assertEquals(2, report.getReviews());
+        assertEquals(3, report.getFailed());
+        assertEquals(2, report.getErrors().get(0).getRecord());
+        assertEquals(3, report.getErrors().get(1).getRecord());
+        assertEquals(5, report.getErrors().get(2).getRecord());
+    }
+
+    @Test
+    public void malformedJsonStopsTheImportButKeepsWhatWasRead() throws Exception {
+        ImportReport report = importLines(
+                "{\"type\": \"course\", \"name\": \"Java\", \"url\": \"http://java.com\"}",
+                "{\"type\": \"course\", \"name\": ");
+
+        assertTrue(report.isAborted());
+        assertEquals(1, report.getCourses());
+        assertEquals(1, courseDao.findAll().size());
+    }
+
+    @Test
+    public void recordWithARatingThatIsNoNumberIsReportedAndTheImportGoesOn() throws Exception {
+        Course course = new Course("Test", "http://test.com");
+        courseDao.add(course);
+
+        ImportReport report = importLines(
+                "{\"type\": \"review\", \"courseId\": " + course.getId() + ", \"rating\": 5}",
+                "{\"type\": \"review\", \"courseId\": " + course.getId() + ", \"rating\": \"abc\"}",
+                "{\"type\": \"review\", \"courseId\": " + course.getId() + ", \"rating\": 4}");
+
+        assertFalse(report.isAborted());
+        assertEquals(2, report.getReviews());
+        assertEquals(1, report.getFailed());
+        assertEquals(2, reviewDao.findByCourseId(course.getId()).size());
+    }
+}
@@ -0,0 +1,176 @@
+package com.teamtreehouse.courses.ingest;
+
+import com.teamtreehouse.courses.dao.ReviewDao;
+import com.teamtreehouse.courses.dao.Sql2oCourseDao;
+import com.teamtreehouse.courses.dao.Sql2oReviewDao;
+import com.teamtreehouse.courses.db.SchemaMigrator;
+import com.teamtreehouse.courses.exc.DaoException;
+import com.teamtreehouse.courses.metrics.Metrics;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the write-behind queue against the real review dao on an in memory database
+* */
+public class ReviewWriteQueueTest {
+
+    private Sql2oReviewDao reviewDao;
+    private Course course;
+    private Metrics metrics;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        Sql2o sql2o = new Sql2o("jdbc:h2:mem:testing", "", "");
+        conn = sql2o.open();
+        new SchemaMigrator(sql2o).migrate();
+        Sql2oCourseDao courseDao = new Sql2oCourseDao(sql2o);
+        reviewDao = new Sql2oReviewDao(sql2o);
+        metrics = new Metrics();
+        course = new Course("Test", "http://test.com");
+        courseDao.add(course);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void closeCommitsEveryQueuedReviewInOrder() throws Exception {
+        ReviewWriteQueue queue = new ReviewWriteQueue(reviewDao, 1000, 50, metrics);
+        List<ReviewSubmission> submissions = new ArrayList<>();
+        for (int i = 0; i < 200; i++){
+            submissions.add(queue.submit(new Review(course.getId(), 1 + i % 5, "review " + i)));
+        }
+
+        assertTrue(queue.close(10, TimeUnit.SECONDS));
+
+        List<Review> reviews = reviewDao.findByCourseId(course.getId());
+        assertEquals(200, reviews.size());
+        for (int i = 0; i < 200; i++){
+            assertEquals("review " + i, reviews.get(i).getComment());
+            ReviewSubmission submission = queue.find(submissions.get(i).getId());
+            assertEquals(ReviewSubmission.State.COMMITTED, submission.getState());
+            assertEquals(Integer.valueOf(reviews.get(i).getId()), submission.getReviewId());
+        }
+        assertNull(queue.submit(new Review(course.getId(), 5, "too late")));
+    }
+
+    @Test
+    public void aFullQueueRejectsAndCountsIt() throws Exception {
+        /*
+        * the dao blocks the writer on its first commit (of the first review alone), so the queue behind it fills up
+        * */
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReviewDao blocking = new BlockingReviewDao(reviewDao, entered, release);
+        ReviewWriteQueue queue = new ReviewWriteQueue(blocking, 2, 10, metrics);
+        assertNotNull(queue.submit(new Review(course.getId(), 5, "first")));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+        int accepted = 1;
+        for (int i = 0; i < 9; i++){
+            if (queue.submit(new Review(course.getId(), 5, "review " + i)) != null){
+                accepted++;
+            }
+        }
+        release.countDown();
+        assertTrue(queue.close(10, TimeUnit.SECONDS));
+
+        assertEquals(3, accepted);
+        assertEquals(3, reviewDao.findByCourseId(course.getId()).size());
+        assertTrue(metrics.scrape().contains("courses_review_queue_rejected_total 7\n"));
+    }
+
+    @Test
+    public void aBadReviewFailsAloneAndTheRestOfItsBatchIsCommitted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ReviewWriteQueue queue = new ReviewWriteQueue(new BlockingReviewDao(reviewDao, new CountDownLatch(1), release),
+                100, 10, metrics);
+        queue.submit(new Review(course.getId(), 5, "first"));
+        ReviewSubmission good = queue.submit(new Review(course.getId(), 4, "good"));
+        ReviewSubmission bad = queue.submit(new Review(4242, 4, "no such course"));
+        release.countDown();
+
+        assertTrue(queue.close(10, TimeUnit.SECONDS));
+
+        assertEquals(ReviewSubmission.State.COMMITTED, good.getState());
+        assertEquals(ReviewSubmission.State.FAILED, bad.getState());
+        assertEquals(2, reviewDao.findByCourseId(course.getId()).size());
+    }
+
+    /*
+    * counts down entered and waits for the release latch before its first write, everything goes to the real dao
+    * */
+    private static class BlockingReviewDao implements ReviewDao {
+        private final ReviewDao delegate;
+        private final CountDownLatch entered;
+        private final CountDownLatch release;
+
+        BlockingReviewDao(ReviewDao delegate, CountDownLatch entered, CountDownLatch release) {
+            this.delegate = delegate;
+            this.entered = entered;
+            this.release = release;
+        }
+
+        @Override
+        public void add(Review review) throws DaoException {
+            await();
+            delegate.add(review);
+        }
+
+        @Override
+        public void addAll(List<Review> reviews) throws DaoException {
+            await();
+            delegate.addAll(reviews);
+        }
+
+        @Override
+        public List<Review> findAll() {
+            return delegate.findAll();
+        }
+
+        @Override
+        public List<Review> findAll(int afterId, int limit) {
+            return delegate.findAll(afterId, limit);
+        }
+
+        @Override
+        public void streamAll(Consumer<Review> visitor) {
+            delegate.streamAll(visitor);
+        }
+
+        @Override
+        public List<Review> findByCourseId(int courseId) {
+            return delegate.findByCourseId(courseId);
+        }
+
+        @Override
+        public List<Review> findByCourseId(int courseId, int afterId, int limit) {
+            return delegate.findByCourseId(courseId, afterId, limit);
+        }
+
+        private void await() {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.teamtreehouse.courses.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.teamtreehouse.courses.exc.ApiError;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+* Our TypeAdapters must give the clients exactly the JSON the reflective gson gave them before
+* */
+public class GsonFactoryTest {
+
+    private Gson reflective;
+    private Gson gson;
+
+    @Before
+    public void setUp() throws Exception {
+        reflective = new Gson();
+        gson = GsonFactory.create();
+    }
+
+    private Review newTestReview() {
+        Review review = new Review(3, 4, "Good <b>course</b> & \"quotes\"");
+        review.setId(7);
+        return review;
+    }
+
+    @Test
+    public void coursesAreWrittenLikeBefore() throws Exception {
+        Course course = new Course("Java = fun", "http://test.com");
+        course.setId(12);
+
+        assertEquals(reflective.toJson(course), gson.toJson(course));
+        assertEquals(reflective.toJson(new Course("Test", null)), gson.toJson(new Course("Test", null)));
+    }
+
+    @Test
+    public void reviewsAreWrittenLikeBefore() throws Exception {
+        Review review = newTestReview();
+
+        assertEquals(reflective.toJson(review), gson.toJson(review));
+        assertEquals(reflective.toJson(new Review(1, 2, null)), gson.toJson(new Review(1, 2, null)));
+    }
+
+    @Test
+    public void readingSkipsUnknownAndNullFields() throws Exception {
+        Review review = gson.fromJson(
+                "{\"type\": \"review\", \"courseRef\": {\"x\": [1]}, \"courseId\": 3, \"rating\": \"4\", " +
+                        "\"comment\": null, \"id\": 7}", Review.class);
+
+        assertEquals(3, review.getCourseId());
+        assertEquals(4, review.getRating());
+        assertEquals(7, review.getId());
+        assertNull(review.getComment());
+        assertEquals(new Course("Test", "http://test.com"),
+                gson.fromJson("{\"name\": \"Test\", \"url\": \"http://test.com\", \"ref\": \"t\"}", Course.class));
+    }
+
+    @Test
+    public void errorsOnlyHoldTheStatusAndTheMessage() throws Exception {
+        assertEquals("{\"status\":404,\"errorMsg\":\"Not here\"}",
+                gson.toJson(new ApiError(404, "Not here"), ApiError.class));
+    }
+
+    @Test
+    public void listsAreRenderedLikeGsonDoes() throws Exception {
+        List<Review> reviews = Arrays.asList(newTestReview(), new Review(1, 5, null));
+
+        assertEquals(reflective.toJson(reviews), new JsonTransformer(gson).render(reviews));
+        assertEquals("[]", new JsonTransformer(gson).render(Arrays.asList()));
+    }
+
+    /*
+    * like the reflective gson, fields of the wrong type are a JsonSyntaxException (and so a JsonParseException)
+    * */
+    @Test(expected = JsonSyntaxException.class)
+    public void nonNumericRatingIsASyntaxError() throws Exception {
+        gson.fromJson("{\"courseId\": 3, \"rating\": \"five\"}", Review.class);
+    }
+
+    @Test
+    public void wrongTypedFieldsAreSyntaxErrors() throws Exception {
+        for (String json : Arrays.asList("{\"rating\": {\"stars\": 5}}", "{\"comment\": [1]}", "{\"id\": 1.5}")){
+            try {
+                gson.fromJson(json, Review.class);
+                fail("should not read " + json);
+            } catch (JsonSyntaxException expected){
+                // like gson
+            }
+        }
+        try {
+            gson.fromJson(new JsonParser().parse("{\"name\": {\"first\": \"Java\"}}"), Course.class);
+            fail("should not read a name object");
+        } catch (JsonSyntaxException expected){
+            // from a JsonElement too, as the batch endpoint reads them
+        }
+    }
+}
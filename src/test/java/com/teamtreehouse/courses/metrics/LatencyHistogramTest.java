@@ -0,0 +1,46 @@
+package com.teamtreehouse.courses.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setUp() throws Exception {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void everyValueFallsInABucketWithinTwoPercent() throws Exception {
+        for (long value = 0; value < TimeUnit.HOURS.toMicros(1); value = value * 3 / 2 + 1){
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            assertTrue(highest >= value);
+            assertTrue("bucket of " + value + " goes up to " + highest, highest - value <= value / 50 + 1);
+        }
+    }
+
+    @Test
+    public void percentilesFollowTheRecordedValues() throws Exception {
+        for (int micros = 1; micros <= 1000; micros++){
+            histogram.recordNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getSumMicros());
+        assertEquals(1000, histogram.getMaxMicros());
+        assertEquals(500, histogram.percentileMicros(0.5), 500 / 50);
+        assertEquals(990, histogram.percentileMicros(0.99), 990 / 50);
+        assertEquals(1000, histogram.percentileMicros(0.999), 1000 / 50);
+    }
+
+    @Test
+    public void emptyHistogramHasZeroPercentiles() throws Exception {
+        assertEquals(0, histogram.percentileMicros(0.99));
+    }
+}
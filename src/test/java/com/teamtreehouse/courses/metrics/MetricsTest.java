@@ -0,0 +1,60 @@
+package com.teamtreehouse.courses.metrics;
+
+import com.teamtreehouse.courses.exc.ApiError;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    private Metrics metrics;
+
+    @Before
+    public void setUp() throws Exception {
+        metrics = new Metrics();
+    }
+
+    @Test
+    public void failedRequestsAreCountedByTheirStatus() throws Exception {
+        try {
+            metrics.timed("GET", "/courses/:id", (req, res) -> {
+                throw new ApiError(404, "Not here");
+            }).handle(null, null);
+            fail("the ApiError must be thrown on");
+        } catch (ApiError expected) {
+            RouteMetrics route = metrics.getRoutes().get("GET /courses/:id");
+            assertEquals(1, route.getLatency().getCount());
+            assertEquals(Long.valueOf(1), route.getErrors().get(404));
+        }
+    }
+
+    @Test
+    public void scrapeWritesPrometheusSummaries() throws Exception {
+        metrics.query("CourseDao", "findById").recordNanos(TimeUnit.MILLISECONDS.toNanos(2));
+
+        String text = metrics.scrape();
+
+        assertTrue(text.contains("# TYPE courses_dao_query_duration_seconds summary\n"));
+        assertTrue(text.contains(
+                "courses_dao_query_duration_seconds{dao=\"CourseDao\",method=\"findById\",quantile=\"0.99\"} 0.002"));
+        assertTrue(text.contains(
+                "courses_dao_query_duration_seconds_count{dao=\"CourseDao\",method=\"findById\"} 1\n"));
+    }
+
+    @Test
+    public void scrapeWritesGaugesCountersAndSizes() throws Exception {
+        metrics.gauge("courses_queue_depth", "Depth.", () -> 7);
+        metrics.counter("courses_rejected_total", "Rejected.", () -> 3);
+        metrics.sizes("courses_batch_size", "Batch sizes.").record(40);
+
+        String text = metrics.scrape();
+
+        assertTrue(text.contains("# TYPE courses_queue_depth gauge\ncourses_queue_depth 7\n"));
+        assertTrue(text.contains("# TYPE courses_rejected_total counter\ncourses_rejected_total 3\n"));
+        assertTrue(text.contains("courses_batch_size{quantile=\"0.5\"} 40\n"));
+        assertTrue(text.contains("courses_batch_size_count 1\n"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.teamtreehouse.courses.ranking;
+
+import com.teamtreehouse.courses.dao.InMemoryCourseDao;
+import com.teamtreehouse.courses.dao.InMemoryReviewDao;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CourseLeaderboardTest {
+
+    private CourseLeaderboard leaderboard;
+
+    @Before
+    public void setUp() throws Exception {
+        leaderboard = new CourseLeaderboard();
+    }
+
+    private void review(int courseId, int... ratings) {
+        for (int rating : ratings){
+            leaderboard.add(new Review(courseId, rating, null));
+        }
+    }
+
+    private List<Integer> courseIds(List<RankedCourse> ranked) {
+        List<Integer> courseIds = new ArrayList<>();
+        for (RankedCourse course : ranked){
+            courseIds.add(course.getCourseId());
+        }
+        return courseIds;
+    }
+
+    @Test
+    public void tiesAreBrokenByTheOtherNumberAndThenTheId() throws Exception {
+        review(3, 4, 4);
+        review(1, 5);
+        review(2, 4);
+        review(4, 2, 4, 3, 3);
+
+        List<RankedCourse> byAverage = leaderboard.top(CourseLeaderboard.Order.AVERAGE_RATING, 10, 1);
+        List<RankedCourse> byCount = leaderboard.top(CourseLeaderboard.Order.REVIEW_COUNT, 10, 1);
+
+        assertEquals(Arrays.asList(1, 3, 2, 4), courseIds(byAverage));
+        assertEquals(Arrays.asList(4, 3, 1, 2), courseIds(byCount));
+        assertEquals(2, byAverage.get(1).getRank());
+        assertEquals(4.0, byAverage.get(1).getAverageRating(), 0.0);
+    }
+
+    @Test
+    public void newReviewsMoveTheirCourse() throws Exception {
+        review(1, 5, 5);
+        review(2, 4, 4);
+
+        review(1, 1);
+
+        assertEquals(Arrays.asList(2, 1), courseIds(leaderboard.top(CourseLeaderboard.Order.AVERAGE_RATING, 10, 1)));
+        assertEquals(2, leaderboard.getCourses());
+    }
+
+    @Test
+    public void limitAndMinReviewsCutTheList() throws Exception {
+        review(1, 5);
+        review(2, 4, 4, 4);
+        review(3, 3, 3, 3);
+        review(4, 2, 2, 2);
+
+        assertEquals(Arrays.asList(2, 3), courseIds(leaderboard.top(CourseLeaderboard.Order.AVERAGE_RATING, 2, 3)));
+    }
+
+    @Test
+    public void concurrentReviewsOfTheSameCourseAreAllCounted() throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++){
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000; i++){
+                    review(1 + i % 3, 1 + i % 5);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads){
+            thread.join();
+        }
+
+        List<RankedCourse> top = leaderboard.top(CourseLeaderboard.Order.REVIEW_COUNT, 10, 1);
+        assertEquals(3, top.size());
+        assertEquals(4 * 334, top.get(0).getReviewCount());
+        assertEquals(4 * 333, top.get(2).getReviewCount());
+    }
+
+    @Test
+    public void rebuildRanksEveryReviewOfTheDao() throws Exception {
+        review(42, 5);
+        InMemoryCourseDao courseDao = new InMemoryCourseDao();
+        InMemoryReviewDao reviewDao = new InMemoryReviewDao(courseDao);
+        Course java = new Course("Java", "http://java.com");
+        Course python = new Course("Python", "http://python.org");
+        courseDao.addAll(Arrays.asList(java, python));
+        reviewDao.addAll(Arrays.asList(new Review(java.getId(), 3, null), new Review(python.getId(), 4, null)));
+
+        assertEquals(2, leaderboard.rebuild(reviewDao));
+
+        assertEquals(Arrays.asList(python.getId(), java.getId()),
+                courseIds(leaderboard.top(CourseLeaderboard.Order.AVERAGE_RATING, 10, 1)));
+    }
+}
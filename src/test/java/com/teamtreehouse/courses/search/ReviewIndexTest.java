@@ -0,0 +1,125 @@
+package com.teamtreehouse.courses.search;
+
+import com.teamtreehouse.courses.dao.InMemoryCourseDao;
+import com.teamtreehouse.courses.dao.InMemoryReviewDao;
+import com.teamtreehouse.courses.model.Course;
+import com.teamtreehouse.courses.model.Review;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReviewIndexTest {
+
+    private ReviewIndex index;
+    private int nextId;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new ReviewIndex();
+        nextId = 1;
+    }
+
+    private Review indexed(int courseId, String comment) {
+        Review review = new Review(courseId, 5, comment);
+        review.setId(nextId++);
+        index.add(review);
+        return review;
+    }
+
+    @Test
+    public void commentsAreSplitIntoLowerCaseWords() throws Exception {
+        assertEquals(Arrays.asList("great", "course", "10", "10", "\u00fcber"),
+                ReviewIndex.tokenize("Great course! 10/10, \u00dcBER"));
+        assertTrue(ReviewIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void rarerAndDenserMatchesComeFirst() throws Exception {
+        Review both = indexed(1, "lambdas and streams");
+        Review common = indexed(1, "streams streams everywhere in this long long long comment");
+        indexed(1, "nothing about it");
+        Review dense = indexed(1, "streams");
+
+        List<SearchHit> hits = index.search("Lambdas STREAMS", 0, 10);
+
+        assertEquals(3, hits.size());
+        assertEquals(both, hits.get(0).getReview());
+        assertEquals(dense, hits.get(1).getReview());
+        assertEquals(common, hits.get(2).getReview());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    @Test
+    public void searchCanBeLimitedToOneCourse() throws Exception {
+        indexed(1, "java generics");
+        Review python = indexed(2, "python generics");
+
+        List<SearchHit> hits = index.search("generics", 2, 10);
+
+        assertEquals(1, hits.size());
+        assertEquals(python, hits.get(0).getReview());
+    }
+
+    @Test
+    public void searchInOneCourseJumpsOverTheReviewsOfTheOthers() throws Exception {
+        /*
+        * the 5 reviews of course 2 are 100 postings apart, further than the skips in the postings of "java"
+        * */
+        List<Review> ofCourseTwo = new ArrayList<>();
+        for (int i = 0; i < 500; i++){
+            if (i % 100 == 99){
+                ofCourseTwo.add(indexed(2, "java " + i));
+            } else {
+                indexed(1, "java");
+            }
+        }
+
+        List<SearchHit> hits = index.search("java", 2, 10);
+
+        assertEquals(5, hits.size());
+        List<Review> found = new ArrayList<>();
+        for (SearchHit hit : hits){
+            found.add(hit.getReview());
+        }
+        assertEquals(ofCourseTwo, found);
+    }
+
+    @Test
+    public void onlyTheBestHitsUpToTheLimitAreKept() throws Exception {
+        /*
+        * 300 documents apart so the gaps in the postings take more than one byte
+        * */
+        Review first = indexed(1, "spark spark spark");
+        for (int i = 0; i < 300; i++){
+            indexed(1, "filler " + i);
+        }
+        Review last = indexed(1, "spark spark");
+        indexed(1, "spark and a lot of other words around it");
+
+        List<SearchHit> hits = index.search("spark", 0, 2);
+
+        assertEquals(Arrays.asList(first, last), Arrays.asList(hits.get(0).getReview(), hits.get(1).getReview()));
+        assertTrue(index.search("nowhere to be found", 0, 2).isEmpty());
+    }
+
+    @Test
+    public void rebuildIndexesEveryReviewOfTheDao() throws Exception {
+        indexed(1, "forgotten");
+        InMemoryCourseDao courseDao = new InMemoryCourseDao();
+        InMemoryReviewDao reviewDao = new InMemoryReviewDao(courseDao);
+        Course course = new Course("Java", "http://java.com");
+        courseDao.add(course);
+        reviewDao.addAll(Arrays.asList(new Review(course.getId(), 4, "solid intro"),
+                new Review(course.getId(), 3, null)));
+
+        assertEquals(1, index.rebuild(reviewDao));
+
+        assertTrue(index.search("forgotten", 0, 10).isEmpty());
+        assertEquals("solid intro", index.search("intro", 0, 10).get(0).getReview().getComment());
+    }
+}
@@ -7,8 +7,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
 
+/*
+* A small HTTP client for the tests and the LoadGenerator. It is thread safe: every request gets its own
+* HttpURLConnection, and since we read every response to the end and close it the JDK keeps the socket underneath
+* alive and hands it to the next request to the same server (at most http.maxConnections idle sockets, 5 by default).
+* */
 public class ApiClient {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+
     private String server;
 
     public ApiClient(String server) {
@@ -20,11 +30,20 @@ public class ApiClient {
     }
 
     public ApiResponse request(String method, String uri, String requestBody) {
+        return request(method, uri, requestBody, Collections.emptyMap());
+    }
+
+    public ApiResponse request(String method, String uri, String requestBody, Map<String, String> headers) {
         try {
             URL url = new URL(server + uri);
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
             connection.setRequestMethod(method);
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
             connection.setRequestProperty("Content-Type", "application/json");
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
             if (requestBody != null) {
                 connection.setDoOutput(true);
                 try (OutputStream os = connection.getOutputStream()) {
@@ -32,11 +51,15 @@ public class ApiClient {
                 }
             }
             connection.connect();
-            InputStream inputStream = connection.getResponseCode() < 400 ?
+            String body = "";
+            try (InputStream inputStream = connection.getResponseCode() < 400 ?
                     connection.getInputStream() :
-                    connection.getErrorStream();
-            String body = IOUtils.toString(inputStream);
-            return new ApiResponse(connection.getResponseCode(), body);
+                    connection.getErrorStream()) {
+                if (inputStream != null) {
+                    body = IOUtils.toString(inputStream);
+                }
+            }
+            return new ApiResponse(connection.getResponseCode(), body, connection.getHeaderFields());
         } catch (IOException e) {
             e.printStackTrace();
             throw new RuntimeException("Whoops!  Connection error");
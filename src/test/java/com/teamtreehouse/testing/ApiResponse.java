@@ -1,5 +1,9 @@
 package com.teamtreehouse.testing;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /*
 * This class is made to accomodate the Api response testing. from the com/teamtreehouse/courses/ApiTest.java
 * */
@@ -12,6 +16,7 @@ public class ApiResponse {
     * */
     private final int status;
     private final String body;
+    private final Map<String, List<String>> headers;
 
     /*
     * we make constructor to build the object of ApiResponse for testing by receieveing the response from the URI
@@ -19,8 +24,16 @@ public class ApiResponse {
     * */
 
     public ApiResponse(int status, String body) {
+        this(status, body, Collections.emptyMap());
+    }
+
+    /*
+    * some tests also need to look at the response headers (for example the X-Next-Cursor of a paged list)
+    * */
+    public ApiResponse(int status, String body, Map<String, List<String>> headers) {
         this.status = status;
         this.body = body;
+        this.headers = headers;
     }
 
     /*
@@ -36,4 +49,16 @@ public class ApiResponse {
     public String getBody() {
         return body;
     }
+
+    /*
+    * header names are case insensitive, returns the first value or null when the header is not in the response
+    * */
+    public String getHeader(String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,107 @@
+package com.teamtreehouse.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+* Sends the requests of a Scenario to the Api from `concurrency` threads at once and measures them.
+*
+* Two modes:
+* 1. closed loop (ratePerSecond 0): every thread sends its next request as soon as the last one is answered. This
+*    finds the maximum throughput, but when the Api stalls the threads stall with it and send fewer requests, so the
+*    slow period is under-sampled (coordinated omission) and the percentiles look better than what clients see.
+* 2. open loop (ratePerSecond > 0): requests are scheduled at a constant rate, request n is due at start + n / rate no
+*    matter how the earlier ones went. The latency is measured from when the request was due, so time spent waiting
+*    behind a slow Api counts too, the way it would for real clients arriving at that rate. Use enough threads for
+*    rate * latency requests to be in flight, otherwise the generator itself falls behind (see LoadReport.late).
+* */
+public class LoadGenerator {
+    private final ApiClient client;
+    private final Scenario scenario;
+    private final int concurrency;
+    private final int ratePerSecond;
+    private final long seed;
+
+    public LoadGenerator(ApiClient client, Scenario scenario, int concurrency, int ratePerSecond, long seed) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1 but was " + concurrency);
+        }
+        if (ratePerSecond < 0) {
+            throw new IllegalArgumentException("Rate must not be negative but was " + ratePerSecond);
+        }
+        this.client = client;
+        this.scenario = scenario;
+        this.concurrency = concurrency;
+        this.ratePerSecond = ratePerSecond;
+        this.seed = seed;
+    }
+
+    public LoadReport run(long duration, TimeUnit unit) throws Exception {
+        LoadReport.Counters total = new LoadReport.Counters("all");
+        List<LoadReport.Counters> operations = new ArrayList<>();
+        for (int i = 0; i < scenario.size(); i++) {
+            operations.add(new LoadReport.Counters(scenario.name(i)));
+        }
+        AtomicLong sequence = new AtomicLong();
+        AtomicLong late = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + unit.toNanos(duration);
+        long intervalNanos = ratePerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int worker = 0; worker < concurrency; worker++) {
+                /*
+                * every worker has its own Random from the seed, the same seed sends the same mix of requests
+                * */
+                Random random = new Random(seed + worker);
+                running.add(workers.submit(() -> {
+                    while (true) {
+                        long due;
+                        if (intervalNanos > 0) {
+                            due = start + sequence.getAndIncrement() * intervalNanos;
+                            if (due >= end) {
+                                return null;
+                            }
+                            long wait = due - System.nanoTime();
+                            if (wait > 0) {
+                                LockSupport.parkNanos(wait);
+                            } else if (-wait > intervalNanos) {
+                                late.incrementAndGet();
+                            }
+                        } else {
+                            due = System.nanoTime();
+                            if (due >= end) {
+                                return null;
+                            }
+                        }
+                        int operation = scenario.pick(random);
+                        int status;
+                        try {
+                            status = scenario.request(operation).send(client, random).getStatus();
+                        } catch (RuntimeException ex) {
+                            status = LoadReport.CONNECTION_ERROR;
+                        }
+                        long latency = System.nanoTime() - due;
+                        total.record(latency, status);
+                        operations.get(operation).record(latency, status);
+                    }
+                }));
+            }
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return new LoadReport(concurrency, ratePerSecond, System.nanoTime() - start, late.get(), total, operations);
+    }
+}
@@ -0,0 +1,71 @@
+package com.teamtreehouse.testing;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+* Testing the LoadGenerator with requests that never leave the JVM, thus the only latency is the one we make up
+* */
+public class LoadGeneratorTest {
+
+    @Test
+    public void closedLoopCountsEveryRequestByStatus() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        Scenario scenario = new Scenario()
+                .add("ok", 3, (client, random) -> {
+                    sent.incrementAndGet();
+                    return new ApiResponse(200, "");
+                })
+                .add("missing", 1, (client, random) -> {
+                    sent.incrementAndGet();
+                    return new ApiResponse(404, "");
+                });
+
+        LoadReport report = new LoadGenerator(null, scenario, 4, 0, 42).run(200, TimeUnit.MILLISECONDS);
+
+        assertEquals(sent.get(), report.getRequests());
+        assertEquals((long) report.getStatuses().get(404), report.getErrors());
+        assertTrue(report.getStatuses().get(200) > report.getStatuses().get(404));
+    }
+
+    @Test
+    public void requestsThatThrowAreCountedAsConnectionErrors() throws Exception {
+        Scenario scenario = new Scenario()
+                .add("down", 1, (client, random) -> {
+                    throw new RuntimeException("Connection refused");
+                });
+
+        LoadReport report = new LoadGenerator(null, scenario, 2, 0, 42).run(50, TimeUnit.MILLISECONDS);
+
+        assertEquals(report.getRequests(), report.getErrors());
+        assertEquals(report.getRequests(), (long) report.getStatuses().get(LoadReport.CONNECTION_ERROR));
+    }
+
+    @Test
+    public void openLoopSendsAtTheRateAndCountsTheWaitForALateStart() throws Exception {
+        /*
+        * 100 requests per second for half a second are 50 requests. With a single thread and every request taking
+        * 20ms the second half of them can only start late, and their latency includes the time they were late: the
+        * slowest one waited for about 25 * 10ms on top of its own 20ms
+        * */
+        Scenario scenario = new Scenario()
+                .add("slow", 1, (client, random) -> {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new ApiResponse(200, "");
+                });
+
+        LoadReport report = new LoadGenerator(null, scenario, 1, 100, 42).run(500, TimeUnit.MILLISECONDS);
+
+        assertEquals(50, report.getRequests());
+        assertTrue(report.getLate() > 0);
+        assertTrue(report.percentileMicros(1.0) > TimeUnit.MILLISECONDS.toMicros(200));
+    }
+}
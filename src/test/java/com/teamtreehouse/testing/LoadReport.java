@@ -0,0 +1,128 @@
+package com.teamtreehouse.testing;
+
+import com.teamtreehouse.courses.metrics.LatencyHistogram;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+* What a LoadGenerator run did: the throughput and the latency percentiles of all requests and of every operation, the
+* responses by status, and how many requests went out later than scheduled (late, open loop only).
+* */
+public class LoadReport {
+    /*
+    * the status we count a request under when it did not get a response at all
+    * */
+    public static final int CONNECTION_ERROR = -1;
+
+    private final int concurrency;
+    private final int ratePerSecond;
+    private final long elapsedNanos;
+    private final long late;
+    private final Counters total;
+    private final List<Counters> operations;
+
+    LoadReport(int concurrency, int ratePerSecond, long elapsedNanos, long late, Counters total,
+               List<Counters> operations) {
+        this.concurrency = concurrency;
+        this.ratePerSecond = ratePerSecond;
+        this.elapsedNanos = elapsedNanos;
+        this.late = late;
+        this.total = total;
+        this.operations = operations;
+    }
+
+    public long getRequests() {
+        return total.latency.getCount();
+    }
+
+    public long getErrors() {
+        return total.errors();
+    }
+
+    public long getLate() {
+        return late;
+    }
+
+    public double getThroughput() {
+        return getRequests() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public long percentileMicros(double quantile) {
+        return total.latency.percentileMicros(quantile);
+    }
+
+    public Map<Integer, Long> getStatuses() {
+        return total.statuses();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%s, %d threads, %.1f s: %d requests, %.1f requests/s, %d errors",
+                ratePerSecond == 0 ? "closed loop" : "open loop at " + ratePerSecond + "/s", concurrency,
+                elapsedNanos / 1e9, getRequests(), getThroughput(), getErrors()));
+        if (ratePerSecond > 0) {
+            out.append(", ").append(late).append(" late");
+        }
+        out.append('\n');
+        out.append(String.format(Locale.ROOT, "%-34s %8s %7s %9s %9s %9s %9s %9s  %s%n",
+                "operation", "requests", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "statuses"));
+        row(out, total);
+        for (Counters operation : operations) {
+            row(out, operation);
+        }
+        return out.toString();
+    }
+
+    private static void row(StringBuilder out, Counters counters) {
+        LatencyHistogram latency = counters.latency;
+        out.append(String.format(Locale.ROOT, "%-34s %8d %7d %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                counters.name, latency.getCount(), counters.errors(),
+                latency.percentileMicros(0.5) / 1000.0, latency.percentileMicros(0.9) / 1000.0,
+                latency.percentileMicros(0.99) / 1000.0, latency.percentileMicros(0.999) / 1000.0,
+                latency.getMaxMicros() / 1000.0, counters.statuses()));
+    }
+
+    /*
+    * the latency and the statuses of the responses of one operation (or of all of them)
+    * */
+    static class Counters {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        Counters(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos, int status) {
+            latency.recordNanos(nanos);
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+
+        Map<Integer, Long> statuses() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (Map.Entry<Integer, LongAdder> status : statuses.entrySet()) {
+                counts.put(status.getKey(), status.getValue().sum());
+            }
+            return counts;
+        }
+
+        long errors() {
+            long errors = 0;
+            for (Map.Entry<Integer, LongAdder> status : statuses.entrySet()) {
+                if (status.getKey() >= 400 || status.getKey() == CONNECTION_ERROR) {
+                    errors += status.getValue().sum();
+                }
+            }
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.teamtreehouse.testing;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.teamtreehouse.courses.Api;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Starts the Api on an in memory database, fills it through the Api and then puts it under load with the
+* LoadGenerator, printing the LoadReport at the end. Run it with `gradle loadTest`, the settings are system
+* properties:
+*
+*   load.concurrency  threads sending requests (16)
+*   load.rate         requests per second for the open loop, 0 for the closed loop (0)
+*   load.seconds      how long to send requests (30)
+*   load.courses      courses created before the run (100)
+*   load.reviews      reviews created for every course before the run (20)
+*   load.port         the port of the Api (4568, not the 4567 of ApiTest)
+*
+* e.g. gradle loadTest -Dload.rate=2000 -Dload.concurrency=64
+* */
+public class LoadTest {
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("load.concurrency", 16);
+        int rate = Integer.getInteger("load.rate", 0);
+        int seconds = Integer.getInteger("load.seconds", 30);
+        int courses = Integer.getInteger("load.courses", 100);
+        int reviews = Integer.getInteger("load.reviews", 20);
+        String port = System.getProperty("load.port", "4568");
+
+        /*
+        * HttpURLConnection keeps at most http.maxConnections idle connections per server (5 by default), with more
+        * threads than that the others would open a new connection for every request. It is read once, so we set it
+        * before the first request.
+        * */
+        System.setProperty("http.maxConnections", String.valueOf(Math.max(concurrency, 5)));
+
+        Api.main(new String[]{port, "jdbc:h2:mem:load"});
+        try {
+            ApiClient client = new ApiClient("http://localhost:" + port);
+            int[] courseIds = seed(client, courses, reviews);
+            System.out.printf("Seeded %d courses with %d reviews each%n", courses, reviews);
+
+            LoadGenerator generator = new LoadGenerator(client, Scenario.mixedReadWrite(courseIds), concurrency,
+                    rate, 42);
+            System.out.print(generator.run(seconds, TimeUnit.SECONDS));
+        } finally {
+            Api.stop();
+        }
+    }
+
+    private static int[] seed(ApiClient client, int courses, int reviews) {
+        Gson gson = new Gson();
+        Random random = new Random(42);
+        int[] ids = new int[courses];
+        for (int i = 0; i < courses; i++) {
+            ApiResponse res = client.request("POST", "/courses",
+                    "{\"name\": \"Course " + i + "\", \"url\": \"http://load.test/courses/" + i + "\"}");
+            ids[i] = gson.fromJson(res.getBody(), JsonObject.class).get("id").getAsInt();
+
+            StringBuilder batch = new StringBuilder("[");
+            for (int j = 0; j < reviews; j++) {
+                if (j > 0) {
+                    batch.append(',');
+                }
+                batch.append("{\"rating\": ").append(1 + random.nextInt(5)).append(", \"comment\": \"seed\"}");
+            }
+            client.request("POST", "/courses/" + ids[i] + "/reviews/batch", batch.append(']').toString());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,84 @@
+package com.teamtreehouse.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+* The mix of requests a LoadGenerator sends: every operation has a weight and is picked with the probability of its
+* weight over the total weight.
+* */
+public class Scenario {
+
+    /*
+    * one kind of request, the random is the one of the worker thread sending it (to pick ids, ratings and so on)
+    * */
+    public interface Request {
+        ApiResponse send(ApiClient client, Random random);
+    }
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Request> requests = new ArrayList<>();
+    private final List<Integer> cumulativeWeights = new ArrayList<>();
+    private int totalWeight;
+
+    public Scenario add(String name, int weight, Request request) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be at least 1 but was " + weight);
+        }
+        totalWeight += weight;
+        names.add(name);
+        requests.add(request);
+        cumulativeWeights.add(totalWeight);
+        return this;
+    }
+
+    int size() {
+        return requests.size();
+    }
+
+    String name(int operation) {
+        return names.get(operation);
+    }
+
+    Request request(int operation) {
+        return requests.get(operation);
+    }
+
+    int pick(Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (int i = 0; i < cumulativeWeights.size(); i++) {
+            if (ticket < cumulativeWeights.get(i)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("The scenario has no operations");
+    }
+
+    /*
+    * Mostly reads over all of the GET routes with some review and course writes, against the given courses. Roughly
+    * what the dashboards and the review form do to us.
+    * */
+    public static Scenario mixedReadWrite(int[] courseIds) {
+        return new Scenario()
+                .add("GET /courses", 10, (client, random) -> client.request("GET", "/courses?limit=50"))
+                .add("GET /courses/:id", 25, (client, random) ->
+                        client.request("GET", "/courses/" + pickId(courseIds, random)))
+                .add("GET /courses/:courseId/reviews", 30, (client, random) ->
+                        client.request("GET", "/courses/" + pickId(courseIds, random) + "/reviews"))
+                .add("GET /courses/:id/stats", 15, (client, random) ->
+                        client.request("GET", "/courses/" + pickId(courseIds, random) + "/stats"))
+                .add("GET /reviews", 5, (client, random) -> client.request("GET", "/reviews?limit=100"))
+                .add("POST /courses/:courseId/reviews", 14, (client, random) ->
+                        client.request("POST", "/courses/" + pickId(courseIds, random) + "/reviews",
+                                "{\"rating\": " + (1 + random.nextInt(5)) + ", \"comment\": \"load test\"}"))
+                .add("POST /courses", 1, (client, random) ->
+                        client.request("POST", "/courses",
+                                "{\"name\": \"Load test course\", \"url\": \"http://load.test/" +
+                                        random.nextInt(1000000) + "\"}"));
+    }
+
+    private static int pickId(int[] ids, Random random) {
+        return ids[random.nextInt(ids.length)];
+    }
+}